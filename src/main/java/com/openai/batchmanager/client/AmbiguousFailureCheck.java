@@ -0,0 +1,10 @@
+package com.openai.batchmanager.client;
+
+import java.io.IOException;
+
+// Looks up whether a non-idempotent call that failed without a clear answer actually took effect
+@FunctionalInterface
+interface AmbiguousFailureCheck {
+
+    String findExisting() throws IOException;
+}
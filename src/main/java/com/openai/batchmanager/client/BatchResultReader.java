@@ -0,0 +1,69 @@
+package com.openai.batchmanager.client;
+
+import com.openai.batchmanager.model.BatchResult;
+import com.openai.batchmanager.util.JsonUtils;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public class BatchResultReader implements Closeable {
+
+    private final Response response;
+    private final BufferedSource source;
+    private long offset;
+
+    BatchResultReader(Response response) {
+        this.response = response;
+        this.source = response.body().source();
+    }
+
+    // Reads the file from offset on; a server that ignored the Range request sent all of it, so the start is skipped
+    BatchResultReader(Response response, long offset) throws IOException {
+        this(response);
+        this.offset = offset;
+        if (offset > 0 && response.code() != 206) {
+            try {
+                source.skip(offset);
+            } catch (IOException ex) {
+                response.close();
+                throw ex;
+            }
+        }
+    }
+
+    // Returns the next parsed line, or null once the file has been fully read
+    public BatchResult next() throws IOException {
+        while (true) {
+            long newline = source.indexOf((byte) '\n');
+            String line;
+            if (newline >= 0) {
+                line = source.readUtf8(newline);
+                source.skip(1);
+                offset += newline + 1;
+            } else {
+                // The last line, with no newline after it
+                long remaining = source.getBuffer().size();
+                if (remaining == 0) {
+                    return null;
+                }
+                line = source.readUtf8(remaining);
+                offset += remaining;
+            }
+            if (!line.trim().isEmpty()) {
+                return JsonUtils.parseBatchResultLine(line);
+            }
+        }
+    }
+
+    // Bytes of the file read so far, always up to the end of a line, so reading can carry on from here
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() {
+        response.close();
+    }
+}
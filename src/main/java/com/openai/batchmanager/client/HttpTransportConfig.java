@@ -0,0 +1,205 @@
+package com.openai.batchmanager.client;
+
+import com.openai.batchmanager.util.ExecutorUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class HttpTransportConfig {
+
+    private String baseUrl = OpenAIClient.DEFAULT_BASE_URL;
+    private int maxIdleConnections = 5;
+    private Duration keepAlive = Duration.ofMinutes(5);
+    private boolean preferHttp2 = true;
+    private int maxRequests = 64;
+    private int maxRequestsPerHost = 32;
+    private Duration callTimeout = Duration.ofMinutes(5);
+    private Duration connectTimeout = Duration.ofSeconds(30);
+    private Duration readTimeout = Duration.ofMinutes(2);
+    private Duration writeTimeout = Duration.ofMinutes(2);
+    private boolean virtualThreadDispatcher = false;
+
+    private OkHttpClient sharedClient;
+
+    public HttpTransportConfig() {
+    }
+
+    // Built once and reused, so every OpenAIClient created from this config shares one pool and dispatcher
+    public synchronized OkHttpClient sharedHttpClient() {
+        if (sharedClient == null) {
+            sharedClient = buildHttpClient();
+        }
+        return sharedClient;
+    }
+
+    public OkHttpClient buildHttpClient() {
+        Dispatcher dispatcher = virtualThreadDispatcher
+                ? new Dispatcher(ExecutorUtils.newVirtualThreadPerTaskExecutor())
+                : new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .protocols(preferHttp2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .callTimeout(callTimeout)
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .writeTimeout(writeTimeout)
+                .build();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public synchronized HttpTransportConfig setBaseUrl(String baseUrl) {
+        if (baseUrl == null || baseUrl.trim().isEmpty()) {
+            throw new IllegalArgumentException("baseUrl cannot be null or empty");
+        }
+        this.baseUrl = baseUrl;
+        return this;
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public synchronized HttpTransportConfig setMaxIdleConnections(int maxIdleConnections) {
+        checkNotBuilt();
+        if (maxIdleConnections < 0) {
+            throw new IllegalArgumentException("maxIdleConnections cannot be negative");
+        }
+        this.maxIdleConnections = maxIdleConnections;
+        return this;
+    }
+
+    public Duration getKeepAlive() {
+        return keepAlive;
+    }
+
+    public synchronized HttpTransportConfig setKeepAlive(Duration keepAlive) {
+        checkNotBuilt();
+        requirePositive(keepAlive, "keepAlive");
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    public boolean isPreferHttp2() {
+        return preferHttp2;
+    }
+
+    public synchronized HttpTransportConfig setPreferHttp2(boolean preferHttp2) {
+        checkNotBuilt();
+        this.preferHttp2 = preferHttp2;
+        return this;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public synchronized HttpTransportConfig setMaxRequests(int maxRequests) {
+        checkNotBuilt();
+        if (maxRequests <= 0) {
+            throw new IllegalArgumentException("maxRequests must be positive");
+        }
+        this.maxRequests = maxRequests;
+        return this;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public synchronized HttpTransportConfig setMaxRequestsPerHost(int maxRequestsPerHost) {
+        checkNotBuilt();
+        if (maxRequestsPerHost <= 0) {
+            throw new IllegalArgumentException("maxRequestsPerHost must be positive");
+        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        return this;
+    }
+
+    public Duration getCallTimeout() {
+        return callTimeout;
+    }
+
+    public synchronized HttpTransportConfig setCallTimeout(Duration callTimeout) {
+        checkNotBuilt();
+        requireNonNegative(callTimeout, "callTimeout");
+        this.callTimeout = callTimeout;
+        return this;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public synchronized HttpTransportConfig setConnectTimeout(Duration connectTimeout) {
+        checkNotBuilt();
+        requireNonNegative(connectTimeout, "connectTimeout");
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public synchronized HttpTransportConfig setReadTimeout(Duration readTimeout) {
+        checkNotBuilt();
+        requireNonNegative(readTimeout, "readTimeout");
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    public Duration getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public synchronized HttpTransportConfig setWriteTimeout(Duration writeTimeout) {
+        checkNotBuilt();
+        requireNonNegative(writeTimeout, "writeTimeout");
+        this.writeTimeout = writeTimeout;
+        return this;
+    }
+
+    public boolean isVirtualThreadDispatcher() {
+        return virtualThreadDispatcher;
+    }
+
+    // Runs async calls and uploads on virtual threads; needs Java 21+. maxRequests still bounds concurrent calls
+    public synchronized HttpTransportConfig setVirtualThreadDispatcher(boolean virtualThreadDispatcher) {
+        checkNotBuilt();
+        if (virtualThreadDispatcher && !ExecutorUtils.virtualThreadsAvailable()) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+        }
+        this.virtualThreadDispatcher = virtualThreadDispatcher;
+        return this;
+    }
+
+    private void checkNotBuilt() {
+        if (sharedClient != null) {
+            throw new IllegalStateException("Transport settings cannot change after the shared client has been built");
+        }
+    }
+
+    private static void requirePositive(Duration value, String name) {
+        if (value == null || value.isZero() || value.isNegative()) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+    }
+
+    private static void requireNonNegative(Duration value, String name) {
+        if (value == null || value.isNegative()) {
+            throw new IllegalArgumentException(name + " cannot be null or negative");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.openai.batchmanager.client;
+
+import com.openai.batchmanager.util.JsonUtils;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class JsonlRequestBody extends RequestBody {
+
+    private static final MediaType JSONL = MediaType.get("application/jsonl");
+
+    // Iterated once to compute the content length and again on every write, so it must be re-iterable
+    private final Iterable<? extends Map.Entry<String, String>> entries;
+    private final String endpoint;
+    private long contentLength = -1;
+
+    public JsonlRequestBody(Iterable<? extends Map.Entry<String, String>> entries, String endpoint) {
+        if (entries == null || !entries.iterator().hasNext()) {
+            throw new IllegalArgumentException("entries cannot be null or empty");
+        }
+        if (endpoint == null || endpoint.trim().isEmpty()) {
+            throw new IllegalArgumentException("endpoint cannot be null or empty");
+        }
+        this.entries = entries;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSONL;
+    }
+
+    @Override
+    public synchronized long contentLength() throws IOException {
+        if (contentLength < 0) {
+            CountingSink counter = new CountingSink();
+            try (BufferedSink sink = Okio.buffer(counter)) {
+                writeTo(sink);
+            }
+            contentLength = counter.count;
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        JsonUtils.writeBatchInputJsonl(entries, endpoint, sink.outputStream());
+    }
+
+    private static final class CountingSink extends ForwardingSink {
+        private long count;
+
+        CountingSink() {
+            super(Okio.blackhole());
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            count += byteCount;
+            super.write(source, byteCount);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.openai.batchmanager.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openai.batchmanager.util.JsonUtils;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// Uploads a request body through the /uploads create/parts/complete flow, cutting parts off the stream as it is written
+class MultipartUploader {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+
+    private final OpenAIClient client;
+    private final UploadOptions options;
+    private final RetryPolicy partRetryPolicy;
+    private final ObjectMapper mapper;
+
+    MultipartUploader(OpenAIClient client, UploadOptions options) {
+        this.client = client;
+        this.options = options;
+        this.partRetryPolicy = new RetryPolicy()
+                .setMaxAttempts(options.getMaxPartAttempts())
+                .setBaseDelay(options.getPartRetryDelay());
+        this.mapper = JsonUtils.getMapper();
+    }
+
+    String upload(RequestBody body, String filename, String purpose) throws IOException {
+        String uploadId = createUpload(filename, purpose, body.contentLength(),
+                body.contentType() == null ? "application/jsonl" : body.contentType().toString());
+
+        ExecutorService partExecutor = Executors.newFixedThreadPool(options.getMaxConcurrentParts());
+        try {
+            PartOutputStream parts = new PartOutputStream(uploadId, partExecutor);
+            try (BufferedSink sink = Okio.buffer(Okio.sink(parts))) {
+                body.writeTo(sink);
+            }
+
+            List<String> partIds = new ArrayList<>(parts.futures.size());
+            for (Future<String> future : parts.futures) {
+                partIds.add(awaitPart(future));
+            }
+            return completeUpload(uploadId, partIds);
+        } catch (IOException | RuntimeException e) {
+            cancelUploadQuietly(uploadId);
+            throw e;
+        } finally {
+            partExecutor.shutdownNow();
+        }
+    }
+
+    private String createUpload(String filename, String purpose, long bytes, String mimeType) throws IOException {
+        ObjectNode requestBody = mapper.createObjectNode();
+        requestBody.put("purpose", purpose);
+        requestBody.put("filename", filename);
+        requestBody.put("bytes", bytes);
+        requestBody.put("mime_type", mimeType);
+
+        Request request = client.authorisedRequest(client.resolve("uploads"))
+                .post(RequestBody.create(requestBody.toString(), JSON))
+                .build();
+
+        JsonNode json = mapper.readTree(client.executeForBody(request, "create upload"));
+        return JsonUtils.getStringValue(json, "id");
+    }
+
+    private String addPart(String uploadId, byte[] data, int length) throws IOException {
+        RequestBody requestBody = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("data", "part", RequestBody.create(data, OCTET_STREAM, 0, length))
+                .build();
+
+        Request request = client.authorisedRequest(client.resolve("uploads/" + uploadId + "/parts"))
+                .post(requestBody)
+                .build();
+
+        // Parts are only referenced by the IDs passed to complete, so a duplicate from a retried part is harmless
+        JsonNode json = mapper.readTree(client.executeForBody(request, "upload part", partRetryPolicy, null));
+        return JsonUtils.getStringValue(json, "id");
+    }
+
+    private String completeUpload(String uploadId, List<String> partIds) throws IOException {
+        ObjectNode requestBody = mapper.createObjectNode();
+        ArrayNode ids = requestBody.putArray("part_ids");
+        partIds.forEach(ids::add);
+
+        Request request = client.authorisedRequest(client.resolve("uploads/" + uploadId + "/complete"))
+                .post(RequestBody.create(requestBody.toString(), JSON))
+                .build();
+
+        JsonNode json = mapper.readTree(client.executeForBody(request, "complete upload"));
+        JsonNode file = json.get("file");
+        if (file == null || file.isNull()) {
+            throw new IOException("Completed upload " + uploadId + " has no file object");
+        }
+        return JsonUtils.getStringValue(file, "id");
+    }
+
+    private void cancelUploadQuietly(String uploadId) {
+        Request request = client.authorisedRequest(client.resolve("uploads/" + uploadId + "/cancel"))
+                .post(RequestBody.create("", JSON))
+                .build();
+        try {
+            client.executeForBody(request, "cancel upload", RetryPolicy.none(), null);
+        } catch (IOException ignored) {
+            // The upload expires on its own if the cancel does not go through
+        }
+    }
+
+    private static String awaitPart(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for upload part");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to upload part", e.getCause());
+        }
+    }
+
+    private final class PartOutputStream extends OutputStream {
+        private final String uploadId;
+        private final ExecutorService executor;
+        // Caps the parts held in memory at maxConcurrentParts in flight plus the one being filled
+        private final Semaphore inFlight = new Semaphore(options.getMaxConcurrentParts());
+        private final List<Future<String>> futures = new ArrayList<>();
+        private byte[] current = new byte[options.getPartSize()];
+        private int position;
+
+        PartOutputStream(String uploadId, ExecutorService executor) {
+            this.uploadId = uploadId;
+            this.executor = executor;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, current.length - position);
+                System.arraycopy(b, off, current, position, n);
+                position += n;
+                off += n;
+                len -= n;
+                if (position == current.length) {
+                    dispatch(false);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (position > 0) {
+                dispatch(true);
+            }
+        }
+
+        private void dispatch(boolean last) throws IOException {
+            failFast();
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to upload part");
+            }
+
+            byte[] data = current;
+            int length = position;
+            futures.add(executor.submit(() -> {
+                try {
+                    return addPart(uploadId, data, length);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+            current = last ? new byte[0] : new byte[options.getPartSize()];
+            position = 0;
+        }
+
+        // Stops producing further parts as soon as one has exhausted its retries
+        private void failFast() throws IOException {
+            for (Future<String> future : futures) {
+                if (future.isDone()) {
+                    awaitPart(future);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.openai.batchmanager.client;
+
+import okhttp3.Headers;
+
+import java.io.IOException;
+
+public class OpenAIApiException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final String responseBody;
+    private final transient Headers headers;
+
+    public OpenAIApiException(String action, int statusCode, String statusMessage, String responseBody, Headers headers) {
+        super("Failed to " + action + ": " + statusCode + " " + statusMessage + "\nResponse: " + responseBody);
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+        this.headers = headers;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public Headers getHeaders() {
+        return headers;
+    }
+}
@@ -4,68 +4,100 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.openai.batchmanager.model.Batch;
-import com.openai.batchmanager.model.BatchRequestOutput;
+import com.openai.batchmanager.model.BatchPage;
+import com.openai.batchmanager.model.BatchResult;
 import com.openai.batchmanager.model.BatchStatus;
 import com.openai.batchmanager.model.RequestCounts;
 import com.openai.batchmanager.util.JsonUtils;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class OpenAIClient {
 
-    private static final String BASE_URL = "https://api.openai.com/v1/";
+    public static final String DEFAULT_BASE_URL = "https://api.openai.com/v1/";
+    // Clients built without an explicit transport share one connection pool and dispatcher
+    private static final HttpTransportConfig DEFAULT_TRANSPORT = new HttpTransportConfig();
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
-    private static final MediaType JSONL = MediaType.get("application/jsonl");
 
     private final String apiKey;
+    private final String baseUrl;
     private final OkHttpClient http;
     private final ObjectMapper mapper;
+    private volatile UploadOptions uploadOptions = new UploadOptions();
+    private volatile RetryPolicy retryPolicy = new RetryPolicy();
+    private final RetryStats retryStats = new RetryStats();
 
     public OpenAIClient(String apiKey) {
+        this(apiKey, DEFAULT_TRANSPORT);
+    }
+
+    public OpenAIClient(String apiKey, String baseUrl) {
+        this(apiKey, DEFAULT_TRANSPORT.sharedHttpClient(), baseUrl);
+    }
+
+    public OpenAIClient(String apiKey, HttpTransportConfig transport) {
+        this(apiKey, transport.sharedHttpClient(), transport.getBaseUrl());
+    }
+
+    public OpenAIClient(String apiKey, OkHttpClient http, String baseUrl) {
         if (apiKey == null || apiKey.trim().isEmpty()) {
             throw new IllegalArgumentException("API key cannot be null or empty");
         }
+        if (http == null) {
+            throw new IllegalArgumentException("HTTP client cannot be null");
+        }
+        if (baseUrl == null || baseUrl.trim().isEmpty()) {
+            throw new IllegalArgumentException("Base URL cannot be null or empty");
+        }
         this.apiKey = apiKey;
-        this.http = new OkHttpClient.Builder()
-                .callTimeout(Duration.ofMinutes(5))
-                .connectTimeout(Duration.ofSeconds(30))
-                .readTimeout(Duration.ofMinutes(2))
-                .writeTimeout(Duration.ofMinutes(2))
-                .build();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.http = http;
         this.mapper = JsonUtils.getMapper();
     }
 
     public Batch submitBatch(Map<String, String> customIdToRequestJson, String endpoint) throws IOException {
+        return submitBatchWithMetadata(customIdToRequestJson, endpoint, null);
+    }
+
+    public Batch submitBatchWithMetadata(Map<String, String> customIdToRequestJson, String endpoint, Map<String, String> metadata) throws IOException {
         if (customIdToRequestJson == null || customIdToRequestJson.isEmpty()) {
             throw new IllegalArgumentException("customIdToRequestJson cannot be null or empty");
         }
-        if (endpoint == null || endpoint.trim().isEmpty()) {
-            throw new IllegalArgumentException("endpoint cannot be null or empty");
-        }
-        String jsonlContent = JsonUtils.createBatchInputJsonlWithCustomIds(customIdToRequestJson, endpoint);
-        
-        String fileId = uploadFile(jsonlContent, "batch");
-        
-        String batchJson = createBatch(fileId, endpoint, "24h", null);
-        
-        return parseBatchFromJson(batchJson);
+        return submitBatch(customIdToRequestJson.entrySet(), endpoint, metadata);
     }
 
-    public Batch submitBatchWithMetadata(Map<String, String> customIdToRequestJson, String endpoint, Map<String, String> metadata) throws IOException {
-        if (customIdToRequestJson == null || customIdToRequestJson.isEmpty()) {
+    public Batch submitBatch(Iterable<? extends Map.Entry<String, String>> customIdToRequestJson, String endpoint, Map<String, String> metadata) throws IOException {
+        if (customIdToRequestJson == null || !customIdToRequestJson.iterator().hasNext()) {
             throw new IllegalArgumentException("customIdToRequestJson cannot be null or empty");
         }
         if (endpoint == null || endpoint.trim().isEmpty()) {
             throw new IllegalArgumentException("endpoint cannot be null or empty");
         }
-        String jsonlContent = JsonUtils.createBatchInputJsonlWithCustomIds(customIdToRequestJson, endpoint);
+        // Lines are serialised straight into the upload stream rather than into one big String
+        RequestBody jsonlBody = new JsonlRequestBody(customIdToRequestJson, endpoint);
         
-        String fileId = uploadFile(jsonlContent, "batch");
+        UploadOptions options = uploadOptions;
+        String fileId;
+        if (jsonlBody.contentLength() > options.getMultipartThreshold()) {
+            fileId = new MultipartUploader(this, options).upload(jsonlBody, "batch_input.jsonl", "batch");
+        } else {
+            fileId = uploadFile(jsonlBody, "batch");
+        }
         
         String batchJson = createBatch(fileId, endpoint, "24h", metadata);
         
@@ -84,16 +116,47 @@ public class OpenAIClient {
     }
 
     public Map<String, String> downloadBatchResults(Batch batch) throws IOException {
+        Map<String, String> responseMap = new HashMap<>();
+        try (BatchResultReader reader = streamBatchResults(batch)) {
+            BatchResult result;
+            while ((result = reader.next()) != null) {
+                if (result.isSuccess()) {
+                    responseMap.put(result.getCustomId(), result.getResponseJson());
+                }
+            }
+        }
+        return responseMap;
+    }
+
+    public BatchResultReader streamBatchResults(Batch batch) throws IOException {
         if (batch == null) {
             throw new IllegalArgumentException("batch cannot be null");
         }
         if (batch.getOutputFileId() == null) {
             throw new IllegalStateException("Batch has no output file ID");
         }
-        
-        String jsonlContent = downloadFile(batch.getOutputFileId());
-        List<BatchRequestOutput> outputs = JsonUtils.parseBatchOutputJsonl(jsonlContent);
-        return JsonUtils.outputsToResponseMap(outputs);
+        return streamFile(batch.getOutputFileId());
+    }
+
+    public BatchResultReader streamFile(String fileId) throws IOException {
+        if (fileId == null || fileId.trim().isEmpty()) {
+            throw new IllegalArgumentException("fileId cannot be null or empty");
+        }
+        return new BatchResultReader(openFileContent(fileId));
+    }
+
+    // Carries on from offset, e.g. BatchResultReader.getOffset() of a read that broke off, with a Range request
+    public BatchResultReader streamFile(String fileId, long offset) throws IOException {
+        if (fileId == null || fileId.trim().isEmpty()) {
+            throw new IllegalArgumentException("fileId cannot be null or empty");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset cannot be negative");
+        }
+        Request request = fileContentRequest(fileId).newBuilder()
+                .header("Range", "bytes=" + offset + "-")
+                .build();
+        return new BatchResultReader(execute(request, "download file", retryPolicy, null), offset);
     }
 
     public Batch cancelBatch(String batchId) throws IOException {
@@ -108,38 +171,203 @@ public class OpenAIClient {
         return listBatchesRequest(limit, after);
     }
 
-    private String uploadFile(String content, String purpose) throws IOException {
-        RequestBody fileBody = RequestBody.create(content, JSONL);
+    public BatchPage listBatchesPage(Integer limit, String after) throws IOException {
+        return parseBatchPage(listBatchesRequest(limit, after));
+    }
+
+    public CompletableFuture<Batch> submitBatchAsync(Iterable<? extends Map.Entry<String, String>> customIdToRequestJson, String endpoint, Map<String, String> metadata) {
+        return submitBatchAsync(customIdToRequestJson, endpoint, metadata, http.dispatcher().executorService());
+    }
+
+    // See uploadFileAsync for what runs on blockingExecutor
+    public CompletableFuture<Batch> submitBatchAsync(Iterable<? extends Map.Entry<String, String>> customIdToRequestJson, String endpoint,
+                                                     Map<String, String> metadata, Executor blockingExecutor) {
+        if (customIdToRequestJson == null || !customIdToRequestJson.iterator().hasNext()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("customIdToRequestJson cannot be null or empty"));
+        }
+        if (endpoint == null || endpoint.trim().isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("endpoint cannot be null or empty"));
+        }
+        return uploadFileAsync(new JsonlRequestBody(customIdToRequestJson, endpoint), blockingExecutor)
+                .thenCompose(fileId -> createBatchAsync(fileId, endpoint, metadata));
+    }
+
+    // Runs the blocking parts on the dispatcher's own pool, which takes a thread the dispatcher may need for calls;
+    // prefer the overload taking an executor
+    public CompletableFuture<String> uploadFileAsync(RequestBody jsonlBody) {
+        return uploadFileAsync(jsonlBody, http.dispatcher().executorService());
+    }
+
+    // Sizing the body is a full serialisation pass and the multipart flow blocks on each part in turn, so both run
+    // on blockingExecutor; only a single-request upload goes through the dispatcher
+    public CompletableFuture<String> uploadFileAsync(RequestBody jsonlBody, Executor blockingExecutor) {
+        UploadOptions options = uploadOptions;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return jsonlBody.contentLength();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, blockingExecutor).thenCompose(contentLength -> {
+            if (contentLength > options.getMultipartThreshold()) {
+                // Already on blockingExecutor, so the parts flow runs here
+                try {
+                    return CompletableFuture.completedFuture(
+                            new MultipartUploader(this, options).upload(jsonlBody, "batch_input.jsonl", "batch"));
+                } catch (IOException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+            return executeForBodyAsync(uploadFileRequest(jsonlBody, "batch"), "upload file", retryPolicy, null)
+                    .thenApply(io(json -> JsonUtils.getStringValue(mapper.readTree(json), "id")));
+        });
+    }
+
+    public CompletableFuture<Batch> createBatchAsync(String inputFileId, String endpoint, Map<String, String> metadata) {
+        Request request = createBatchRequest(inputFileId, endpoint, "24h", metadata);
+        return executeForBodyAsync(request, "create batch", retryPolicy, () ->
+                executeForBodyAsync(listBatchesHttpRequest(100, null), "list batches", RetryPolicy.none(), null)
+                        .thenApply(io(page -> findBatchJsonForInputFile(page, inputFileId))))
+                .thenApply(io(this::parseBatchFromJson));
+    }
+
+    // Sends a single request straight to its endpoint, e.g. /v1/chat/completions, rather than through a batch, and
+    // returns the response body. API errors fail the future with an OpenAIApiException
+    public CompletableFuture<String> sendRequestAsync(String endpoint, String requestJson) {
+        if (endpoint == null || !endpoint.startsWith("/v1/")) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("endpoint must start with /v1/"));
+        }
+        Request request = authorisedRequest(baseUrl + endpoint.substring("/v1/".length()))
+                .post(RequestBody.create(requestJson, JSON))
+                .build();
+        return executeForBodyAsync(request, "send request", retryPolicy, null);
+    }
+
+    public CompletableFuture<Batch> getBatchAsync(String batchId) {
+        if (batchId == null || batchId.trim().isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("batchId cannot be null or empty"));
+        }
+        return executeForBodyAsync(getBatchRequest(batchId), "get batch", retryPolicy, null)
+                .thenApply(io(this::parseBatchFromJson));
+    }
+
+    public CompletableFuture<Batch> updateBatchStatusAsync(Batch batch) {
+        if (batch == null || batch.getOpenaiBatchId() == null || batch.getOpenaiBatchId().trim().isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("batch must have a valid OpenAI batch ID"));
+        }
+        return executeForBodyAsync(getBatchRequest(batch.getOpenaiBatchId()), "get batch", retryPolicy, null)
+                .thenApply(io(json -> updateBatchFromJson(batch, json)));
+    }
+
+    public CompletableFuture<Batch> cancelBatchAsync(String batchId) {
+        if (batchId == null || batchId.trim().isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("batchId cannot be null or empty"));
+        }
+        return executeForBodyAsync(cancelBatchHttpRequest(batchId), "cancel batch", retryPolicy, null)
+                .thenApply(io(this::parseBatchFromJson));
+    }
+
+    public CompletableFuture<String> listBatchesAsync(Integer limit, String after) {
+        return executeForBodyAsync(listBatchesHttpRequest(limit, after), "list batches", retryPolicy, null);
+    }
+
+    public CompletableFuture<BatchPage> listBatchesPageAsync(Integer limit, String after) {
+        return listBatchesAsync(limit, after).thenApply(io(this::parseBatchPage));
+    }
+
+    public CompletableFuture<BatchResultReader> streamBatchResultsAsync(Batch batch) {
+        if (batch == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("batch cannot be null"));
+        }
+        if (batch.getOutputFileId() == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Batch has no output file ID"));
+        }
+        return streamFileAsync(batch.getOutputFileId());
+    }
+
+    public CompletableFuture<BatchResultReader> streamFileAsync(String fileId) {
+        if (fileId == null || fileId.trim().isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("fileId cannot be null or empty"));
+        }
+        return executeAsync(fileContentRequest(fileId), "download file", retryPolicy, null)
+                .thenApply(BatchResultReader::new);
+    }
+
+    public CompletableFuture<Map<String, String>> downloadBatchResultsAsync(Batch batch) {
+        return streamBatchResultsAsync(batch).thenApply(io(reader -> {
+            Map<String, String> responseMap = new HashMap<>();
+            try (reader) {
+                BatchResult result;
+                while ((result = reader.next()) != null) {
+                    if (result.isSuccess()) {
+                        responseMap.put(result.getCustomId(), result.getResponseJson());
+                    }
+                }
+            }
+            return responseMap;
+        }));
+    }
+
+    public OkHttpClient getHttpClient() {
+        return http;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public UploadOptions getUploadOptions() {
+        return uploadOptions;
+    }
+
+    public void setUploadOptions(UploadOptions uploadOptions) {
+        if (uploadOptions == null) {
+            throw new IllegalArgumentException("uploadOptions cannot be null");
+        }
+        this.uploadOptions = uploadOptions;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("retryPolicy cannot be null");
+        }
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryStats getRetryStats() {
+        return retryStats;
+    }
+
+    private String uploadFile(RequestBody fileBody, String purpose) throws IOException {
+        String responseJson = executeForBody(uploadFileRequest(fileBody, purpose), "upload file");
+        JsonNode jsonNode = mapper.readTree(responseJson);
+        return JsonUtils.getStringValue(jsonNode, "id");
+    }
+
+    private Request uploadFileRequest(RequestBody fileBody, String purpose) {
         RequestBody requestBody = new MultipartBody.Builder()
                 .setType(MultipartBody.FORM)
                 .addFormDataPart("file", "batch_input.jsonl", fileBody)
                 .addFormDataPart("purpose", purpose)
                 .build();
 
-        Request request = authorisedRequest(BASE_URL + "files")
+        return authorisedRequest(baseUrl + "files")
+                .header("Idempotency-Key", UUID.randomUUID().toString())
                 .post(requestBody)
                 .build();
-
-        try (Response response = http.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = "null";
-                if (response.body() != null) {
-                    errorBody = response.body().string();
-                }
-                throw new IOException("Failed to upload file: " + response.code() + " " + response.message() +
-                                    "\nResponse: " + errorBody);
-            }
-            
-            if (response.body() == null) {
-                throw new IOException("Upload response body is null");
-            }
-            String responseJson = response.body().string();
-            JsonNode jsonNode = mapper.readTree(responseJson);
-            return JsonUtils.getStringValue(jsonNode, "id");
-        }
     }
 
     private String createBatch(String inputFileId, String endpoint, String completionWindow, Map<String, String> metadata) throws IOException {
+        // A create that failed ambiguously may still have gone through, so look for it before sending it again
+        return executeForBody(createBatchRequest(inputFileId, endpoint, completionWindow, metadata), "create batch",
+                retryPolicy, () -> findBatchJsonForInputFile(inputFileId));
+    }
+
+    private Request createBatchRequest(String inputFileId, String endpoint, String completionWindow, Map<String, String> metadata) {
         ObjectNode requestBody = mapper.createObjectNode();
         requestBody.put("input_file_id", inputFileId);
         requestBody.put("endpoint", endpoint);
@@ -151,73 +379,55 @@ public class OpenAIClient {
             requestBody.set("metadata", metadataNode);
         }
 
-        Request request = authorisedRequest(BASE_URL + "batches")
+        return authorisedRequest(baseUrl + "batches")
+                .header("Idempotency-Key", UUID.randomUUID().toString())
                 .post(RequestBody.create(requestBody.toString(), JSON))
                 .build();
+    }
+
+    private String findBatchJsonForInputFile(String inputFileId) throws IOException {
+        String page = executeForBody(listBatchesHttpRequest(100, null), "list batches", RetryPolicy.none(), null);
+        return findBatchJsonForInputFile(page, inputFileId);
+    }
 
-        try (Response response = http.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = "null";
-                if (response.body() != null) {
-                    errorBody = response.body().string();
+    private String findBatchJsonForInputFile(String listPageJson, String inputFileId) throws IOException {
+        JsonNode data = mapper.readTree(listPageJson).get("data");
+        if (data != null && data.isArray()) {
+            for (JsonNode node : data) {
+                if (inputFileId.equals(JsonUtils.getStringValue(node, "input_file_id"))) {
+                    return node.toString();
                 }
-                throw new IOException("Failed to create batch: " + response.code() + " " + response.message() +
-                                    "\nResponse: " + errorBody);
             }
-            
-            if (response.body() == null) {
-                throw new IOException("Create batch response body is null");
-            }
-            return response.body().string();
         }
+        return null;
     }
 
     private String getBatch(String batchId) throws IOException {
-        Request request = authorisedRequest(BASE_URL + "batches/" + batchId)
+        return executeForBody(getBatchRequest(batchId), "get batch");
+    }
+
+    private Request getBatchRequest(String batchId) {
+        return authorisedRequest(baseUrl + "batches/" + batchId)
                 .get()
                 .build();
-
-        try (Response response = http.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = "null";
-                if (response.body() != null) {
-                    errorBody = response.body().string();
-                }
-                throw new IOException("Failed to get batch: " + response.code() + " " + response.message() +
-                                    "\nResponse: " + errorBody);
-            }
-            
-            if (response.body() == null) {
-                throw new IOException("Get batch response body is null");
-            }
-            return response.body().string();
-        }
     }
 
     private String cancelBatchRequest(String batchId) throws IOException {
-        Request request = authorisedRequest(BASE_URL + "batches/" + batchId + "/cancel")
+        return executeForBody(cancelBatchHttpRequest(batchId), "cancel batch");
+    }
+
+    private Request cancelBatchHttpRequest(String batchId) {
+        return authorisedRequest(baseUrl + "batches/" + batchId + "/cancel")
                 .post(RequestBody.create("", JSON))
                 .build();
-
-        try (Response response = http.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = "null";
-                if (response.body() != null) {
-                    errorBody = response.body().string();
-                }
-                throw new IOException("Failed to cancel batch: " + response.code() + " " + response.message() +
-                                    "\nResponse: " + errorBody);
-            }
-            
-            if (response.body() == null) {
-                throw new IOException("Cancel batch response body is null");
-            }
-            return response.body().string();
-        }
     }
 
     private String listBatchesRequest(Integer limit, String after) throws IOException {
-        HttpUrl.Builder urlBuilder = HttpUrl.parse(BASE_URL + "batches").newBuilder();
+        return executeForBody(listBatchesHttpRequest(limit, after), "list batches");
+    }
+
+    private Request listBatchesHttpRequest(Integer limit, String after) {
+        HttpUrl.Builder urlBuilder = HttpUrl.parse(baseUrl + "batches").newBuilder();
         
         if (limit != null) {
             urlBuilder.addQueryParameter("limit", String.valueOf(limit));
@@ -226,47 +436,20 @@ public class OpenAIClient {
             urlBuilder.addQueryParameter("after", after);
         }
 
-        Request request = authorisedRequest(urlBuilder.build().toString())
+        return authorisedRequest(urlBuilder.build().toString())
                 .get()
                 .build();
+    }
 
-        try (Response response = http.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = "null";
-                if (response.body() != null) {
-                    errorBody = response.body().string();
-                }
-                throw new IOException("Failed to list batches: " + response.code() + " " + response.message() +
-                                    "\nResponse: " + errorBody);
-            }
-            
-            if (response.body() == null) {
-                throw new IOException("List batches response body is null");
-            }
-            return response.body().string();
-        }
+    private Response openFileContent(String fileId) throws IOException {
+        // The response is handed to the caller unread so lines can be consumed while still downloading
+        return execute(fileContentRequest(fileId), "download file", retryPolicy, null);
     }
 
-    private String downloadFile(String fileId) throws IOException {
-        Request request = authorisedRequest(BASE_URL + "files/" + fileId + "/content")
+    private Request fileContentRequest(String fileId) {
+        return authorisedRequest(baseUrl + "files/" + fileId + "/content")
                 .get()
                 .build();
-
-        try (Response response = http.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = "null";
-                if (response.body() != null) {
-                    errorBody = response.body().string();
-                }
-                throw new IOException("Failed to download file: " + response.code() + " " + response.message() +
-                                    "\nResponse: " + errorBody);
-            }
-            
-            if (response.body() == null) {
-                throw new IOException("Download file response body is null");
-            }
-            return response.body().string();
-        }
     }
 
     private Batch parseBatchFromJson(String jsonResponse) throws IOException {
@@ -278,6 +461,22 @@ public class OpenAIClient {
         return batch;
     }
 
+    private BatchPage parseBatchPage(String jsonResponse) throws IOException {
+        JsonNode json = mapper.readTree(jsonResponse);
+
+        List<Batch> batches = new ArrayList<>();
+        JsonNode data = json.get("data");
+        if (data != null && data.isArray()) {
+            for (JsonNode node : data) {
+                Batch batch = new Batch(JsonUtils.getStringValue(node, "id"));
+                updateBatchFromJsonNode(batch, node);
+                batches.add(batch);
+            }
+        }
+        JsonNode hasMore = json.get("has_more");
+        return new BatchPage(batches, hasMore != null && hasMore.asBoolean(), JsonUtils.getStringValue(json, "last_id"));
+    }
+
     private Batch updateBatchFromJson(Batch batch, String jsonResponse) throws IOException {
         JsonNode json = mapper.readTree(jsonResponse);
         updateBatchFromJsonNode(batch, json);
@@ -335,7 +534,211 @@ public class OpenAIClient {
         }
     }
 
-    private Request.Builder authorisedRequest(String url) {
+    String executeForBody(Request request, String action) throws IOException {
+        return executeForBody(request, action, retryPolicy, null);
+    }
+
+    String executeForBody(Request request, String action, RetryPolicy policy, AmbiguousFailureCheck check) throws IOException {
+        try (Response response = execute(request, action, policy, check)) {
+            if (response.body() == null) {
+                throw new IOException(Character.toUpperCase(action.charAt(0)) + action.substring(1) + " response body is null");
+            }
+            return response.body().string();
+        }
+    }
+
+    // Central retry loop: every call goes through here so transient failures and rate limits are handled in one place
+    private Response execute(Request request, String action, RetryPolicy policy, AmbiguousFailureCheck check) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            retryStats.recordAttempt();
+            IOException failure;
+            Headers headers = null;
+            boolean ambiguous;
+
+            try {
+                Response response = http.newCall(request).execute();
+                if (response.isSuccessful()) {
+                    return response;
+                }
+                OpenAIApiException apiError = toApiException(response, action);
+                if (!policy.isRetryable(apiError.getStatusCode())) {
+                    throw apiError;
+                }
+                failure = apiError;
+                headers = apiError.getHeaders();
+                // A 429 is rejected before any work is done, anything else may have been partially applied
+                ambiguous = apiError.getStatusCode() != 429;
+            } catch (OpenAIApiException e) {
+                throw e;
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                failure = e;
+                ambiguous = true;
+            }
+
+            if (attempt >= policy.getMaxAttempts()) {
+                retryStats.recordExhausted();
+                throw failure;
+            }
+
+            Duration wait = policy.delayBeforeRetry(attempt, headers);
+            retryStats.recordRetry(wait);
+            sleep(wait);
+
+            if (ambiguous && check != null) {
+                String existing = recoverQuietly(check);
+                if (existing != null) {
+                    retryStats.recordRecovered();
+                    return recoveredResponse(request, existing);
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<String> executeForBodyAsync(Request request, String action, RetryPolicy policy,
+                                                          Supplier<CompletableFuture<String>> check) {
+        return executeAsync(request, action, policy, check).thenApply(io(response -> {
+            try (response) {
+                if (response.body() == null) {
+                    throw new IOException(Character.toUpperCase(action.charAt(0)) + action.substring(1) + " response body is null");
+                }
+                return response.body().string();
+            }
+        }));
+    }
+
+    // Same retry rules as execute, but attempts are enqueued and backoff is scheduled rather than slept
+    private CompletableFuture<Response> executeAsync(Request request, String action, RetryPolicy policy,
+                                                     Supplier<CompletableFuture<String>> check) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        attemptAsync(request, action, policy, check, 1, result);
+        return result;
+    }
+
+    private void attemptAsync(Request request, String action, RetryPolicy policy,
+                              Supplier<CompletableFuture<String>> check, int attempt, CompletableFuture<Response> result) {
+        retryStats.recordAttempt();
+        http.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                retryAsync(request, action, policy, check, attempt, result, e, null, true);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (response.isSuccessful()) {
+                    if (!result.complete(response)) {
+                        response.close();
+                    }
+                    return;
+                }
+                OpenAIApiException apiError;
+                try {
+                    apiError = toApiException(response, action);
+                } catch (IOException e) {
+                    retryAsync(request, action, policy, check, attempt, result, e, null, true);
+                    return;
+                }
+                if (!policy.isRetryable(apiError.getStatusCode())) {
+                    result.completeExceptionally(apiError);
+                    return;
+                }
+                retryAsync(request, action, policy, check, attempt, result, apiError, apiError.getHeaders(),
+                        apiError.getStatusCode() != 429);
+            }
+        });
+    }
+
+    private void retryAsync(Request request, String action, RetryPolicy policy, Supplier<CompletableFuture<String>> check,
+                            int attempt, CompletableFuture<Response> result,
+                            IOException failure, Headers headers, boolean ambiguous) {
+        if (result.isDone()) {
+            return;
+        }
+        if (attempt >= policy.getMaxAttempts()) {
+            retryStats.recordExhausted();
+            result.completeExceptionally(failure);
+            return;
+        }
+
+        Duration wait = policy.delayBeforeRetry(attempt, headers);
+        retryStats.recordRetry(wait);
+        Executor delayed = CompletableFuture.delayedExecutor(wait.toMillis(), TimeUnit.MILLISECONDS);
+        delayed.execute(() -> {
+            if (!ambiguous || check == null) {
+                attemptAsync(request, action, policy, check, attempt + 1, result);
+                return;
+            }
+            check.get().whenComplete((existing, ex) -> {
+                if (ex == null && existing != null) {
+                    retryStats.recordRecovered();
+                    result.complete(recoveredResponse(request, existing));
+                } else {
+                    attemptAsync(request, action, policy, check, attempt + 1, result);
+                }
+            });
+        });
+    }
+
+    private static <T, R> Function<T, R> io(IOFunction<T, R> function) {
+        return value -> {
+            try {
+                return function.apply(value);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface IOFunction<T, R> {
+        R apply(T value) throws IOException;
+    }
+
+    private static Response recoveredResponse(Request request, String body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(body, JSON))
+                .build();
+    }
+
+    private static OpenAIApiException toApiException(Response response, String action) throws IOException {
+        try (response) {
+            String errorBody = "null";
+            if (response.body() != null) {
+                errorBody = response.body().string();
+            }
+            return new OpenAIApiException(action, response.code(), response.message(), errorBody, response.headers());
+        }
+    }
+
+    private static String recoverQuietly(AmbiguousFailureCheck check) {
+        try {
+            return check.findExisting();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void sleep(Duration wait) throws InterruptedIOException {
+        try {
+            Thread.sleep(wait.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    String resolve(String path) {
+        return baseUrl + path;
+    }
+
+    Request.Builder authorisedRequest(String url) {
         return new Request.Builder()
                 .url(url)
                 .addHeader("Authorization", "Bearer " + apiKey)
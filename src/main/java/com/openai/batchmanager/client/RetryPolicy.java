@@ -0,0 +1,157 @@
+package com.openai.batchmanager.client;
+
+import okhttp3.Headers;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class RetryPolicy {
+
+    private static final Set<Integer> RETRYABLE_STATUS_CODES = Set.of(408, 429, 500, 502, 503, 504);
+    private static final Pattern RESET_COMPONENT = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private int maxAttempts = 5;
+    private Duration baseDelay = Duration.ofMillis(500);
+    private Duration maxDelay = Duration.ofSeconds(30);
+    private Duration maxServerDelay = Duration.ofMinutes(5);
+
+    public RetryPolicy() {
+    }
+
+    public static RetryPolicy none() {
+        return new RetryPolicy().setMaxAttempts(1);
+    }
+
+    public boolean isRetryable(int statusCode) {
+        return RETRYABLE_STATUS_CODES.contains(statusCode);
+    }
+
+    // Honours Retry-After and the rate-limit reset headers when present, otherwise capped exponential backoff with full jitter
+    public Duration delayBeforeRetry(int attempt, Headers headers) {
+        Duration serverDelay = headers == null ? null : serverRequestedDelay(headers);
+        if (serverDelay != null) {
+            return serverDelay.compareTo(maxServerDelay) > 0 ? maxServerDelay : serverDelay;
+        }
+        long ceiling = Math.min(maxDelay.toMillis(), baseDelay.toMillis() * (1L << Math.min(attempt - 1, 30)));
+        return Duration.ofMillis(ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    static Duration serverRequestedDelay(Headers headers) {
+        String retryAfterMs = headers.get("retry-after-ms");
+        if (retryAfterMs != null) {
+            try {
+                return Duration.ofMillis((long) Double.parseDouble(retryAfterMs.trim()));
+            } catch (NumberFormatException ignored) {
+                // Fall through to the other headers
+            }
+        }
+
+        String retryAfter = headers.get("Retry-After");
+        if (retryAfter != null) {
+            Duration parsed = parseRetryAfter(retryAfter.trim());
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+
+        Duration reset = null;
+        if ("0".equals(headers.get("x-ratelimit-remaining-requests"))) {
+            reset = parseResetDuration(headers.get("x-ratelimit-reset-requests"));
+        }
+        if ("0".equals(headers.get("x-ratelimit-remaining-tokens"))) {
+            Duration tokenReset = parseResetDuration(headers.get("x-ratelimit-reset-tokens"));
+            if (tokenReset != null && (reset == null || tokenReset.compareTo(reset) > 0)) {
+                reset = tokenReset;
+            }
+        }
+        return reset;
+    }
+
+    private static Duration parseRetryAfter(String value) {
+        try {
+            return Duration.ofSeconds(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            try {
+                Duration untilDate = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+                return untilDate.isNegative() ? Duration.ZERO : untilDate;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    // Parses the "6m0s" / "1.5s" / "20ms" format used by the x-ratelimit-reset-* headers
+    static Duration parseResetDuration(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Matcher matcher = RESET_COMPONENT.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return matched ? Duration.ofMillis((long) Math.ceil(millis)) : null;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public Duration getBaseDelay() {
+        return baseDelay;
+    }
+
+    public RetryPolicy setBaseDelay(Duration baseDelay) {
+        if (baseDelay == null || baseDelay.isNegative()) {
+            throw new IllegalArgumentException("baseDelay cannot be null or negative");
+        }
+        this.baseDelay = baseDelay;
+        return this;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public RetryPolicy setMaxDelay(Duration maxDelay) {
+        if (maxDelay == null || maxDelay.isNegative()) {
+            throw new IllegalArgumentException("maxDelay cannot be null or negative");
+        }
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    public Duration getMaxServerDelay() {
+        return maxServerDelay;
+    }
+
+    public RetryPolicy setMaxServerDelay(Duration maxServerDelay) {
+        if (maxServerDelay == null || maxServerDelay.isNegative()) {
+            throw new IllegalArgumentException("maxServerDelay cannot be null or negative");
+        }
+        this.maxServerDelay = maxServerDelay;
+        return this;
+    }
+}
@@ -0,0 +1,63 @@
+package com.openai.batchmanager.client;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RetryStats {
+
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong backoffMillis = new AtomicLong();
+
+    void recordAttempt() {
+        attempts.incrementAndGet();
+    }
+
+    void recordRetry(Duration wait) {
+        retries.incrementAndGet();
+        backoffMillis.addAndGet(wait.toMillis());
+    }
+
+    void recordExhausted() {
+        exhausted.incrementAndGet();
+    }
+
+    void recordRecovered() {
+        recovered.incrementAndGet();
+    }
+
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    // Calls that failed after using up every attempt
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    // Non-idempotent calls resolved by a state check instead of being sent again
+    public long getRecovered() {
+        return recovered.get();
+    }
+
+    public Duration getTotalBackoff() {
+        return Duration.ofMillis(backoffMillis.get());
+    }
+
+    @Override
+    public String toString() {
+        return "RetryStats{" +
+                "attempts=" + attempts +
+                ", retries=" + retries +
+                ", exhausted=" + exhausted +
+                ", recovered=" + recovered +
+                ", totalBackoffMillis=" + backoffMillis +
+                '}';
+    }
+}
@@ -0,0 +1,79 @@
+package com.openai.batchmanager.client;
+
+import java.time.Duration;
+
+public class UploadOptions {
+
+    public static final long DEFAULT_MULTIPART_THRESHOLD = 64L * 1024 * 1024;
+    public static final int DEFAULT_PART_SIZE = 16 * 1024 * 1024;
+    public static final int MAX_PART_SIZE = 64 * 1024 * 1024;
+
+    private long multipartThreshold = DEFAULT_MULTIPART_THRESHOLD;
+    private int partSize = DEFAULT_PART_SIZE;
+    private int maxConcurrentParts = 4;
+    private int maxPartAttempts = 3;
+    private Duration partRetryDelay = Duration.ofSeconds(1);
+
+    public UploadOptions() {
+    }
+
+    public long getMultipartThreshold() {
+        return multipartThreshold;
+    }
+
+    public UploadOptions setMultipartThreshold(long multipartThreshold) {
+        if (multipartThreshold < 0) {
+            throw new IllegalArgumentException("multipartThreshold cannot be negative");
+        }
+        this.multipartThreshold = multipartThreshold;
+        return this;
+    }
+
+    public int getPartSize() {
+        return partSize;
+    }
+
+    public UploadOptions setPartSize(int partSize) {
+        if (partSize <= 0 || partSize > MAX_PART_SIZE) {
+            throw new IllegalArgumentException("partSize must be between 1 and " + MAX_PART_SIZE + " bytes");
+        }
+        this.partSize = partSize;
+        return this;
+    }
+
+    public int getMaxConcurrentParts() {
+        return maxConcurrentParts;
+    }
+
+    public UploadOptions setMaxConcurrentParts(int maxConcurrentParts) {
+        if (maxConcurrentParts <= 0) {
+            throw new IllegalArgumentException("maxConcurrentParts must be positive");
+        }
+        this.maxConcurrentParts = maxConcurrentParts;
+        return this;
+    }
+
+    public int getMaxPartAttempts() {
+        return maxPartAttempts;
+    }
+
+    public UploadOptions setMaxPartAttempts(int maxPartAttempts) {
+        if (maxPartAttempts <= 0) {
+            throw new IllegalArgumentException("maxPartAttempts must be positive");
+        }
+        this.maxPartAttempts = maxPartAttempts;
+        return this;
+    }
+
+    public Duration getPartRetryDelay() {
+        return partRetryDelay;
+    }
+
+    public UploadOptions setPartRetryDelay(Duration partRetryDelay) {
+        if (partRetryDelay == null || partRetryDelay.isNegative()) {
+            throw new IllegalArgumentException("partRetryDelay cannot be null or negative");
+        }
+        this.partRetryDelay = partRetryDelay;
+        return this;
+    }
+}
@@ -5,20 +5,31 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openai.batchmanager.model.Batch;
 import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.model.BatchResult;
 import com.openai.batchmanager.model.BatchStatus;
 import com.openai.batchmanager.model.RequestCounts;
 
 import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class DatabaseManager {
 
     private static final String DEFAULT_DB_NAME = "openai_batch_manager.db";
+    // Values bound into one IN (...) list, well under SQLite's default limit of 999 parameters per statement
+    private static final int IN_LIST_CHUNK = 500;
 
     private final Connection conn;
+    // A lock rather than synchronized methods, so virtual threads waiting for the connection do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
     private final ObjectMapper mapper;
     private final String dbPath;
 
@@ -30,6 +41,9 @@ public class DatabaseManager {
         this.dbPath = dbPath;
         String dbUrl = "jdbc:sqlite:" + dbPath;
         this.conn = DriverManager.getConnection(dbUrl);
+        // Off so related writes share a transaction. The driver then opens one for reads too, so every read commits
+        // as well: an open read transaction keeps a shared lock on the file, and another connection to it, e.g. a
+        // second process resuming batches, cannot write until it is released
         this.conn.setAutoCommit(false);
         this.mapper = new ObjectMapper();
         ensureTables();
@@ -58,6 +72,13 @@ public class DatabaseManager {
                             "finalizing_at TIMESTAMP," +
                             "cancelling_at TIMESTAMP," +
                             "cancelled_at TIMESTAMP," +
+                            "submission_id TEXT," +
+                            "shard_index INTEGER DEFAULT 0," +
+                            "shard_count INTEGER DEFAULT 1," +
+                            "model TEXT," +
+                            "estimated_tokens INTEGER DEFAULT 0," +
+                            "parent_batch_id TEXT," +
+                            "cancel_requested INTEGER DEFAULT 0," +
                             "total_requests INTEGER," +  // legacy field
                             "completed_requests INTEGER" +  // legacy field
                             ")"
@@ -71,10 +92,42 @@ public class DatabaseManager {
                             "request_data TEXT NOT NULL," +
                             "response_data TEXT," +
                             "status TEXT DEFAULT 'PENDING'," +
+                            "error_code TEXT," +
+                            "error_message TEXT," +
                             "FOREIGN KEY (batch_id) REFERENCES batches(id)" +
                             ")"
             );
             
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS submission_queue (" +
+                            "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "batch_id TEXT NOT NULL UNIQUE," +
+                            "bytes INTEGER NOT NULL," +
+                            "queued_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "FOREIGN KEY (batch_id) REFERENCES batches(id)" +
+                            ")"
+            );
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS response_cache (" +
+                            "request_hash TEXT PRIMARY KEY," +
+                            "response_data TEXT NOT NULL," +
+                            "bytes INTEGER NOT NULL," +
+                            "created_at INTEGER NOT NULL," +  // epoch millis
+                            "last_used_at INTEGER NOT NULL" +
+                            ")"
+            );
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS request_buffer (" +
+                            "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "custom_id TEXT NOT NULL," +
+                            "request_data TEXT NOT NULL," +
+                            "sent_batch_id TEXT," +  // set in the transaction that puts the request into a batch
+                            "buffered_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                            ")"
+            );
+
             // Add new columns to existing batches table if they don't exist
             addColumnIfNotExists(stmt, "batches", "endpoint", "TEXT");
             addColumnIfNotExists(stmt, "batches", "input_file_id", "TEXT");
@@ -89,6 +142,22 @@ public class DatabaseManager {
             addColumnIfNotExists(stmt, "batches", "finalizing_at", "TIMESTAMP");
             addColumnIfNotExists(stmt, "batches", "cancelling_at", "TIMESTAMP");
             addColumnIfNotExists(stmt, "batches", "cancelled_at", "TIMESTAMP");
+            addColumnIfNotExists(stmt, "batches", "submission_id", "TEXT");
+            addColumnIfNotExists(stmt, "batches", "shard_index", "INTEGER DEFAULT 0");
+            addColumnIfNotExists(stmt, "batches", "shard_count", "INTEGER DEFAULT 1");
+            addColumnIfNotExists(stmt, "batches", "model", "TEXT");
+            addColumnIfNotExists(stmt, "batches", "estimated_tokens", "INTEGER DEFAULT 0");
+            addColumnIfNotExists(stmt, "batches", "parent_batch_id", "TEXT");
+            addColumnIfNotExists(stmt, "batches", "cancel_requested", "INTEGER DEFAULT 0");
+            addColumnIfNotExists(stmt, "batch_requests", "error_code", "TEXT");
+            addColumnIfNotExists(stmt, "batch_requests", "error_message", "TEXT");
+            addColumnIfNotExists(stmt, "batch_requests", "request_hash", "TEXT");
+            addColumnIfNotExists(stmt, "request_buffer", "sent_batch_id", "TEXT");
+            
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_batches_submission ON batches(submission_id)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_batches_parent ON batches(parent_batch_id)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_batch_requests_batch ON batch_requests(batch_id, custom_id)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_response_cache_used ON response_cache(last_used_at)");
         }
         conn.commit();
     }
@@ -109,10 +178,21 @@ public class DatabaseManager {
 
 
     public void insertBatch(Batch batch) throws SQLException {
+        lock.lock();
+        try {
+            insertBatchRow(batch);
+            conn.commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insertBatchRow(Batch batch) throws SQLException {
         final String sql = "INSERT INTO batches(" +
                 "id, status, endpoint, completion_window, metadata, request_counts, " +
-                "created_at, total_requests, completed_requests) " +
-                "VALUES(?,?,?,?,?,?,?,?,?)";
+                "created_at, total_requests, completed_requests, submission_id, shard_index, shard_count, " +
+                "model, estimated_tokens, parent_batch_id) " +
+                "VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, batch.getId());
             ps.setString(2, batch.getStatus().name());
@@ -123,109 +203,688 @@ public class DatabaseManager {
             ps.setTimestamp(7, Timestamp.from(batch.getCreatedAt()));
             ps.setInt(8, batch.getTotalRequests());
             ps.setInt(9, batch.getCompletedRequests());
+            ps.setString(10, batch.getSubmissionId());
+            ps.setInt(11, batch.getShardIndex());
+            ps.setInt(12, batch.getShardCount());
+            ps.setString(13, batch.getModel());
+            ps.setLong(14, batch.getEstimatedTokens());
+            ps.setString(15, batch.getParentBatchId());
             ps.executeUpdate();
         }
-        conn.commit();
     }
 
+    private static final String UPDATE_BATCH_SQL = "UPDATE batches SET " +
+            "openai_batch_id=?, status=?, endpoint=?, input_file_id=?, output_file_id=?, error_file_id=?, " +
+            "completion_window=?, metadata=?, request_counts=?, " +
+            "submitted_at=?, completed_at=?, failed_at=?, expired_at=?, expires_at=?, " +
+            "finalizing_at=?, cancelling_at=?, cancelled_at=?, " +
+            "total_requests=?, completed_requests=?, cancel_requested=? " +
+            "WHERE id=?";
+
     public void updateBatch(Batch batch) throws SQLException {
-        final String sql = "UPDATE batches SET " +
-                "openai_batch_id=?, status=?, endpoint=?, input_file_id=?, output_file_id=?, error_file_id=?, " +
-                "completion_window=?, metadata=?, request_counts=?, " +
-                "submitted_at=?, completed_at=?, failed_at=?, expired_at=?, expires_at=?, " +
-                "finalizing_at=?, cancelling_at=?, cancelled_at=?, " +
-                "total_requests=?, completed_requests=? " +
-                "WHERE id=?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, batch.getOpenaiBatchId());
-            ps.setString(2, batch.getStatus().name());
-            ps.setString(3, batch.getEndpoint());
-            ps.setString(4, batch.getInputFileId());
-            ps.setString(5, batch.getOutputFileId());
-            ps.setString(6, batch.getErrorFileId());
-            ps.setString(7, batch.getCompletionWindow());
-            ps.setString(8, serializeMetadata(batch.getMetadata()));
-            ps.setString(9, serializeRequestCounts(batch.getRequestCounts()));
-            
-            // Timestamps
-            ps.setTimestamp(10, batch.getSubmittedAt() == null ? null : Timestamp.from(batch.getSubmittedAt()));
-            ps.setTimestamp(11, batch.getCompletedAt() == null ? null : Timestamp.from(batch.getCompletedAt()));
-            ps.setTimestamp(12, batch.getFailedAt() == null ? null : Timestamp.from(batch.getFailedAt()));
-            ps.setTimestamp(13, batch.getExpiredAt() == null ? null : Timestamp.from(batch.getExpiredAt()));
-            ps.setTimestamp(14, batch.getExpiresAt() == null ? null : Timestamp.from(batch.getExpiresAt()));
-            ps.setTimestamp(15, batch.getFinalizingAt() == null ? null : Timestamp.from(batch.getFinalizingAt()));
-            ps.setTimestamp(16, batch.getCancellingAt() == null ? null : Timestamp.from(batch.getCancellingAt()));
-            ps.setTimestamp(17, batch.getCancelledAt() == null ? null : Timestamp.from(batch.getCancelledAt()));
-            
-            // Legacy fields
-            ps.setInt(18, batch.getTotalRequests());
-            ps.setInt(19, batch.getCompletedRequests());
-            
-            // WHERE clause
-            ps.setString(20, batch.getId());
-            
-            ps.executeUpdate();
+        lock.lock();
+        try {
+            try (PreparedStatement ps = conn.prepareStatement(UPDATE_BATCH_SQL)) {
+                bindBatchUpdate(ps, batch);
+                ps.executeUpdate();
+            }
+            conn.commit();
+        } finally {
+            lock.unlock();
         }
-        conn.commit();
+    }
+
+    public void updateBatches(List<Batch> batches) throws SQLException {
+        lock.lock();
+        try {
+            try (PreparedStatement ps = conn.prepareStatement(UPDATE_BATCH_SQL)) {
+                for (Batch batch : batches) {
+                    bindBatchUpdate(ps, batch);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void bindBatchUpdate(PreparedStatement ps, Batch batch) throws SQLException {
+        ps.setString(1, batch.getOpenaiBatchId());
+        ps.setString(2, batch.getStatus().name());
+        ps.setString(3, batch.getEndpoint());
+        ps.setString(4, batch.getInputFileId());
+        ps.setString(5, batch.getOutputFileId());
+        ps.setString(6, batch.getErrorFileId());
+        ps.setString(7, batch.getCompletionWindow());
+        ps.setString(8, serializeMetadata(batch.getMetadata()));
+        ps.setString(9, serializeRequestCounts(batch.getRequestCounts()));
+        
+        // Timestamps
+        ps.setTimestamp(10, batch.getSubmittedAt() == null ? null : Timestamp.from(batch.getSubmittedAt()));
+        ps.setTimestamp(11, batch.getCompletedAt() == null ? null : Timestamp.from(batch.getCompletedAt()));
+        ps.setTimestamp(12, batch.getFailedAt() == null ? null : Timestamp.from(batch.getFailedAt()));
+        ps.setTimestamp(13, batch.getExpiredAt() == null ? null : Timestamp.from(batch.getExpiredAt()));
+        ps.setTimestamp(14, batch.getExpiresAt() == null ? null : Timestamp.from(batch.getExpiresAt()));
+        ps.setTimestamp(15, batch.getFinalizingAt() == null ? null : Timestamp.from(batch.getFinalizingAt()));
+        ps.setTimestamp(16, batch.getCancellingAt() == null ? null : Timestamp.from(batch.getCancellingAt()));
+        ps.setTimestamp(17, batch.getCancelledAt() == null ? null : Timestamp.from(batch.getCancelledAt()));
+        
+        // Legacy fields
+        ps.setInt(18, batch.getTotalRequests());
+        ps.setInt(19, batch.getCompletedRequests());
+        ps.setInt(20, batch.isCancelRequested() ? 1 : 0);
+        
+        // WHERE clause
+        ps.setString(21, batch.getId());
     }
 
 
     public void insertBatchRequest(String batchId, BatchRequest request) throws SQLException {
-        final String sql = "INSERT INTO batch_requests(batch_id, custom_id, request_data, status) " +
-                           "VALUES(?,?,?,?)";
+        lock.lock();
+        try {
+            final String sql = "INSERT INTO batch_requests(batch_id, custom_id, request_data, status) " +
+                               "VALUES(?,?,?,?)";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, batchId);
+                ps.setString(2, request.getCustomId());
+                ps.setString(3, request.getRequestData());
+                ps.setString(4, request.getStatus().name());
+                ps.executeUpdate();
+            }
+            conn.commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void insertBatchRequests(String batchId, List<BatchRequest> requests) throws SQLException {
+        lock.lock();
+        try {
+            insertRequestRows(batchId, requests);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insertRequestRows(String batchId, List<BatchRequest> requests) throws SQLException {
+        final String sql = "INSERT INTO batch_requests(batch_id, custom_id, request_data, status, request_hash) " +
+                           "VALUES(?,?,?,?,?)";
+        boolean buffered = false;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, batchId);
-            ps.setString(2, request.getCustomId());
-            ps.setString(3, request.getRequestData());
-            ps.setString(4, request.getStatus().name());
-            ps.executeUpdate();
+            for (BatchRequest request : requests) {
+                ps.setString(1, batchId);
+                ps.setString(2, request.getCustomId());
+                ps.setString(3, request.getRequestData());
+                ps.setString(4, request.getStatus().name());
+                ps.setString(5, request.getRequestHash());
+                ps.addBatch();
+                buffered |= request.getBufferSeq() != null;
+            }
+            ps.executeBatch();
+        }
+        if (!buffered) {
+            return;
+        }
+        // From here the batch carries these requests, so recovery must not send them again
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE request_buffer SET sent_batch_id=? WHERE seq=?")) {
+            for (BatchRequest request : requests) {
+                if (request.getBufferSeq() != null) {
+                    ps.setString(1, batchId);
+                    ps.setLong(2, request.getBufferSeq());
+                    ps.addBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // Stores a batch that is waiting for room to be uploaded, with its requests, in one transaction
+    public void enqueueBatch(Batch batch, List<BatchRequest> requests, long bytes) throws SQLException {
+        lock.lock();
+        try {
+            insertBatchRow(batch);
+            insertRequestRows(batch.getId(), requests);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO submission_queue(batch_id, bytes) VALUES(?,?)")) {
+                ps.setString(1, batch.getId());
+                ps.setLong(2, bytes);
+                ps.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void dequeueBatch(String batchId) throws SQLException {
+        lock.lock();
+        try {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM submission_queue WHERE batch_id=?")) {
+                ps.setString(1, batchId);
+                ps.executeUpdate();
+            }
+            conn.commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Cached responses for these hashes that were stored at or after notBefore; marks each hit as used
+    public Map<String, String> getCachedResponses(Collection<String> requestHashes, long notBefore, long now)
+            throws SQLException {
+        lock.lock();
+        try {
+            Map<String, String> found = new HashMap<>();
+            List<String> hashes = new ArrayList<>(requestHashes);
+            for (int from = 0; from < hashes.size(); from += IN_LIST_CHUNK) {
+                List<String> chunk = hashes.subList(from, Math.min(from + IN_LIST_CHUNK, hashes.size()));
+                List<String> hits = new ArrayList<>(chunk.size());
+                try (PreparedStatement select = conn.prepareStatement(
+                        "SELECT request_hash, response_data FROM response_cache WHERE created_at>=? AND request_hash IN ("
+                                + placeholders(chunk.size()) + ")")) {
+                    select.setLong(1, notBefore);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        select.setString(i + 2, chunk.get(i));
+                    }
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            found.put(rs.getString(1), rs.getString(2));
+                            hits.add(rs.getString(1));
+                        }
+                    }
+                }
+                if (hits.isEmpty()) {
+                    continue;
+                }
+                try (PreparedStatement touch = conn.prepareStatement(
+                        "UPDATE response_cache SET last_used_at=? WHERE request_hash IN (" + placeholders(hits.size()) + ")")) {
+                    touch.setLong(1, now);
+                    for (int i = 0; i < hits.size(); i++) {
+                        touch.setString(i + 2, hits.get(i));
+                    }
+                    touch.executeUpdate();
+                }
+            }
+            conn.commit();
+            return found;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Copies every successful response of the batch that has a hash into the cache in one statement
+    public int cacheResponses(String batchId, long now) throws SQLException {
+        lock.lock();
+        try {
+            int cached;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT OR REPLACE INTO response_cache(request_hash, response_data, bytes, created_at, last_used_at) " +
+                    "SELECT request_hash, response_data, length(CAST(response_data AS BLOB)), ?, ? FROM batch_requests " +
+                    "WHERE batch_id=? AND status='COMPLETED' AND request_hash IS NOT NULL AND response_data IS NOT NULL")) {
+                ps.setLong(1, now);
+                ps.setLong(2, now);
+                ps.setString(3, batchId);
+                cached = ps.executeUpdate();
+            }
+            conn.commit();
+            return cached;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops entries stored before createdBefore, then the least recently used ones until the rest fit in maxBytes;
+    // returns how many were removed
+    public int evictCachedResponses(long createdBefore, long maxBytes) throws SQLException {
+        lock.lock();
+        try {
+            int evicted;
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM response_cache WHERE created_at<?")) {
+                ps.setLong(1, createdBefore);
+                evicted = ps.executeUpdate();
+            }
+            long total;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COALESCE(SUM(bytes), 0) FROM response_cache")) {
+                total = rs.next() ? rs.getLong(1) : 0;
+            }
+            if (total > maxBytes) {
+                List<String> victims = new ArrayList<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(
+                             "SELECT request_hash, bytes FROM response_cache ORDER BY last_used_at, created_at")) {
+                    while (total > maxBytes && rs.next()) {
+                        victims.add(rs.getString(1));
+                        total -= rs.getLong(2);
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM response_cache WHERE request_hash=?")) {
+                    for (String victim : victims) {
+                        ps.setString(1, victim);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                evicted += victims.size();
+            }
+            conn.commit();
+            return evicted;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCachedResponseBytes() throws SQLException {
+        lock.lock();
+        try {
+            long total;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COALESCE(SUM(bytes), 0) FROM response_cache")) {
+                total = rs.next() ? rs.getLong(1) : 0;
+            }
+            conn.commit();
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Holds a single request handed to the accumulator until it is answered; sets the request's buffer seq
+    public void bufferRequest(BatchRequest request) throws SQLException {
+        lock.lock();
+        try {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO request_buffer(custom_id, request_data) VALUES(?,?)")) {
+                ps.setString(1, request.getCustomId());
+                ps.setString(2, request.getRequestData());
+                ps.executeUpdate();
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                rs.next();
+                request.setBufferSeq(rs.getLong(1));
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void removeBufferedRequests(Collection<Long> seqs) throws SQLException {
+        lock.lock();
+        try {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM request_buffer WHERE seq=?")) {
+                for (long seq : seqs) {
+                    ps.setLong(1, seq);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Buffered requests an earlier run never got into a batch, oldest first. Ones that did make it into a batch
+    // are dropped from the buffer here; that batch is resumed like any other
+    public List<BatchRequest> recoverBufferedRequests() throws SQLException {
+        lock.lock();
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM request_buffer WHERE sent_batch_id IS NOT NULL");
+            }
+            List<BatchRequest> requests = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT seq, custom_id, request_data FROM request_buffer ORDER BY seq");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    BatchRequest request = new BatchRequest(rs.getString("custom_id"), rs.getString("request_data"));
+                    request.setBufferSeq(rs.getLong("seq"));
+                    requests.add(request);
+                }
+            }
+            conn.commit();
+            return requests;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Queued batches in the order they were queued
+    public List<Batch> getQueuedBatches() throws SQLException {
+        lock.lock();
+        try {
+            final String sql = "SELECT b.* FROM submission_queue q JOIN batches b ON b.id = q.batch_id ORDER BY q.seq";
+            List<Batch> list = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapBatch(rs));
+                }
+            }
+            conn.commit();
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Size recorded when the batch was queued, or -1 if it is not queued
+    public long getQueuedBytes(String batchId) throws SQLException {
+        lock.lock();
+        try {
+            long bytes = -1;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT bytes FROM submission_queue WHERE batch_id=?")) {
+                ps.setString(1, batchId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        bytes = rs.getLong(1);
+                    }
+                }
+            }
+            conn.commit();
+            return bytes;
+        } finally {
+            lock.unlock();
         }
-        conn.commit();
     }
 
     public void updateBatchRequest(String batchId, BatchRequest request) throws SQLException {
-        final String sql = "UPDATE batch_requests SET response_data=?, status=? " +
-                           "WHERE batch_id=? AND custom_id=?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, request.getResponseData());
-            ps.setString(2, request.getStatus().name());
-            ps.setString(3, batchId);
-            ps.setString(4, request.getCustomId());
-            ps.executeUpdate();
+        lock.lock();
+        try {
+            final String sql = "UPDATE batch_requests SET response_data=?, status=?, error_code=?, error_message=? " +
+                               "WHERE batch_id=? AND custom_id=?";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, request.getResponseData());
+                ps.setString(2, request.getStatus().name());
+                ps.setString(3, request.getErrorCode());
+                ps.setString(4, request.getErrorMessage());
+                ps.setString(5, batchId);
+                ps.setString(6, request.getCustomId());
+                ps.executeUpdate();
+            }
+            conn.commit();
+        } finally {
+            lock.unlock();
         }
-        conn.commit();
     }
 
 
+    public void updateBatchRequests(String batchId, List<BatchRequest> requests) throws SQLException {
+        lock.lock();
+        try {
+            final String sql = "UPDATE batch_requests SET response_data=?, status=?, error_code=?, error_message=? " +
+                               "WHERE batch_id=? AND custom_id=?";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (BatchRequest request : requests) {
+                    ps.setString(1, request.getResponseData());
+                    ps.setString(2, request.getStatus().name());
+                    ps.setString(3, request.getErrorCode());
+                    ps.setString(4, request.getErrorMessage());
+                    ps.setString(5, batchId);
+                    ps.setString(6, request.getCustomId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes result lines straight from the file, for callers that stream them without keeping the requests around
+    public void updateBatchResults(String batchId, List<BatchResult> results) throws SQLException {
+        lock.lock();
+        try {
+            final String sql = "UPDATE batch_requests SET response_data=?, status=?, error_code=?, error_message=? " +
+                               "WHERE batch_id=? AND custom_id=?";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (BatchResult result : results) {
+                    boolean success = result.isSuccess();
+                    ps.setString(1, success ? result.getResponseJson() : null);
+                    ps.setString(2, (success ? BatchRequest.RequestStatus.COMPLETED : BatchRequest.RequestStatus.FAILED).name());
+                    ps.setString(3, result.getErrorCode());
+                    ps.setString(4, result.getErrorMessage());
+                    ps.setString(5, batchId);
+                    ps.setString(6, result.getCustomId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Set<String> getCustomIds(String batchId) throws SQLException {
+        lock.lock();
+        try {
+            final String sql = "SELECT custom_id FROM batch_requests WHERE batch_id=?";
+            Set<String> ids = new HashSet<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, batchId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getString(1));
+                    }
+                }
+            }
+            conn.commit();
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public List<Batch> getIncompleteBatches() throws SQLException {
-        final String sql = "SELECT * FROM batches WHERE status IN ('PENDING','SUBMITTED','VALIDATING','IN_PROGRESS','FINALIZING','CANCELLING')";
-        List<Batch> list = new ArrayList<>();
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(mapBatch(rs));
+        lock.lock();
+        try {
+            final String sql = "SELECT * FROM batches WHERE status IN ('PENDING','SUBMITTED','VALIDATING','IN_PROGRESS','FINALIZING','CANCELLING')";
+            List<Batch> list = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapBatch(rs));
+                }
+            }
+            // Autocommit is off, so end the read transaction rather than hold a shared lock on the file
+            conn.commit();
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Batch> getBatchesBySubmission(String submissionId) throws SQLException {
+        lock.lock();
+        try {
+            final String sql = "SELECT * FROM batches WHERE submission_id=? ORDER BY shard_index";
+            List<Batch> list = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, submissionId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(mapBatch(rs));
+                    }
+                }
             }
+            conn.commit();
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The most recently finished COMPLETED batches, newest first, e.g. to learn how long batches take
+    public List<Batch> getRecentlyCompletedBatches(int limit) throws SQLException {
+        lock.lock();
+        try {
+            final String sql = "SELECT * FROM batches WHERE status='COMPLETED' AND completed_at IS NOT NULL " +
+                    "ORDER BY completed_at DESC LIMIT ?";
+            List<Batch> list = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(mapBatch(rs));
+                    }
+                }
+            }
+            conn.commit();
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Follow-up batches that resubmitted what the given batch left unprocessed, oldest first
+    public List<Batch> getBatchesByParent(String parentBatchId) throws SQLException {
+        lock.lock();
+        try {
+            final String sql = "SELECT * FROM batches WHERE parent_batch_id=? ORDER BY created_at";
+            List<Batch> list = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, parentBatchId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(mapBatch(rs));
+                    }
+                }
+            }
+            conn.commit();
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Batch getBatch(String batchId) throws SQLException {
+        return findBatch("SELECT * FROM batches WHERE id=?", batchId);
+    }
+
+    // openai_batch_id is UNIQUE, so this is an index lookup
+    public Batch getBatchByOpenaiId(String openaiBatchId) throws SQLException {
+        return findBatch("SELECT * FROM batches WHERE openai_batch_id=?", openaiBatchId);
+    }
+
+    private Batch findBatch(String sql, String key) throws SQLException {
+        lock.lock();
+        try {
+            Batch batch = null;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        batch = mapBatch(rs);
+                    }
+                }
+            }
+            conn.commit();
+            return batch;
+        } finally {
+            lock.unlock();
         }
-        return list;
     }
 
     public List<BatchRequest> getBatchRequests(String batchId) throws SQLException {
-        final String sql = "SELECT * FROM batch_requests WHERE batch_id=?";
-        List<BatchRequest> requests = new ArrayList<>();
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, batchId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    BatchRequest br = new BatchRequest(
-                            rs.getString("custom_id"),
-                            rs.getString("request_data"));
-                    br.setResponseData(rs.getString("response_data"));
-                    br.setStatus(BatchRequest.RequestStatus.valueOf(rs.getString("status")));
-                    requests.add(br);
+        lock.lock();
+        try {
+            final String sql = "SELECT * FROM batch_requests WHERE batch_id=?";
+            List<BatchRequest> requests = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, batchId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        requests.add(mapRequest(rs));
+                    }
+                }
+            }
+            conn.commit();
+            return requests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The batch's rows for the given request hashes, keyed by hash; hashes the batch does not hold are left out.
+    // One pass over the batch, only building rows that match
+    public Map<String, BatchRequest> getBatchRequestsByHash(String batchId, Set<String> requestHashes)
+            throws SQLException {
+        lock.lock();
+        try {
+            final String sql = "SELECT * FROM batch_requests WHERE batch_id=? AND request_hash IS NOT NULL";
+            Map<String, BatchRequest> found = new HashMap<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, batchId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next() && found.size() < requestHashes.size()) {
+                        String hash = rs.getString("request_hash");
+                        if (requestHashes.contains(hash)) {
+                            found.putIfAbsent(hash, mapRequest(rs));
+                        }
+                    }
                 }
             }
+            conn.commit();
+            return found;
+        } finally {
+            lock.unlock();
         }
-        return requests;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private BatchRequest mapRequest(ResultSet rs) throws SQLException {
+        BatchRequest br = new BatchRequest(
+                rs.getString("custom_id"),
+                rs.getString("request_data"));
+        br.setResponseData(rs.getString("response_data"));
+        br.setStatus(BatchRequest.RequestStatus.valueOf(rs.getString("status")));
+        br.setErrorCode(rs.getString("error_code"));
+        br.setErrorMessage(rs.getString("error_message"));
+        br.setRequestHash(rs.getString("request_hash"));
+        return br;
     }
 
 
@@ -272,6 +931,14 @@ public class DatabaseManager {
         b.setTotalRequests(rs.getInt("total_requests"));
         b.setCompletedRequests(rs.getInt("completed_requests"));
         
+        b.setSubmissionId(rs.getString("submission_id"));
+        b.setShardIndex(rs.getInt("shard_index"));
+        b.setShardCount(Math.max(1, rs.getInt("shard_count")));
+        b.setModel(rs.getString("model"));
+        b.setEstimatedTokens(rs.getLong("estimated_tokens"));
+        b.setParentBatchId(rs.getString("parent_batch_id"));
+        b.setCancelRequested(rs.getInt("cancel_requested") != 0);
+        
         return b;
     }
 
@@ -322,14 +989,22 @@ public class DatabaseManager {
 
 
     public void clearDatabase() throws SQLException {
-        try (Statement stmt = conn.createStatement()) {
-            // Drop tables in correct order (child tables first due to foreign keys)
-            stmt.executeUpdate("DROP TABLE IF EXISTS batch_requests");
-            stmt.executeUpdate("DROP TABLE IF EXISTS batches");
-        }
-        conn.commit();
+        lock.lock();
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                // Drop tables in correct order (child tables first due to foreign keys)
+                stmt.executeUpdate("DROP TABLE IF EXISTS submission_queue");
+                stmt.executeUpdate("DROP TABLE IF EXISTS request_buffer");
+                stmt.executeUpdate("DROP TABLE IF EXISTS response_cache");
+                stmt.executeUpdate("DROP TABLE IF EXISTS batch_requests");
+                stmt.executeUpdate("DROP TABLE IF EXISTS batches");
+            }
+            conn.commit();
         
-        ensureTables();
+            ensureTables();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public String getDatabasePath() {
@@ -0,0 +1,113 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.RequestCounts;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public class AdaptivePollPolicy implements PollPolicy {
+
+    private Duration minDelay = Duration.ofSeconds(2);
+    private Duration maxDelay = Duration.ofMinutes(5);
+    private Duration validatingDelay = Duration.ofSeconds(5);
+    private Duration noProgressDelay = Duration.ofSeconds(15);
+
+    public AdaptivePollPolicy() {
+    }
+
+    @Override
+    public Duration nextPollDelay(Batch batch, PollProgress progress) {
+        Duration delay = switch (batch.getStatus()) {
+            // Output files are being written; the result is seconds away
+            case FINALIZING, CANCELLING -> minDelay;
+            case IN_PROGRESS -> inProgressDelay(batch, progress);
+            default -> validatingDelay;
+        };
+        return clamp(capAtExpiry(batch, delay));
+    }
+
+    @Override
+    public Duration minimumDelay() {
+        return minDelay;
+    }
+
+    private Duration inProgressDelay(Batch batch, PollProgress progress) {
+        RequestCounts counts = batch.getRequestCounts();
+        double rate = progress.getCompletionRate();
+        if (counts != null && counts.getTotal() > 0 && rate > 0) {
+            int remaining = Math.max(0, counts.getTotal() - counts.getCompleted() - counts.getFailed());
+            // Check back halfway to the projected finish, so the estimate is refreshed before it is relied on
+            return Duration.ofMillis((long) (remaining / rate * 500));
+        }
+        // No measurable progress yet: back off, doubling per poll that saw nothing change
+        int doublings = Math.min(progress.getPollsWithoutProgress(), 10);
+        return noProgressDelay.multipliedBy(1L << doublings);
+    }
+
+    private Duration capAtExpiry(Batch batch, Duration delay) {
+        if (batch.getExpiresAt() == null) {
+            return delay;
+        }
+        Duration untilExpiry = Duration.between(Instant.now(), batch.getExpiresAt());
+        if (untilExpiry.isNegative() || untilExpiry.isZero()) {
+            // Past its expiry the batch only has to switch to expired, which can take a while; no faster than a batch
+            // showing no progress, rather than the minimum for every batch still waiting on it
+            return delay.compareTo(noProgressDelay) < 0 ? noProgressDelay : delay;
+        }
+        return untilExpiry.compareTo(delay) < 0 ? untilExpiry : delay;
+    }
+
+    private Duration clamp(Duration delay) {
+        if (delay.compareTo(minDelay) < 0) {
+            return minDelay;
+        }
+        return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+    }
+
+    public Duration getMinDelay() {
+        return minDelay;
+    }
+
+    public AdaptivePollPolicy setMinDelay(Duration minDelay) {
+        requireNonNegative(minDelay, "minDelay");
+        this.minDelay = minDelay;
+        return this;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public AdaptivePollPolicy setMaxDelay(Duration maxDelay) {
+        requireNonNegative(maxDelay, "maxDelay");
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    public Duration getValidatingDelay() {
+        return validatingDelay;
+    }
+
+    public AdaptivePollPolicy setValidatingDelay(Duration validatingDelay) {
+        requireNonNegative(validatingDelay, "validatingDelay");
+        this.validatingDelay = validatingDelay;
+        return this;
+    }
+
+    public Duration getNoProgressDelay() {
+        return noProgressDelay;
+    }
+
+    public AdaptivePollPolicy setNoProgressDelay(Duration noProgressDelay) {
+        requireNonNegative(noProgressDelay, "noProgressDelay");
+        this.noProgressDelay = noProgressDelay;
+        return this;
+    }
+
+    private static void requireNonNegative(Duration value, String name) {
+        if (value == null || value.isNegative()) {
+            throw new IllegalArgumentException(name + " cannot be null or negative");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.openai.batchmanager.manager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+public class AdmissionController {
+
+    private final Map<String, Long> limits;
+    private final long defaultLimit;
+
+    private final Map<String, Long> enqueued = new HashMap<>();
+    private final Map<String, Reservation> reservations = new HashMap<>();
+    private final Map<String, Deque<Waiter>> waiting = new HashMap<>();
+
+    public AdmissionController(Map<String, Long> limits, long defaultLimit) {
+        if (defaultLimit <= 0) {
+            throw new IllegalArgumentException("defaultLimit must be positive");
+        }
+        this.limits = new HashMap<>(limits);
+        this.defaultLimit = defaultLimit;
+    }
+
+    // Completes once the batch fits under its model's budget; batches for the same model are admitted in order
+    public CompletableFuture<Void> acquire(String batchId, String model, long tokens) {
+        long limit = limitFor(model);
+        if (tokens > limit) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Batch needs an estimated " + tokens + " tokens but the enqueued limit for " + model + " is " + limit));
+        }
+
+        synchronized (this) {
+            Deque<Waiter> queue = waiting.get(model);
+            if ((queue == null || queue.isEmpty()) && enqueuedFor(model) + tokens <= limit) {
+                reserve(batchId, model, tokens);
+                return CompletableFuture.completedFuture(null);
+            }
+            Waiter waiter = new Waiter(batchId, tokens);
+            waiting.computeIfAbsent(model, m -> new ArrayDeque<>()).add(waiter);
+            return waiter.admitted;
+        }
+    }
+
+    // Counts a batch that is already in flight, e.g. one found in the database on startup
+    public synchronized void restore(String batchId, String model, long tokens) {
+        if (!reservations.containsKey(batchId)) {
+            reserve(batchId, model, tokens);
+        }
+    }
+
+    public void release(String batchId) {
+        List<Waiter> admitted = new ArrayList<>();
+        synchronized (this) {
+            Reservation reservation = reservations.remove(batchId);
+            if (reservation == null) {
+                return;
+            }
+            enqueued.merge(reservation.model, -reservation.tokens, Long::sum);
+
+            Deque<Waiter> queue = waiting.get(reservation.model);
+            long limit = limitFor(reservation.model);
+            while (queue != null && !queue.isEmpty()
+                    && enqueuedFor(reservation.model) + queue.peek().tokens <= limit) {
+                Waiter waiter = queue.poll();
+                reserve(waiter.batchId, reservation.model, waiter.tokens);
+                admitted.add(waiter);
+            }
+        }
+        // Completed outside the lock so dependent stages cannot re-enter it
+        admitted.forEach(waiter -> waiter.admitted.complete(null));
+    }
+
+    public void cancelWaiting() {
+        List<Waiter> cancelled = new ArrayList<>();
+        synchronized (this) {
+            waiting.values().forEach(cancelled::addAll);
+            waiting.clear();
+        }
+        cancelled.forEach(waiter -> waiter.admitted.completeExceptionally(new CancellationException("Admission cancelled")));
+    }
+
+    public synchronized long getEnqueuedTokens(String model) {
+        return enqueuedFor(model);
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiting.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    private long limitFor(String model) {
+        return limits.getOrDefault(model, defaultLimit);
+    }
+
+    private long enqueuedFor(String model) {
+        return enqueued.getOrDefault(model, 0L);
+    }
+
+    private void reserve(String batchId, String model, long tokens) {
+        reservations.put(batchId, new Reservation(model, tokens));
+        enqueued.merge(model, tokens, Long::sum);
+    }
+
+    private static class Reservation {
+        final String model;
+        final long tokens;
+
+        Reservation(String model, long tokens) {
+            this.model = model;
+            this.tokens = tokens;
+        }
+    }
+
+    private static class Waiter {
+        final String batchId;
+        final long tokens;
+        final CompletableFuture<Void> admitted = new CompletableFuture<>();
+
+        Waiter(String batchId, long tokens) {
+            this.batchId = batchId;
+            this.tokens = tokens;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.openai.batchmanager.manager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+// A counting semaphore whose permits are handed out as futures, so waiting for one never blocks a thread
+public class AsyncPermits {
+
+    private final int permits;
+    private int inUse;
+    private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+    public AsyncPermits(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        this.permits = permits;
+    }
+
+    public synchronized CompletableFuture<Void> acquire() {
+        if (inUse < permits) {
+            inUse++;
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiting.add(waiter);
+        return waiter;
+    }
+
+    public void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                inUse--;
+                return;
+            }
+        }
+        // The permit passes straight to the next waiter, completed outside the lock
+        next.complete(null);
+    }
+
+    public void cancelWaiting() {
+        List<CompletableFuture<Void>> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        cancelled.forEach(waiter -> waiter.completeExceptionally(new CancellationException("Permit cancelled")));
+    }
+
+    public synchronized int getInUse() {
+        return inUse;
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+}
@@ -1,34 +1,88 @@
 package com.openai.batchmanager.manager;
 
+import com.openai.batchmanager.client.HttpTransportConfig;
 import com.openai.batchmanager.client.OpenAIClient;
 import com.openai.batchmanager.db.DatabaseManager;
 import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchEvent;
+import com.openai.batchmanager.model.BatchOutcome;
 import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.model.BatchResult;
+import com.openai.batchmanager.model.BatchStatus;
+import com.openai.batchmanager.model.RequestCounts;
 import com.openai.batchmanager.service.BatchService;
+import com.openai.batchmanager.service.RequestCoalescer;
+import com.openai.batchmanager.service.ResponseCache;
+import com.openai.batchmanager.util.ExecutorUtils;
+import com.openai.batchmanager.util.RequestHash;
+import com.openai.batchmanager.util.RequestRoute;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class BatchManager implements AutoCloseable {
 
-    private static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(20);
+    // Set on a request whose shard never started because the submission stopped partway, e.g. the thread waiting
+    // for a slot under the BLOCK overflow policy was interrupted
+    public static final String NOT_SUBMITTED = "not_submitted";
+    // Failure codes for lines an expired or cancelled batch never ran, whether or not the error file lists them
+    private static final Set<String> UNPROCESSED_CODES = Set.of("batch_expired", "batch_cancelled");
 
     private final BatchService service;
     private final ExecutorService executor;
-    private final Duration pollInterval;
+    private final PollScheduler pollScheduler;
+    private final ShardPlanner shardPlanner;
+    private final TokenEstimator tokenEstimator;
+    private final AdmissionController admission;
+    private final SubmissionLimiter limiter;
+    private final OverflowPolicy overflowPolicy;
+    private final AsyncPermits fetchPermits;
+    private final WebhookListener webhookListener;
+    private final RequestAccumulator accumulator;
+    private final ResponseCache responseCache;
+    private final boolean coalesce;
+    private final int maxSalvageAttempts;
+    private final TurnaroundEstimator turnaround;
+    private final SyncExecutor syncExecutor;
+    private final Duration syncReserve;
+    // Batches whose requests were answered synchronously first; whatever they still produce is ignored
+    private final Set<String> superseded = ConcurrentHashMap.newKeySet();
 
+    // The convenience constructors run local work on virtual threads when the runtime has them (Java 21+)
     public BatchManager(String openAiApiKey) throws SQLException {
-        this(openAiApiKey, new DatabaseManager(), Executors.newCachedThreadPool(), DEFAULT_POLL_INTERVAL);
+        this(new OpenAIClient(openAiApiKey), new DatabaseManager(), ExecutorUtils.newDefaultExecutor(), new BatchManagerOptions());
     }
 
     public BatchManager(String openAiApiKey, DatabaseManager databaseManager) throws SQLException {
-        this(openAiApiKey, databaseManager, Executors.newCachedThreadPool(), DEFAULT_POLL_INTERVAL);
+        this(new OpenAIClient(openAiApiKey), databaseManager, ExecutorUtils.newDefaultExecutor(), new BatchManagerOptions());
+    }
+
+    public BatchManager(String openAiApiKey, DatabaseManager databaseManager, HttpTransportConfig transport) {
+        this(new OpenAIClient(openAiApiKey, transport), databaseManager, ExecutorUtils.newDefaultExecutor(), new BatchManagerOptions());
     }
 
     public BatchManager(String openAiApiKey,
@@ -36,11 +90,79 @@ public class BatchManager implements AutoCloseable {
                         ExecutorService executor,
                         Duration pollInterval) throws SQLException {
 
+        this(new OpenAIClient(openAiApiKey), databaseManager, executor,
+                new BatchManagerOptions().setPollInterval(pollInterval));
+    }
+
+    public BatchManager(OpenAIClient client,
+                        DatabaseManager databaseManager,
+                        ExecutorService executor,
+                        BatchManagerOptions options) {
+
         this.executor     = executor;
-        this.pollInterval = pollInterval;
+        this.shardPlanner = new ShardPlanner(options.getMaxRequestsPerBatch(), options.getMaxBytesPerBatch());
+
+        this.tokenEstimator = new TokenEstimator();
+        this.admission = new AdmissionController(options.getEnqueuedTokenLimits(), options.getDefaultEnqueuedTokenLimit());
+        this.limiter = new SubmissionLimiter(options.getMaxInFlightBatches(), options.getMaxConcurrentUploads(),
+                options.getMaxPendingBytes());
+        this.overflowPolicy = options.getOverflowPolicy();
+        this.fetchPermits = new AsyncPermits(options.getMaxConcurrentResultFetches());
+
+        this.responseCache = options.isResponseCacheEnabled()
+                ? new ResponseCache(databaseManager, options.getResponseCacheTtl(), options.getResponseCacheMaxBytes())
+                : null;
+        this.service = new BatchService(databaseManager, client, responseCache, executor);
+        this.coalesce = options.isCoalesceInFlightRequests();
+        this.maxSalvageAttempts = options.getMaxSalvageAttempts();
+        this.syncExecutor = new SyncExecutor(client, options.getMaxConcurrentSyncRequests());
+        this.syncReserve = options.getDeadlineSyncReserve();
+        this.turnaround = new TurnaroundEstimator();
+        try {
+            List<Batch> recent = service.getRecentlyCompletedBatches(TurnaroundEstimator.MAX_SAMPLES * 4);
+            for (int i = recent.size() - 1; i >= 0; i--) {
+                turnaround.record(recent.get(i));
+            }
+        } catch (SQLException ex) {
+            // Without history every batch is sent and only judged by its progress at the reserve
+        }
+        // Webhooks report completion, so polling only has to catch events that never arrive
+        PollPolicy pollPolicy = options.isWebhooksEnabled()
+                ? new FixedPollPolicy(options.getWebhookSafetyNetInterval())
+                : options.getPollPolicy();
+        this.pollScheduler = new PollScheduler(service, pollPolicy, options.getPollThreads(),
+                options.getPollJitter(), options.getBulkPollThreshold(), options.getBulkPollMaxPages());
 
-        OpenAIClient client = new OpenAIClient(openAiApiKey);
-        this.service = new BatchService(databaseManager, client);
+        if (options.isWebhooksEnabled()) {
+            try {
+                this.webhookListener = new WebhookListener(options.getWebhookAddress(), options.getWebhookPath(),
+                        options.getWebhookSecret(), pollScheduler::pollNow);
+            } catch (IOException ex) {
+                pollScheduler.close();
+                throw new IllegalStateException("Failed to start webhook listener on " + options.getWebhookAddress(), ex);
+            }
+        } else {
+            this.webhookListener = null;
+        }
+
+        this.accumulator = new RequestAccumulator(service, requests -> submitForOutcomeAsync(requests, null, null, null),
+                options.getAccumulatorMaxRequests(), options.getAccumulatorMaxBytes(), options.getAccumulatorLinger());
+        try {
+            accumulator.recover();
+        } catch (SQLException ex) {
+            close();
+            throw new IllegalStateException("Failed to load buffered requests", ex);
+        }
+    }
+
+    // Hands over a single request to go out with others in the next batch (see RequestAccumulator). The future
+    // completes with the response body, or fails with a RequestFailedException carrying the request's error
+    public CompletableFuture<String> enqueue(String customId, String requestJson) {
+        return accumulator.enqueue(customId, requestJson);
+    }
+
+    public RequestAccumulator getRequestAccumulator() {
+        return accumulator;
     }
 
     public CompletableFuture<Map<String, String>> submitAsync(Map<String, String> customIdToRequestJson) {
@@ -48,106 +170,839 @@ public class BatchManager implements AutoCloseable {
     }
 
     public CompletableFuture<Map<String, String>> submitAsync(Map<String, String> customIdToRequestJson, Map<String, String> metadata) {
-        CompletableFuture<Map<String, String>> future = new CompletableFuture<>();
+        return submitAsync(customIdToRequestJson, metadata, null);
+    }
+
+    public CompletableFuture<Map<String, String>> submitAsync(Map<String, String> customIdToRequestJson,
+                                                             Map<String, String> metadata,
+                                                             ShardListener shardListener) {
+        return submitForOutcomeAsync(customIdToRequestJson, metadata, shardListener)
+                .thenApply(outcome -> new HashMap<>(outcome.getResponses()));
+    }
 
-        executor.submit(() -> {
+    // Requests a batch could not plausibly answer by the deadline are sent synchronously instead; see
+    // submitForOutcomeAsync with a deadline
+    public CompletableFuture<Map<String, String>> submitAsync(Map<String, String> customIdToRequestJson,
+                                                             Map<String, String> metadata,
+                                                             ShardListener shardListener,
+                                                             Instant deadline) {
+        return submitForOutcomeAsync(customIdToRequestJson, metadata, shardListener, deadline)
+                .thenApply(outcome -> new HashMap<>(outcome.getResponses()));
+    }
+
+    // Like submitAsync, but failed requests are reported with their errors instead of being left out
+    public CompletableFuture<BatchOutcome> submitForOutcomeAsync(Map<String, String> customIdToRequestJson,
+                                                                 Map<String, String> metadata,
+                                                                 ShardListener shardListener) {
+        return submitForOutcomeAsync(customIdToRequestJson, metadata, shardListener, null);
+    }
+
+    // With a deadline, a model whose recent batches took longer than the time left (less the sync reserve) has its
+    // requests sent synchronously through a bounded pool instead of batched; with no history at all, the batch is
+    // sent, so the history can build up. A batch that is sent is checked again
+    // when only the reserve is left; if its progress says it will miss, its requests are sent synchronously too,
+    // and whichever copy answers first wins. The batch is cancelled once the synchronous copy wins
+    public CompletableFuture<BatchOutcome> submitForOutcomeAsync(Map<String, String> customIdToRequestJson,
+                                                                 Map<String, String> metadata,
+                                                                 ShardListener shardListener,
+                                                                 Instant deadline) {
+        List<BatchRequest> requests;
+        try {
+            requests = toRequests(customIdToRequestJson);
+        } catch (IllegalArgumentException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        return submitForOutcomeAsync(requests, metadata, shardListener, deadline);
+    }
+
+    // The accumulator hands its buffered requests over as they are, so their buffer rows are marked as sent in the
+    // same transaction that puts them into a batch
+    private CompletableFuture<BatchOutcome> submitForOutcomeAsync(List<BatchRequest> requests,
+                                                                  Map<String, String> metadata,
+                                                                  ShardListener shardListener,
+                                                                  Instant deadline) {
+        String submissionId = UUID.randomUUID().toString();
+        StartedSubmission<BatchOutcome> started;
+        try {
+            started = startSubmission(submissionId, requests, metadata, deadline, true, shard -> {
+                CompletableFuture<BatchOutcome> results = awaitResults(shard);
+                return notifyShard(deadline == null ? results : hedge(shard, results, deadline), shard, shardListener);
+            });
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        List<CompletableFuture<BatchOutcome>> shardFutures = new ArrayList<>(started.shards);
+        if (!started.cached.isEmpty() || !started.unsent.isEmpty()) {
+            shardFutures.add(CompletableFuture.completedFuture(
+                    new BatchOutcome(submissionId, started.cached, started.unsent)));
+        }
+        if (!started.attached.isEmpty()) {
+            shardFutures.add(attachedOutcome(submissionId, started.attached));
+        }
+        return mergeShards(submissionId, shardFutures);
+    }
+
+    // Like submitForOutcomeAsync, but each result is handed over as soon as its line is read rather than once every
+    // shard is collected into one map. Shards are streamed one after another as they finish; missing results are
+    // reported as failures at the end of their shard, and the stream fails if any shard does
+    public Flow.Publisher<BatchResult> submitForStream(Map<String, String> customIdToRequestJson,
+                                                       Map<String, String> metadata) {
+        StartedSubmission<Batch> started;
+        try {
+            started = startSubmission(UUID.randomUUID().toString(), toRequests(customIdToRequestJson), metadata, null,
+                    false, this::awaitTerminal);
+        } catch (RuntimeException ex) {
+            return service.streamResults(List.of(CompletableFuture.failedFuture(ex)), executor);
+        }
+        List<BatchResult> cached = new ArrayList<>(started.cached.size());
+        for (Map.Entry<String, String> hit : started.cached.entrySet()) {
+            BatchResult result = new BatchResult(hit.getKey(), hit.getValue());
+            result.setStatusCode(200);
+            cached.add(result);
+        }
+        List<BatchResult> unsent = new ArrayList<>(started.unsent.size());
+        for (BatchRequest failed : started.unsent.values()) {
+            BatchResult result = new BatchResult(failed.getCustomId(), null);
+            result.setErrorCode(failed.getErrorCode());
+            result.setErrorMessage(failed.getErrorMessage());
+            unsent.add(result);
+        }
+        List<CompletableFuture<List<BatchResult>>> known = new ArrayList<>(3);
+        known.add(CompletableFuture.completedFuture(cached));
+        known.add(CompletableFuture.completedFuture(unsent));
+        if (!started.attached.isEmpty()) {
+            known.add(attachedResults(started.attached));
+        }
+        return service.streamResults(started.shards, known, executor);
+    }
+
+    // Streams the results of a batch that has already been submitted, by local or OpenAI ID, once it has finished.
+    // Meant for batches nothing else is collecting, e.g. after a restart
+    public Flow.Publisher<BatchResult> streamResults(String batchId) throws SQLException {
+        Batch batch = getBatch(batchId);
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch not found: " + batchId);
+        }
+        if (batch.getOpenaiBatchId() == null) {
+            throw new IllegalArgumentException("Batch " + batchId + " has not been uploaded yet");
+        }
+        CompletableFuture<Batch> finished = batch.getStatus().isTerminal()
+                ? CompletableFuture.completedFuture(batch)
+                : awaitTerminal(batch);
+        return service.streamResults(List.of(finished), executor);
+    }
+
+    // Shards the requests and starts every shard under the overflow policy; collect is what each one ends with once
+    // it has been uploaded. Requests the response cache can answer, or that are identical to one still running in
+    // another submission's batch, are left out, as are those a batch would not answer by the deadline. Only
+    // submissions whose results are ingested without a reader lead: a stream writes its rows as its subscriber reads
+    // them, which may be never, so others cannot wait on its batches. Throws if the submission is rejected outright
+    private <T> StartedSubmission<T> startSubmission(String submissionId,
+                                                           List<BatchRequest> requests,
+                                                           Map<String, String> metadata,
+                                                           Instant deadline,
+                                                           boolean leads,
+                                                           Function<Batch, CompletableFuture<T>> collect) {
+        // A batch takes one endpoint and, for the enqueued-token budgets, one model, so requests are split by both first
+        Map<RequestRoute, List<BatchRequest>> partitions = new LinkedHashMap<>();
+        for (BatchRequest request : requests) {
+            RequestRoute route;
             try {
-                Batch batch = new Batch(UUID.randomUUID().toString());
+                route = RequestRoute.scan(request.getRequestData());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Request '" + request.getCustomId() + "': " + ex.getMessage(), ex);
+            }
+            if (responseCache != null || coalesce) {
+                request.setRequestHash(RequestHash.of(route.getEndpoint(), request.getRequestData()));
+            }
+            partitions.computeIfAbsent(route, r -> new ArrayList<>()).add(request);
+        }
 
-                List<BatchRequest> reqs = customIdToRequestJson.entrySet()
-                        .stream()
-                        .map(e -> new BatchRequest(e.getKey(), e.getValue()))
-                        .toList();
+        Map<String, String> cached = Map.of();
+        if (responseCache != null) {
+            List<BatchRequest> all = new ArrayList<>(requests.size());
+            partitions.values().forEach(all::addAll);
+            cached = responseCache.lookup(all);
+            Set<String> hits = cached.keySet();
+            partitions.values().forEach(partition -> partition.removeIf(request -> hits.contains(request.getCustomId())));
+            partitions.values().removeIf(List::isEmpty);
+        }
 
-                if (metadata != null && !metadata.isEmpty()) {
-                    service.submitBatchWithMetadata(batch, reqs, metadata);
-                } else {
-                    service.submitBatch(batch, reqs);
+        // Checked after the cache, so a request is only attached when nothing could answer it straight away
+        Map<BatchRequest, CompletableFuture<BatchRequest>> attached = new LinkedHashMap<>();
+        if (coalesce) {
+            RequestCoalescer coalescer = service.getCoalescer();
+            for (List<BatchRequest> partition : partitions.values()) {
+                partition.removeIf(request -> {
+                    CompletableFuture<BatchRequest> row = coalescer.follow(request.getRequestHash());
+                    if (row != null) {
+                        attached.put(request, row);
+                    }
+                    return row != null;
+                });
+            }
+            partitions.values().removeIf(List::isEmpty);
+        }
+
+        if (deadline != null) {
+            // Judged per route, since a batch holds a single model and its turnaround is what is being guessed
+            Instant batchBy = deadline.minus(syncReserve);
+            Instant now = Instant.now();
+            partitions.entrySet().removeIf(partition -> {
+                RequestRoute route = partition.getKey();
+                Duration estimate = turnaround.estimate(route.getModel());
+                if (estimate == null || !now.plus(estimate).isAfter(batchBy)) {
+                    return false;
                 }
+                for (BatchRequest request : partition.getValue()) {
+                    attached.put(request, syncExecutor.execute(request, route.getEndpoint(), () -> false));
+                }
+                return true;
+            });
+        }
 
-                // Poll until complete
-                while (true) {
-                    if (service.pollBatchStatus(batch)) {
-                        Map<String, String> results = service.fetchResults(batch, reqs);
-                        future.complete(results);
-                        break;
-                    }
-                    Thread.sleep(pollInterval.toMillis());
+        List<List<BatchRequest>> shards = new ArrayList<>();
+        List<RequestRoute> routes = new ArrayList<>();
+        for (Map.Entry<RequestRoute, List<BatchRequest>> partition : partitions.entrySet()) {
+            for (List<BatchRequest> shard : shardPlanner.plan(partition.getValue())) {
+                shards.add(shard);
+                routes.add(partition.getKey());
+            }
+        }
+
+        // Every shard is its own OpenAI batch, tied back to this call through the submission ID
+        List<Batch> batches = new ArrayList<>(shards.size());
+        long[] shardBytes = new long[shards.size()];
+        for (int i = 0; i < shards.size(); i++) {
+            List<BatchRequest> reqs = shards.get(i);
+            Batch shard = new Batch(UUID.randomUUID().toString());
+            shard.setSubmissionId(submissionId);
+            shard.setShardIndex(i);
+            shard.setShardCount(shards.size());
+            shard.setEndpoint(routes.get(i).getEndpoint());
+            shard.setModel(routes.get(i).getModel());
+            shard.setEstimatedTokens(tokenEstimator.estimate(reqs));
+            batches.add(shard);
+            for (BatchRequest request : reqs) {
+                shardBytes[i] += ShardPlanner.estimateLineBytes(request);
+            }
+        }
+
+        if (overflowPolicy == OverflowPolicy.FAIL_FAST) {
+            // All or nothing, so a rejected submission leaves no shards behind
+            for (int i = 0; i < batches.size(); i++) {
+                if (!limiter.tryAcquire(batches.get(i).getId(), shardBytes[i])) {
+                    batches.subList(0, i).forEach(shard -> limiter.release(shard.getId()));
+                    throw new RejectedExecutionException(
+                            "Submission limits reached with " + limiter.getInFlightBatches() + " batches in flight");
+                }
+            }
+        }
+
+        if (coalesce && leads) {
+            // Before any upload starts, so a submission arriving meanwhile already attaches
+            for (int i = 0; i < batches.size(); i++) {
+                service.getCoalescer().lead(batches.get(i).getId(), shards.get(i));
+            }
+        }
+
+        List<CompletableFuture<T>> shardFutures = new ArrayList<>(shards.size());
+        Map<String, BatchRequest> unsent = new HashMap<>();
+        Exception stopped = null;
+        for (int i = 0; i < batches.size(); i++) {
+            Batch shard = batches.get(i);
+            List<BatchRequest> reqs = shards.get(i);
+            if (overflowPolicy == OverflowPolicy.FAIL_FAST || limiter.tryAcquire(shard.getId(), shardBytes[i])) {
+                shardFutures.add(startShard(shard, CompletableFuture.completedFuture(null),
+                        () -> service.submitBatchAsync(shard, reqs, metadata), collect));
+            } else if (overflowPolicy == OverflowPolicy.BLOCK) {
+                try {
+                    limiter.acquire(shard.getId(), shardBytes[i]).get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    limiter.release(shard.getId());
+                    stopped = ex;
+                    break;
+                } catch (ExecutionException | CancellationException ex) {
+                    limiter.release(shard.getId());
+                    stopped = ex;
+                    break;
+                }
+                shardFutures.add(startShard(shard, CompletableFuture.completedFuture(null),
+                        () -> service.submitBatchAsync(shard, reqs, metadata), collect));
+            } else {
+                // Spilled to the database so the requests do not wait on the heap
+                try {
+                    service.enqueueBatch(shard, reqs, metadata, shardBytes[i]);
+                } catch (SQLException ex) {
+                    stopped = ex;
+                    break;
                 }
-            } catch (Exception ex) {
-                future.completeExceptionally(ex);
+                shardFutures.add(startShard(shard, limiter.acquire(shard.getId(), shardBytes[i]),
+                        () -> service.submitQueuedBatchAsync(shard), collect));
             }
+        }
+        if (stopped != null) {
+            // The shards from here on never start, so nothing attached to them would ever be answered. Their requests
+            // are reported as failed next to the shards already on their way, rather than failing the whole
+            // submission and leaving those running with nobody to collect them
+            for (int i = shardFutures.size(); i < batches.size(); i++) {
+                service.getCoalescer().abandon(batches.get(i).getId(), stopped);
+                service.forget(batches.get(i));
+                for (BatchRequest request : shards.get(i)) {
+                    BatchRequest failed = new BatchRequest(request.getCustomId(), request.getRequestData());
+                    failed.setRequestHash(request.getRequestHash());
+                    failed.setStatus(BatchRequest.RequestStatus.FAILED);
+                    failed.setErrorCode(NOT_SUBMITTED);
+                    failed.setErrorMessage("Submission stopped before this request was sent: " + stopped);
+                    unsent.put(failed.getCustomId(), failed);
+                }
+            }
+        }
+        return new StartedSubmission<>(shardFutures, cached, attached, unsent);
+    }
+
+    private static List<BatchRequest> toRequests(Map<String, String> customIdToRequestJson) {
+        if (customIdToRequestJson == null || customIdToRequestJson.isEmpty()) {
+            throw new IllegalArgumentException("customIdToRequestJson cannot be null or empty");
+        }
+        List<BatchRequest> requests = new ArrayList<>(customIdToRequestJson.size());
+        for (Map.Entry<String, String> entry : customIdToRequestJson.entrySet()) {
+            requests.add(new BatchRequest(entry.getKey(), entry.getValue()));
+        }
+        return requests;
+    }
+
+    // The shards startSubmission sent, the responses it found without sending anything, the requests answered
+    // some other way: from an identical row in another submission's batch, or synchronously, and the requests it
+    // stopped before sending
+    private static final class StartedSubmission<T> {
+        final List<CompletableFuture<T>> shards;
+        final Map<String, String> cached;
+        final Map<BatchRequest, CompletableFuture<BatchRequest>> attached;
+        final Map<String, BatchRequest> unsent;
+
+        StartedSubmission(List<CompletableFuture<T>> shards, Map<String, String> cached,
+                          Map<BatchRequest, CompletableFuture<BatchRequest>> attached,
+                          Map<String, BatchRequest> unsent) {
+            this.shards = shards;
+            this.cached = cached;
+            this.attached = attached;
+            this.unsent = unsent;
+        }
+    }
+
+    // The rows other batches produced, reported under this submission's own custom IDs
+    private static CompletableFuture<BatchOutcome> attachedOutcome(String submissionId,
+                                                                   Map<BatchRequest, CompletableFuture<BatchRequest>> attached) {
+        return CompletableFuture.allOf(attached.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<String, String> responses = new HashMap<>();
+            Map<String, BatchRequest> failures = new HashMap<>();
+            attached.forEach((request, row) -> {
+                BatchRequest answered = row.join();
+                if (answered.getStatus() == BatchRequest.RequestStatus.COMPLETED) {
+                    responses.put(request.getCustomId(), answered.getResponseData());
+                } else {
+                    request.setStatus(BatchRequest.RequestStatus.FAILED);
+                    request.setErrorCode(answered.getErrorCode());
+                    request.setErrorMessage(answered.getErrorMessage());
+                    failures.put(request.getCustomId(), request);
+                }
+            });
+            return new BatchOutcome(submissionId, responses, failures);
         });
+    }
 
-        return future;
+    private static CompletableFuture<List<BatchResult>> attachedResults(
+            Map<BatchRequest, CompletableFuture<BatchRequest>> attached) {
+        return CompletableFuture.allOf(attached.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<BatchResult> results = new ArrayList<>(attached.size());
+            attached.forEach((request, row) -> {
+                BatchRequest answered = row.join();
+                BatchResult result = new BatchResult(request.getCustomId(), null);
+                if (answered.getStatus() == BatchRequest.RequestStatus.COMPLETED) {
+                    result.setResponseJson(answered.getResponseData());
+                    result.setStatusCode(200);
+                } else {
+                    result.setErrorCode(answered.getErrorCode());
+                    result.setErrorMessage(answered.getErrorMessage());
+                }
+                results.add(result);
+            });
+            return results;
+        });
     }
 
-    public CompletableFuture<Void> cancelBatchAsync(String batchId) {
-        CompletableFuture<Void> future = new CompletableFuture<>();
+    public CompletableFuture<BatchOutcome> resubmitFailedAsync(BatchOutcome outcome) {
+        return resubmitFailedAsync(outcome, failed -> true);
+    }
 
-        executor.submit(() -> {
-            try {
-                List<Batch> incompleteBatches = service.getIncompleteBatches();
-                Batch batchToCancel = incompleteBatches.stream()
-                        .filter(b -> batchId.equals(b.getOpenaiBatchId()))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalArgumentException("Batch not found: " + batchId));
+    // Sends only the failed requests that match the filter as a new submission; merge the result back with BatchOutcome.merge
+    public CompletableFuture<BatchOutcome> resubmitFailedAsync(BatchOutcome outcome, Predicate<BatchRequest> filter) {
+        Map<String, String> retry = new LinkedHashMap<>();
+        for (BatchRequest failed : outcome.getFailures().values()) {
+            if (filter.test(failed)) {
+                retry.put(failed.getCustomId(), failed.getRequestData());
+            }
+        }
+        if (retry.isEmpty()) {
+            return CompletableFuture.completedFuture(new BatchOutcome(outcome.getSubmissionId(), Map.of(), Map.of()));
+        }
+        return submitForOutcomeAsync(retry, null, null);
+    }
 
-                service.cancelBatch(batchToCancel);
-                future.complete(null);
-            } catch (Exception ex) {
-                future.completeExceptionally(ex);
+    public CompletableFuture<Void> cancelBatchAsync(String batchId) {
+        Batch live = service.getRegistry().getByOpenaiId(batchId);
+        CompletableFuture<Batch> lookup = live != null
+                ? CompletableFuture.completedFuture(live)
+                : CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return getBatch(batchId);
+                    } catch (SQLException ex) {
+                        throw new CompletionException(ex);
+                    }
+                }, executor);
+        return lookup.thenCompose(batch -> {
+            if (batch == null || batch.getOpenaiBatchId() == null) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("Batch not found: " + batchId));
+            }
+            if (batch.getStatus().isTerminal()) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException(
+                        "Batch " + batchId + " has already finished as " + batch.getStatus()));
             }
+            // Set before the cancel goes out, so the poller never sees the batch cancelled without it
+            batch.setCancelRequested(true);
+            return service.cancelBatchAsync(batch).whenComplete((v, ex) -> {
+                if (ex != null) {
+                    batch.setCancelRequested(false);
+                }
+            });
         });
+    }
 
-        return future;
+    // Looks the batch up by local or OpenAI ID; live batches come from memory, anything else from the database.
+    // Null if there is no such batch
+    public Batch getBatch(String batchId) throws SQLException {
+        Batch batch = service.getBatch(batchId);
+        return batch != null ? batch : service.getBatchByOpenaiId(batchId);
+    }
+
+    public BatchStatus getStatus(String batchId) throws SQLException {
+        Batch batch = getBatch(batchId);
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch not found: " + batchId);
+        }
+        return batch.getStatus();
     }
 
     public CompletableFuture<String> listBatchesAsync(Integer limit, String after) {
-        CompletableFuture<String> future = new CompletableFuture<>();
+        return service.listBatchesAsync(limit, after);
+    }
 
-        executor.submit(() -> {
-            try {
-                String result = service.listBatches(limit, after);
-                future.complete(result);
-            } catch (Exception ex) {
-                future.completeExceptionally(ex);
-            }
-        });
+    public PollScheduler getPollScheduler() {
+        return pollScheduler;
+    }
+
+    public AdmissionController getAdmissionController() {
+        return admission;
+    }
+
+    // Status changes, progress with completion estimates, and result ingestion for every batch this manager handles
+    public Flow.Publisher<BatchEvent> events() {
+        return service.getEvents();
+    }
+
+    // e.g. events(BatchEvent.forBatch(id)) or events(BatchEvent.withMetadata("job", "nightly"))
+    public Flow.Publisher<BatchEvent> events(Predicate<BatchEvent> filter) {
+        return service.getEvents().filter(filter);
+    }
+
+    // Which requests are waiting on identical ones in flight; only used with
+    // BatchManagerOptions.setCoalesceInFlightRequests
+    public RequestCoalescer getRequestCoalescer() {
+        return service.getCoalescer();
+    }
+
+    // Hit, miss and eviction counts; null unless BatchManagerOptions.setResponseCacheTtl was set
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    // Recent batch turnaround per model, which deadlines are judged against
+    public TurnaroundEstimator getTurnaroundEstimator() {
+        return turnaround;
+    }
 
-        return future;
+    public SyncExecutor getSyncExecutor() {
+        return syncExecutor;
+    }
+
+    public SubmissionLimiter getSubmissionLimiter() {
+        return limiter;
     }
 
     public List<Batch> getIncompleteBatches() throws SQLException {
         return service.getIncompleteBatches();
     }
 
+    // Picks up every batch an earlier run left unfinished. Each one is polled before its requests are read back,
+    // and only once it is done; queued ones go back through the submission limits
+    public List<ResumedBatch> resumeAll() throws SQLException {
+        Set<String> queued = new HashSet<>();
+        for (Batch batch : service.getQueuedBatches()) {
+            queued.add(batch.getId());
+        }
+        List<ResumedBatch> resumed = new ArrayList<>();
+        for (Batch stored : service.getIncompleteBatches()) {
+            Batch batch = followed(stored);
+            CompletableFuture<BatchOutcome> outcome = queued.contains(batch.getId())
+                    ? resumeBatchForOutcomeAsync(batch)
+                    : awaitUploaded(batch);
+            resumed.add(new ResumedBatch(batch.copy(), outcome));
+        }
+        return resumed;
+    }
+
     public CompletableFuture<Map<String, String>> resumeBatchAsync(Batch batch) {
-        CompletableFuture<Map<String, String>> future = new CompletableFuture<>();
+        return resumeBatchForOutcomeAsync(batch).thenApply(outcome -> new HashMap<>(outcome.getResponses()));
+    }
 
-        executor.submit(() -> {
-            try {
-                List<BatchRequest> requests = service.getBatchRequests(batch.getId());
-
-                // Poll until complete
-                while (true) {
-                    if (service.pollBatchStatus(batch)) {
-                        Map<String, String> results = service.fetchResults(batch, requests);
-                        future.complete(results);
-                        break;
+    public CompletableFuture<BatchOutcome> resumeBatchForOutcomeAsync(Batch resumed) {
+        Batch batch = followed(resumed);
+        long queuedBytes;
+        try {
+            queuedBytes = service.getQueuedBytes(batch.getId());
+        } catch (SQLException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        if (queuedBytes >= 0) {
+            // Never uploaded, so it waits for a slot like any new shard
+            return startShard(batch, limiter.acquire(batch.getId(), queuedBytes),
+                    () -> service.submitQueuedBatchAsync(batch), this::awaitResults);
+        }
+        return awaitUploaded(batch);
+    }
+
+    // A batch an earlier run uploaded counts against its model's budget and the in-flight limit once resumed, and is
+    // released like any other when it finishes. Ones never resumed are not counted, since nothing here would ever
+    // release them
+    private CompletableFuture<BatchOutcome> awaitUploaded(Batch batch) {
+        limiter.restore(batch.getId());
+        if (batch.getEstimatedTokens() > 0) {
+            admission.restore(batch.getId(), batch.getModel(), batch.getEstimatedTokens());
+        }
+        return awaitResults(batch);
+    }
+
+    // The instance already followed here, so a copy from getBatch does not start a second poll from stale state;
+    // otherwise this one, registered from now on
+    private Batch followed(Batch batch) {
+        Batch live = service.getRegistry().get(batch.getId());
+        if (live != null) {
+            return live;
+        }
+        service.getRegistry().update(batch);
+        return batch;
+    }
+
+    public CompletableFuture<Map<String, String>> resumeSubmissionAsync(String submissionId) {
+        return resumeSubmissionAsync(submissionId, null);
+    }
+
+    public CompletableFuture<Map<String, String>> resumeSubmissionAsync(String submissionId, ShardListener shardListener) {
+        return resumeSubmissionForOutcomeAsync(submissionId, shardListener)
+                .thenApply(outcome -> new HashMap<>(outcome.getResponses()));
+    }
+
+    public CompletableFuture<BatchOutcome> resumeSubmissionForOutcomeAsync(String submissionId, ShardListener shardListener) {
+        List<Batch> shards;
+        try {
+            shards = service.getBatchesBySubmission(submissionId);
+        } catch (SQLException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        if (shards.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Submission not found: " + submissionId));
+        }
+
+        List<CompletableFuture<BatchOutcome>> shardFutures = new ArrayList<>(shards.size());
+        for (Batch shard : shards) {
+            // A salvage follow-up is picked up through the batch it salvages
+            if (shard.getParentBatchId() != null) {
+                continue;
+            }
+            shardFutures.add(notifyShard(resumeBatchForOutcomeAsync(shard), shard, shardListener));
+        }
+        return mergeShards(submissionId, shardFutures);
+    }
+
+    private <T> CompletableFuture<T> startShard(Batch shard, CompletableFuture<Void> slot,
+                                                Supplier<CompletableFuture<Void>> upload,
+                                                Function<Batch, CompletableFuture<T>> collect) {
+        // Held here until there is a slot and the model has room; only the local work runs on the executor, the
+        // HTTP calls and polling chain on the client's callbacks
+        // Cleaned up before the returned future completes, so whoever waits on it sees the shard already dropped
+        return slot
+                .thenCompose(v -> admission.acquire(shard.getId(), shard.getModel(), shard.getEstimatedTokens()))
+                .thenComposeAsync(v -> upload.get(), executor)
+                .thenCompose(v -> {
+                    limiter.uploadFinished(shard.getId());
+                    return collect.apply(shard);
+                })
+                .whenComplete((results, ex) -> {
+                    if (ex != null) {
+                        admission.release(shard.getId());
+                        limiter.release(shard.getId());
+                        service.getCoalescer().abandon(shard.getId(), ex);
+                        service.forget(shard);
                     }
-                    Thread.sleep(pollInterval.toMillis());
+                });
+    }
+
+    // Races the batch against a synchronous copy of its requests, started only if the batch looks like missing the
+    // deadline once the reserve is all that is left. Each successful copy is kept as it comes in, so a copy that
+    // fails only leaves its own request to the batch
+    private CompletableFuture<BatchOutcome> hedge(Batch shard, CompletableFuture<BatchOutcome> batched, Instant deadline) {
+        CompletableFuture<BatchOutcome> first = new CompletableFuture<>();
+        batched.whenComplete((outcome, ex) -> {
+            if (ex != null) {
+                first.completeExceptionally(ex);
+            } else {
+                first.complete(outcome);
+            }
+        });
+
+        long delay = Math.max(0, Duration.between(Instant.now(), deadline.minus(syncReserve)).toMillis());
+        Executor atReserve = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor);
+        CompletableFuture.runAsync(() -> {
+            if (first.isDone() || onTrack(shard, deadline)) {
+                return;
+            }
+            List<BatchRequest> requests;
+            try {
+                requests = service.getBatchRequests(shard.getId());
+            } catch (SQLException ex) {
+                return;
+            }
+            Map<BatchRequest, CompletableFuture<BatchRequest>> copies = new LinkedHashMap<>();
+            for (BatchRequest request : requests) {
+                copies.put(request, syncExecutor.execute(request, shard.getEndpoint(), first::isDone)
+                        .thenApplyAsync(answer -> keep(shard, answer, first), executor));
+            }
+            attachedOutcome(shard.getSubmissionId(), copies).thenAcceptAsync(outcome -> {
+                // The batch is only superseded once every copy completed or was rejected with a 4xx. A copy with no
+                // final answer, e.g. still throttled once its retries were used up, leaves the batch running; its
+                // outcome carries the answers kept so far, since keep wrote them to the batch's rows
+                boolean settled = outcome.getFailures().values().stream()
+                        .noneMatch(failed -> SyncExecutor.SYNC_FAILED.equals(failed.getErrorCode()));
+                if (!settled || first.isDone()) {
+                    return;
+                }
+                // Stored before the batch is cancelled, so its ingest keeps them and nobody waiting on it sees the cancel
+                List<BatchRequest> answered = new ArrayList<>(copies.size());
+                copies.values().forEach(copy -> answered.add(copy.join()));
+                try {
+                    service.storeAnswers(shard, answered);
+                } catch (SQLException ex) {
+                    return;
                 }
-            } catch (Exception ex) {
-                future.completeExceptionally(ex);
+                if (first.complete(outcome)) {
+                    superseded.add(shard.getId());
+                    service.cancelBatchAsync(shard);
+                }
+            }, executor);
+        }, atReserve).exceptionally(ex -> null);
+        return first;
+    }
+
+    // Written to the batch's row straight away, so the batch's ingest keeps it; a copy that came back with an error
+    // is not, since the batch may still answer that request
+    private BatchRequest keep(Batch shard, BatchRequest answer, CompletableFuture<BatchOutcome> first) {
+        if (answer.getStatus() == BatchRequest.RequestStatus.COMPLETED && !first.isDone()) {
+            try {
+                service.keepAnswers(shard, List.of(answer));
+            } catch (SQLException ignored) {
+                // The batch's own answer is used instead
+            }
+        }
+        return answer;
+    }
+
+    // Whether the completion rate seen so far finishes the rest of the batch before the deadline
+    private boolean onTrack(Batch batch, Instant deadline) {
+        PollProgress progress = pollScheduler.getProgress(batch.getId());
+        RequestCounts counts = batch.getRequestCounts();
+        double rate = progress == null ? 0 : progress.getCompletionRate();
+        if (rate <= 0 || counts == null) {
+            return false;
+        }
+        long remaining = Math.max(0, counts.getTotal() - counts.getCompleted() - counts.getFailed());
+        return !Instant.now().plusMillis((long) (remaining * 1000 / rate)).isAfter(deadline);
+    }
+
+    private CompletableFuture<BatchOutcome> awaitResults(Batch batch) {
+        // The requests are read back from the database rather than kept in memory while the batch runs
+        CompletableFuture<BatchOutcome> fetched = awaitTerminal(batch)
+                .thenCompose(polled -> fetchPermits.acquire().thenCompose(permit -> fetchOutcome(polled)));
+        return fetched.thenCompose(outcome -> salvage(batch, outcome));
+    }
+
+    // An expired or cancelled batch still hands back the lines it finished. What it never ran goes out again as a
+    // follow-up batch linked to it, and that outcome is folded in; once the attempts are used up the rest stay failed.
+    // A follow-up from an earlier run is always picked up, even with salvaging since turned off. A batch the caller
+    // cancelled through cancelBatchAsync is left as it is. Requests coalesced onto the batch are answered once this
+    // has decided, so the ones salvaged wait for the follow-up
+    private CompletableFuture<BatchOutcome> salvage(Batch batch, BatchOutcome outcome) {
+        try {
+            return salvageRemainder(batch, outcome);
+        } finally {
+            service.resolveWaiting(batch);
+        }
+    }
+
+    private CompletableFuture<BatchOutcome> salvageRemainder(Batch batch, BatchOutcome outcome) {
+        // A batch cancelled because a synchronous copy answered first has nothing left to salvage
+        if (superseded.remove(batch.getId()) || batch.isCancelRequested()
+                || batch.getStatus() != BatchStatus.EXPIRED && batch.getStatus() != BatchStatus.CANCELLED) {
+            return CompletableFuture.completedFuture(outcome);
+        }
+        List<BatchRequest> unprocessed = new ArrayList<>();
+        for (BatchRequest failed : outcome.getFailures().values()) {
+            if (UNPROCESSED_CODES.contains(failed.getErrorCode())) {
+                BatchRequest request = new BatchRequest(failed.getCustomId(), failed.getRequestData());
+                request.setRequestHash(failed.getRequestHash());
+                unprocessed.add(request);
+            }
+        }
+        if (unprocessed.isEmpty()) {
+            return CompletableFuture.completedFuture(outcome);
+        }
+
+        try {
+            List<Batch> followUps = service.getBatchesByParent(batch.getId());
+            if (!followUps.isEmpty()) {
+                // Salvaged before a restart, so the follow-up is picked up rather than sending the requests again
+                return resumeBatchForOutcomeAsync(followUps.get(0)).thenApply(outcome::merge);
             }
+            int attempts = 0;
+            for (String parentId = batch.getParentBatchId(); parentId != null; attempts++) {
+                Batch parent = service.getBatch(parentId);
+                parentId = parent == null ? null : parent.getParentBatchId();
+            }
+            if (attempts >= maxSalvageAttempts) {
+                return CompletableFuture.completedFuture(outcome);
+            }
+        } catch (SQLException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        Batch followUp = new Batch(UUID.randomUUID().toString());
+        followUp.setParentBatchId(batch.getId());
+        followUp.setSubmissionId(batch.getSubmissionId());
+        followUp.setShardIndex(batch.getShardIndex());
+        followUp.setShardCount(batch.getShardCount());
+        followUp.setEndpoint(batch.getEndpoint());
+        followUp.setModel(batch.getModel());
+        followUp.setEstimatedTokens(tokenEstimator.estimate(unprocessed));
+        long bytes = 0;
+        Set<String> hashes = new HashSet<>();
+        for (BatchRequest request : unprocessed) {
+            bytes += ShardPlanner.estimateLineBytes(request);
+            if (request.getRequestHash() != null) {
+                hashes.add(request.getRequestHash());
+            }
+        }
+        service.getCoalescer().transfer(batch.getId(), followUp.getId(), hashes);
+        return startShard(followUp, limiter.acquire(followUp.getId(), bytes),
+                () -> service.submitBatchAsync(followUp, unprocessed, batch.getMetadata()), this::awaitResults)
+                .thenApply(outcome::merge);
+    }
+
+    private CompletableFuture<Batch> awaitTerminal(Batch batch) {
+        // A finished batch no longer holds enqueued tokens or a slot, so waiting batches can go before results are fetched.
+        // Released here rather than once the outcome is built, since fetching can wait for a permit and take a while
+        // on a large file; this way the budget is already back by the time the caller has its results
+        return pollScheduler.track(batch)
+                .whenComplete((polled, ex) -> {
+                    admission.release(batch.getId());
+                    limiter.release(batch.getId());
+                    if (ex == null) {
+                        turnaround.record(polled);
+                    }
+                });
+    }
+
+    private CompletableFuture<BatchOutcome> fetchOutcome(Batch batch) {
+        CompletableFuture<BatchOutcome> fetched = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.getBatchRequests(batch.getId());
+            } catch (SQLException ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor).thenCompose(requests -> service.fetchOutcomeAsync(batch, requests));
+        fetched.whenComplete((outcome, ex) -> fetchPermits.release());
+        return fetched;
+    }
+
+    private static CompletableFuture<BatchOutcome> notifyShard(CompletableFuture<BatchOutcome> shardFuture,
+                                                               Batch shard,
+                                                               ShardListener shardListener) {
+        if (shardListener == null) {
+            return shardFuture;
+        }
+        return shardFuture.thenApply(outcome -> {
+            shardListener.onShardCompleted(shard, outcome.getResponses());
+            return outcome;
         });
+    }
+
+    private static CompletableFuture<BatchOutcome> mergeShards(String submissionId, List<CompletableFuture<BatchOutcome>> shardFutures) {
+        if (shardFutures.size() == 1) {
+            return shardFutures.get(0);
+        }
+
+        // Fails as soon as any shard fails rather than waiting for the slowest one
+        CompletableFuture<BatchOutcome> merged = new CompletableFuture<>();
+        Map<String, String> responses = new ConcurrentHashMap<>();
+        Map<String, BatchRequest> failures = new ConcurrentHashMap<>();
+        AtomicInteger remaining = new AtomicInteger(shardFutures.size());
+        for (CompletableFuture<BatchOutcome> shardFuture : shardFutures) {
+            shardFuture.whenComplete((outcome, ex) -> {
+                if (ex != null) {
+                    merged.completeExceptionally(ex);
+                    return;
+                }
+                responses.putAll(outcome.getResponses());
+                failures.putAll(outcome.getFailures());
+                if (remaining.decrementAndGet() == 0) {
+                    merged.complete(new BatchOutcome(submissionId, new HashMap<>(responses), new HashMap<>(failures)));
+                }
+            });
+        }
+        return merged;
+    }
 
-        return future;
+    // Null unless webhooks were enabled in the options
+    public WebhookListener getWebhookListener() {
+        return webhookListener;
     }
 
     @Override
     public void close() {
+        if (webhookListener != null) {
+            webhookListener.close();
+        }
+        if (accumulator != null) {
+            accumulator.close();
+        }
+        // Waiters go first, so the slots freed by closing the scheduler do not start new uploads
+        limiter.cancelWaiting();
+        admission.cancelWaiting();
+        fetchPermits.cancelWaiting();
+        syncExecutor.cancelWaiting();
+        service.getCoalescer().cancelAll();
+        pollScheduler.close();
+        service.getEvents().close();
         executor.shutdownNow();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,424 @@
+package com.openai.batchmanager.manager;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BatchManagerOptions {
+
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(20);
+    public static final int DEFAULT_MAX_REQUESTS_PER_BATCH = 50_000;
+    public static final long DEFAULT_MAX_BYTES_PER_BATCH = 190L * 1024 * 1024;
+    public static final int DEFAULT_POLL_THREADS = 2;
+    public static final double DEFAULT_POLL_JITTER = 0.1;
+    public static final int DEFAULT_BULK_POLL_THRESHOLD = 50;
+    public static final int DEFAULT_BULK_POLL_MAX_PAGES = 10;
+    public static final int DEFAULT_MAX_CONCURRENT_RESULT_FETCHES = 16;
+    public static final Duration DEFAULT_WEBHOOK_SAFETY_NET_INTERVAL = Duration.ofMinutes(15);
+    public static final int DEFAULT_ACCUMULATOR_MAX_REQUESTS = 10_000;
+    public static final long DEFAULT_ACCUMULATOR_MAX_BYTES = 50L * 1024 * 1024;
+    public static final Duration DEFAULT_ACCUMULATOR_LINGER = Duration.ofSeconds(30);
+    public static final long DEFAULT_RESPONSE_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONCURRENT_SYNC_REQUESTS = 8;
+    public static final Duration DEFAULT_DEADLINE_SYNC_RESERVE = Duration.ofMinutes(5);
+
+    private Duration pollInterval = DEFAULT_POLL_INTERVAL;
+    private PollPolicy pollPolicy = new AdaptivePollPolicy();
+    private int maxRequestsPerBatch = DEFAULT_MAX_REQUESTS_PER_BATCH;
+    private long maxBytesPerBatch = DEFAULT_MAX_BYTES_PER_BATCH;
+    private int pollThreads = DEFAULT_POLL_THREADS;
+    private double pollJitter = DEFAULT_POLL_JITTER;
+    private int bulkPollThreshold = DEFAULT_BULK_POLL_THRESHOLD;
+    private int bulkPollMaxPages = DEFAULT_BULK_POLL_MAX_PAGES;
+    private long defaultEnqueuedTokenLimit = Long.MAX_VALUE;
+    private final Map<String, Long> enqueuedTokenLimits = new HashMap<>();
+    private int maxInFlightBatches = Integer.MAX_VALUE;
+    private int maxConcurrentUploads = Integer.MAX_VALUE;
+    private long maxPendingBytes = Long.MAX_VALUE;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.QUEUE;
+    private int maxConcurrentResultFetches = DEFAULT_MAX_CONCURRENT_RESULT_FETCHES;
+    private String webhookSecret;
+    private InetSocketAddress webhookAddress = new InetSocketAddress(8080);
+    private String webhookPath = WebhookListener.DEFAULT_PATH;
+    private Duration webhookSafetyNetInterval = DEFAULT_WEBHOOK_SAFETY_NET_INTERVAL;
+    private int accumulatorMaxRequests = DEFAULT_ACCUMULATOR_MAX_REQUESTS;
+    private long accumulatorMaxBytes = DEFAULT_ACCUMULATOR_MAX_BYTES;
+    private Duration accumulatorLinger = DEFAULT_ACCUMULATOR_LINGER;
+    private Duration responseCacheTtl;
+    private long responseCacheMaxBytes = DEFAULT_RESPONSE_CACHE_MAX_BYTES;
+    private boolean coalesceInFlightRequests;
+    private int maxSalvageAttempts;
+    private int maxConcurrentSyncRequests = DEFAULT_MAX_CONCURRENT_SYNC_REQUESTS;
+    private Duration deadlineSyncReserve = DEFAULT_DEADLINE_SYNC_RESERVE;
+
+    public BatchManagerOptions() {
+    }
+
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    public BatchManagerOptions setPollInterval(Duration pollInterval) {
+        if (pollInterval == null || pollInterval.isNegative()) {
+            throw new IllegalArgumentException("pollInterval cannot be null or negative");
+        }
+        this.pollInterval = pollInterval;
+        this.pollPolicy = new FixedPollPolicy(pollInterval);
+        return this;
+    }
+
+    public PollPolicy getPollPolicy() {
+        return pollPolicy;
+    }
+
+    // Adaptive unless a fixed interval was set with setPollInterval
+    public BatchManagerOptions setPollPolicy(PollPolicy pollPolicy) {
+        if (pollPolicy == null) {
+            throw new IllegalArgumentException("pollPolicy cannot be null");
+        }
+        this.pollPolicy = pollPolicy;
+        return this;
+    }
+
+    public int getPollThreads() {
+        return pollThreads;
+    }
+
+    // Threads shared by every in-flight batch's poll loop, however many batches there are
+    public BatchManagerOptions setPollThreads(int pollThreads) {
+        if (pollThreads <= 0) {
+            throw new IllegalArgumentException("pollThreads must be positive");
+        }
+        this.pollThreads = pollThreads;
+        return this;
+    }
+
+    public double getPollJitter() {
+        return pollJitter;
+    }
+
+    // Fraction of the poll interval each poll is randomly moved by, so batches polled together drift apart
+    public BatchManagerOptions setPollJitter(double pollJitter) {
+        if (pollJitter < 0 || pollJitter > 1) {
+            throw new IllegalArgumentException("pollJitter must be between 0 and 1");
+        }
+        this.pollJitter = pollJitter;
+        return this;
+    }
+
+    public int getBulkPollThreshold() {
+        return bulkPollThreshold;
+    }
+
+    // With at least this many batches in flight, statuses are refreshed from the paginated list instead of one GET each
+    public BatchManagerOptions setBulkPollThreshold(int bulkPollThreshold) {
+        if (bulkPollThreshold <= 0) {
+            throw new IllegalArgumentException("bulkPollThreshold must be positive");
+        }
+        this.bulkPollThreshold = bulkPollThreshold;
+        return this;
+    }
+
+    public int getBulkPollMaxPages() {
+        return bulkPollMaxPages;
+    }
+
+    // Batches older than this many list pages are polled individually
+    public BatchManagerOptions setBulkPollMaxPages(int bulkPollMaxPages) {
+        if (bulkPollMaxPages <= 0) {
+            throw new IllegalArgumentException("bulkPollMaxPages must be positive");
+        }
+        this.bulkPollMaxPages = bulkPollMaxPages;
+        return this;
+    }
+
+    public int getMaxRequestsPerBatch() {
+        return maxRequestsPerBatch;
+    }
+
+    public BatchManagerOptions setMaxRequestsPerBatch(int maxRequestsPerBatch) {
+        if (maxRequestsPerBatch <= 0) {
+            throw new IllegalArgumentException("maxRequestsPerBatch must be positive");
+        }
+        this.maxRequestsPerBatch = maxRequestsPerBatch;
+        return this;
+    }
+
+    public long getMaxBytesPerBatch() {
+        return maxBytesPerBatch;
+    }
+
+    public BatchManagerOptions setMaxBytesPerBatch(long maxBytesPerBatch) {
+        if (maxBytesPerBatch <= 0) {
+            throw new IllegalArgumentException("maxBytesPerBatch must be positive");
+        }
+        this.maxBytesPerBatch = maxBytesPerBatch;
+        return this;
+    }
+
+    public long getDefaultEnqueuedTokenLimit() {
+        return defaultEnqueuedTokenLimit;
+    }
+
+    // Applies to models without their own limit; unlimited unless set
+    public BatchManagerOptions setDefaultEnqueuedTokenLimit(long defaultEnqueuedTokenLimit) {
+        if (defaultEnqueuedTokenLimit <= 0) {
+            throw new IllegalArgumentException("defaultEnqueuedTokenLimit must be positive");
+        }
+        this.defaultEnqueuedTokenLimit = defaultEnqueuedTokenLimit;
+        return this;
+    }
+
+    public Map<String, Long> getEnqueuedTokenLimits() {
+        return Map.copyOf(enqueuedTokenLimits);
+    }
+
+    public BatchManagerOptions setEnqueuedTokenLimit(String model, long enqueuedTokenLimit) {
+        if (model == null || model.trim().isEmpty()) {
+            throw new IllegalArgumentException("model cannot be null or empty");
+        }
+        if (enqueuedTokenLimit <= 0) {
+            throw new IllegalArgumentException("enqueuedTokenLimit must be positive");
+        }
+        enqueuedTokenLimits.put(model, enqueuedTokenLimit);
+        return this;
+    }
+
+    public int getMaxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    // Batches this manager has uploading or running at once; unlimited unless set
+    public BatchManagerOptions setMaxInFlightBatches(int maxInFlightBatches) {
+        if (maxInFlightBatches <= 0) {
+            throw new IllegalArgumentException("maxInFlightBatches must be positive");
+        }
+        this.maxInFlightBatches = maxInFlightBatches;
+        return this;
+    }
+
+    public int getMaxConcurrentUploads() {
+        return maxConcurrentUploads;
+    }
+
+    public BatchManagerOptions setMaxConcurrentUploads(int maxConcurrentUploads) {
+        if (maxConcurrentUploads <= 0) {
+            throw new IllegalArgumentException("maxConcurrentUploads must be positive");
+        }
+        this.maxConcurrentUploads = maxConcurrentUploads;
+        return this;
+    }
+
+    public long getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    // Request bytes held in memory for batches that have not finished uploading
+    public BatchManagerOptions setMaxPendingBytes(long maxPendingBytes) {
+        if (maxPendingBytes <= 0) {
+            throw new IllegalArgumentException("maxPendingBytes must be positive");
+        }
+        this.maxPendingBytes = maxPendingBytes;
+        return this;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public BatchManagerOptions setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy cannot be null");
+        }
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    public int getMaxConcurrentResultFetches() {
+        return maxConcurrentResultFetches;
+    }
+
+    // Finished batches whose results are downloaded at once, e.g. when a restart finds many of them done
+    public BatchManagerOptions setMaxConcurrentResultFetches(int maxConcurrentResultFetches) {
+        if (maxConcurrentResultFetches <= 0) {
+            throw new IllegalArgumentException("maxConcurrentResultFetches must be positive");
+        }
+        this.maxConcurrentResultFetches = maxConcurrentResultFetches;
+        return this;
+    }
+
+    public String getWebhookSecret() {
+        return webhookSecret;
+    }
+
+    public boolean isWebhooksEnabled() {
+        return webhookSecret != null;
+    }
+
+    // Enables the embedded webhook listener; the whsec_ signing secret from the OpenAI webhook settings
+    public BatchManagerOptions setWebhookSecret(String webhookSecret) {
+        if (webhookSecret == null || webhookSecret.trim().isEmpty()) {
+            throw new IllegalArgumentException("webhookSecret cannot be null or empty");
+        }
+        this.webhookSecret = webhookSecret;
+        return this;
+    }
+
+    public InetSocketAddress getWebhookAddress() {
+        return webhookAddress;
+    }
+
+    public BatchManagerOptions setWebhookAddress(InetSocketAddress webhookAddress) {
+        if (webhookAddress == null) {
+            throw new IllegalArgumentException("webhookAddress cannot be null");
+        }
+        this.webhookAddress = webhookAddress;
+        return this;
+    }
+
+    public String getWebhookPath() {
+        return webhookPath;
+    }
+
+    public BatchManagerOptions setWebhookPath(String webhookPath) {
+        if (webhookPath == null || !webhookPath.startsWith("/")) {
+            throw new IllegalArgumentException("webhookPath must start with /");
+        }
+        this.webhookPath = webhookPath;
+        return this;
+    }
+
+    public Duration getWebhookSafetyNetInterval() {
+        return webhookSafetyNetInterval;
+    }
+
+    // With webhooks enabled, batches are only polled this often in case an event is lost
+    public BatchManagerOptions setWebhookSafetyNetInterval(Duration webhookSafetyNetInterval) {
+        if (webhookSafetyNetInterval == null || webhookSafetyNetInterval.isZero() || webhookSafetyNetInterval.isNegative()) {
+            throw new IllegalArgumentException("webhookSafetyNetInterval must be positive");
+        }
+        this.webhookSafetyNetInterval = webhookSafetyNetInterval;
+        return this;
+    }
+
+    public int getAccumulatorMaxRequests() {
+        return accumulatorMaxRequests;
+    }
+
+    // Requests handed to enqueue are sent as a batch once this many are waiting
+    public BatchManagerOptions setAccumulatorMaxRequests(int accumulatorMaxRequests) {
+        if (accumulatorMaxRequests <= 0) {
+            throw new IllegalArgumentException("accumulatorMaxRequests must be positive");
+        }
+        this.accumulatorMaxRequests = accumulatorMaxRequests;
+        return this;
+    }
+
+    public long getAccumulatorMaxBytes() {
+        return accumulatorMaxBytes;
+    }
+
+    // ...or once their JSONL lines add up to this many bytes
+    public BatchManagerOptions setAccumulatorMaxBytes(long accumulatorMaxBytes) {
+        if (accumulatorMaxBytes <= 0) {
+            throw new IllegalArgumentException("accumulatorMaxBytes must be positive");
+        }
+        this.accumulatorMaxBytes = accumulatorMaxBytes;
+        return this;
+    }
+
+    public Duration getAccumulatorLinger() {
+        return accumulatorLinger;
+    }
+
+    // ...or this long after the first of them arrived
+    public BatchManagerOptions setAccumulatorLinger(Duration accumulatorLinger) {
+        if (accumulatorLinger == null || accumulatorLinger.isNegative()) {
+            throw new IllegalArgumentException("accumulatorLinger cannot be null or negative");
+        }
+        this.accumulatorLinger = accumulatorLinger;
+        return this;
+    }
+
+    public Duration getResponseCacheTtl() {
+        return responseCacheTtl;
+    }
+
+    public boolean isResponseCacheEnabled() {
+        return responseCacheTtl != null;
+    }
+
+    // Enables the response cache: a request identical to one answered within the ttl gets that answer without
+    // being sent again
+    public BatchManagerOptions setResponseCacheTtl(Duration responseCacheTtl) {
+        if (responseCacheTtl == null || responseCacheTtl.isZero() || responseCacheTtl.isNegative()) {
+            throw new IllegalArgumentException("responseCacheTtl must be positive");
+        }
+        this.responseCacheTtl = responseCacheTtl;
+        return this;
+    }
+
+    public long getResponseCacheMaxBytes() {
+        return responseCacheMaxBytes;
+    }
+
+    public BatchManagerOptions setResponseCacheMaxBytes(long responseCacheMaxBytes) {
+        if (responseCacheMaxBytes <= 0) {
+            throw new IllegalArgumentException("responseCacheMaxBytes must be positive");
+        }
+        this.responseCacheMaxBytes = responseCacheMaxBytes;
+        return this;
+    }
+
+    public boolean isCoalesceInFlightRequests() {
+        return coalesceInFlightRequests;
+    }
+
+    // A request identical to one still running in another submission's batch waits for that row's result instead
+    // of being sent again. Off by default, as it hashes every request body
+    public BatchManagerOptions setCoalesceInFlightRequests(boolean coalesceInFlightRequests) {
+        this.coalesceInFlightRequests = coalesceInFlightRequests;
+        return this;
+    }
+
+    public int getMaxSalvageAttempts() {
+        return maxSalvageAttempts;
+    }
+
+    // How many follow-up batches may resubmit what an expired or cancelled batch never processed before its
+    // requests are reported as failed. 0, the default, turns salvaging off
+    public BatchManagerOptions setMaxSalvageAttempts(int maxSalvageAttempts) {
+        if (maxSalvageAttempts < 0) {
+            throw new IllegalArgumentException("maxSalvageAttempts cannot be negative");
+        }
+        this.maxSalvageAttempts = maxSalvageAttempts;
+        return this;
+    }
+
+    public int getMaxConcurrentSyncRequests() {
+        return maxConcurrentSyncRequests;
+    }
+
+    // Requests sent straight to their endpoint at once when a submission with a deadline cannot wait for a batch
+    public BatchManagerOptions setMaxConcurrentSyncRequests(int maxConcurrentSyncRequests) {
+        if (maxConcurrentSyncRequests <= 0) {
+            throw new IllegalArgumentException("maxConcurrentSyncRequests must be positive");
+        }
+        this.maxConcurrentSyncRequests = maxConcurrentSyncRequests;
+        return this;
+    }
+
+    public Duration getDeadlineSyncReserve() {
+        return deadlineSyncReserve;
+    }
+
+    // Time kept before a deadline for sending a batch's requests synchronously if it is not going to make it
+    public BatchManagerOptions setDeadlineSyncReserve(Duration deadlineSyncReserve) {
+        if (deadlineSyncReserve == null || deadlineSyncReserve.isNegative()) {
+            throw new IllegalArgumentException("deadlineSyncReserve cannot be negative");
+        }
+        this.deadlineSyncReserve = deadlineSyncReserve;
+        return this;
+    }
+}
@@ -0,0 +1,31 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.Batch;
+
+import java.time.Duration;
+
+public class FixedPollPolicy implements PollPolicy {
+
+    private final Duration interval;
+
+    public FixedPollPolicy(Duration interval) {
+        if (interval == null || interval.isNegative()) {
+            throw new IllegalArgumentException("interval cannot be null or negative");
+        }
+        this.interval = interval;
+    }
+
+    @Override
+    public Duration nextPollDelay(Batch batch, PollProgress progress) {
+        return interval;
+    }
+
+    @Override
+    public Duration minimumDelay() {
+        return interval;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+}
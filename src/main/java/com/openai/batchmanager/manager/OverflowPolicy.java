@@ -0,0 +1,11 @@
+package com.openai.batchmanager.manager;
+
+// What submitAsync does with a shard when the in-flight, upload or pending-byte limit is reached
+public enum OverflowPolicy {
+    // The calling thread waits until the shard has a slot
+    BLOCK,
+    // The returned future fails with a RejectedExecutionException and nothing is submitted
+    FAIL_FAST,
+    // The shard is stored in the database and uploaded once a slot frees up; it survives a restart
+    QUEUE
+}
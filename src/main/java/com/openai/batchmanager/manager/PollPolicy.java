@@ -0,0 +1,16 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.Batch;
+
+import java.time.Duration;
+
+public interface PollPolicy {
+
+    // Called after every non-terminal poll with the batch as just polled; the scheduler adds jitter on top
+    Duration nextPollDelay(Batch batch, PollProgress progress);
+
+    // Lower bound on the delays this policy returns; bulk refresh cycles are spaced at least this far apart
+    default Duration minimumDelay() {
+        return Duration.ZERO;
+    }
+}
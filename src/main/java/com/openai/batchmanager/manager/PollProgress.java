@@ -0,0 +1,60 @@
+package com.openai.batchmanager.manager;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public class PollProgress {
+
+    private int polls;
+    private int pollsWithoutProgress;
+    private Instant firstPollAt;
+    private int firstCompleted;
+    private Instant previousPollAt;
+    private int previousCompleted;
+    private Instant lastPollAt;
+    private int lastCompleted;
+
+    public synchronized void record(int completed, Instant at) {
+        if (polls == 0) {
+            firstPollAt = at;
+            firstCompleted = completed;
+        } else {
+            pollsWithoutProgress = completed > lastCompleted ? 0 : pollsWithoutProgress + 1;
+        }
+        previousPollAt = lastPollAt;
+        previousCompleted = lastCompleted;
+        lastPollAt = at;
+        lastCompleted = completed;
+        polls++;
+    }
+
+    public synchronized int getPolls() {
+        return polls;
+    }
+
+    // Consecutive polls since request_counts.completed last grew
+    public synchronized int getPollsWithoutProgress() {
+        return pollsWithoutProgress;
+    }
+
+    public synchronized Instant getLastPollAt() {
+        return lastPollAt;
+    }
+
+    // Requests completed per second between the last two polls, falling back to the rate since the first poll
+    public synchronized double getCompletionRate() {
+        if (polls < 2) {
+            return 0;
+        }
+        double recent = rate(previousCompleted, previousPollAt, lastCompleted, lastPollAt);
+        return recent > 0 ? recent : rate(firstCompleted, firstPollAt, lastCompleted, lastPollAt);
+    }
+
+    private static double rate(int fromCompleted, Instant from, int toCompleted, Instant to) {
+        long millis = Duration.between(from, to).toMillis();
+        if (millis <= 0 || toCompleted <= fromCompleted) {
+            return 0;
+        }
+        return (toCompleted - fromCompleted) * 1000.0 / millis;
+    }
+}
@@ -0,0 +1,273 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.service.BatchService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PollScheduler implements AutoCloseable {
+
+    private final BatchService service;
+    private final PollPolicy policy;
+    private final double jitter;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Tracked> inFlight = new ConcurrentHashMap<>();
+    private final PollStats stats = new PollStats();
+
+    private final int bulkThreshold;
+    private final int bulkMaxPages;
+    private final Set<Tracked> bulkWaiting = ConcurrentHashMap.newKeySet();
+    private ScheduledFuture<?> nextBulkCycle;
+    private long nextBulkCycleAt;
+    private long lastBulkCycleAt;
+
+    public PollScheduler(BatchService service, Duration pollInterval, int threads, double jitter) {
+        this(service, new FixedPollPolicy(pollInterval), threads, jitter, Integer.MAX_VALUE, 1);
+    }
+
+    // Once bulkThreshold batches are in flight, due batches are refreshed together from up to bulkMaxPages list pages
+    public PollScheduler(BatchService service, PollPolicy policy, int threads, double jitter,
+                         int bulkThreshold, int bulkMaxPages) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        if (bulkThreshold <= 0 || bulkMaxPages <= 0) {
+            throw new IllegalArgumentException("bulkThreshold and bulkMaxPages must be positive");
+        }
+        this.service = service;
+        this.policy = policy;
+        this.jitter = jitter;
+        this.bulkThreshold = bulkThreshold;
+        this.bulkMaxPages = bulkMaxPages;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-poller-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Completes on a scheduler thread with the polled batch once it reaches a terminal state; tracking the same
+    // batch twice shares one poll loop
+    public CompletableFuture<Batch> track(Batch batch) {
+        Tracked tracked = new Tracked(batch);
+        Tracked existing = inFlight.putIfAbsent(batch.getId(), tracked);
+        if (existing != null) {
+            return existing.terminal;
+        }
+        tracked.terminal.whenComplete((b, ex) -> inFlight.remove(batch.getId(), tracked));
+
+        // The first poll is spread over part of an interval so a restart resuming many batches does not poll them all at once
+        long firstDelay = policy.nextPollDelay(batch, tracked.progress).toMillis();
+        schedule(tracked, (long) (firstDelay * jitter * ThreadLocalRandom.current().nextDouble()));
+        return tracked.terminal;
+    }
+
+    // Polls a tracked batch straight away instead of at its next scheduled time, e.g. when a webhook says it
+    // finished; false if no batch with this OpenAI ID is being tracked
+    public boolean pollNow(String openaiBatchId) {
+        Batch batch = service.getRegistry().getByOpenaiId(openaiBatchId);
+        Tracked tracked = batch == null ? null : inFlight.get(batch.getId());
+        if (tracked == null) {
+            return false;
+        }
+        pollNow(tracked);
+        return true;
+    }
+
+    private void pollNow(Tracked tracked) {
+        synchronized (tracked) {
+            boolean idle = bulkWaiting.remove(tracked) || (tracked.nextPoll != null && tracked.nextPoll.cancel(false));
+            if (!idle) {
+                // A poll is already running; the next one is brought forward when it finishes
+                tracked.pollRequested = true;
+                return;
+            }
+        }
+        try {
+            scheduler.execute(() -> poll(tracked));
+        } catch (RejectedExecutionException ex) {
+            tracked.terminal.completeExceptionally(new CancellationException("Poll scheduler closed"));
+        }
+    }
+
+    // How the batch has been moving across polls; null once it is no longer tracked
+    public PollProgress getProgress(String batchId) {
+        Tracked tracked = inFlight.get(batchId);
+        return tracked == null ? null : tracked.progress;
+    }
+
+    public int getActiveCount() {
+        return inFlight.size();
+    }
+
+    public PollStats getStats() {
+        return stats;
+    }
+
+    private void poll(Tracked tracked) {
+        if (tracked.terminal.isDone()) {
+            return;
+        }
+        service.pollBatchStatusAsync(tracked.batch).whenCompleteAsync((done, ex) -> {
+            if (ex != null) {
+                tracked.terminal.completeExceptionally(ex);
+                return;
+            }
+            stats.recordPoll();
+            afterRefresh(tracked);
+        }, scheduler);
+    }
+
+    private void afterRefresh(Tracked tracked) {
+        Batch batch = tracked.batch;
+        Instant now = Instant.now();
+        tracked.progress.record(batch.getRequestCounts() == null ? 0 : batch.getRequestCounts().getCompleted(), now);
+        if (batch.getStatus().isTerminal()) {
+            stats.recordFinished(tracked.alreadyTerminal ? null : detectionLatency(batch, now));
+            tracked.terminal.complete(batch);
+        } else {
+            schedule(tracked, jittered(policy.nextPollDelay(batch, tracked.progress).toMillis()));
+        }
+    }
+
+    private void schedule(Tracked tracked, long delayMillis) {
+        synchronized (tracked) {
+            if (tracked.pollRequested) {
+                // pollNow was called while the last poll was in flight, so that poll may have missed the change
+                tracked.pollRequested = false;
+                delayMillis = 0;
+            } else if (inFlight.size() >= bulkThreshold && tracked.batch.getOpenaiBatchId() != null
+                    && !tracked.batch.getStatus().isTerminal()) {
+                tracked.dueAt = System.currentTimeMillis() + delayMillis;
+                bulkWaiting.add(tracked);
+                scheduleBulkCycle(tracked.dueAt);
+                return;
+            }
+            try {
+                tracked.nextPoll = scheduler.schedule(() -> poll(tracked), delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                tracked.terminal.completeExceptionally(new CancellationException("Poll scheduler closed"));
+            }
+        }
+    }
+
+    private synchronized void scheduleBulkCycle(long dueAt) {
+        // Cycles are spaced out so batches falling due close together share one pass over the list
+        long runAt = Math.max(dueAt, lastBulkCycleAt + policy.minimumDelay().toMillis());
+        if (nextBulkCycle != null && nextBulkCycleAt <= runAt) {
+            return;
+        }
+        if (nextBulkCycle != null) {
+            nextBulkCycle.cancel(false);
+        }
+        try {
+            nextBulkCycle = scheduler.schedule(this::bulkCycle,
+                    Math.max(0, runAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            nextBulkCycleAt = runAt;
+        } catch (RejectedExecutionException ex) {
+            nextBulkCycle = null;
+        }
+    }
+
+    private void bulkCycle() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            nextBulkCycle = null;
+            lastBulkCycleAt = now;
+        }
+        List<Tracked> due = new ArrayList<>();
+        for (Tracked tracked : bulkWaiting) {
+            if (tracked.dueAt <= now && bulkWaiting.remove(tracked) && !tracked.terminal.isDone()) {
+                due.add(tracked);
+            }
+        }
+        scheduleNextBulkCycle();
+        if (due.isEmpty()) {
+            return;
+        }
+
+        List<Batch> batches = due.stream().map(tracked -> tracked.batch).toList();
+        service.refreshBatchesAsync(batches, bulkMaxPages).whenCompleteAsync((refreshed, ex) -> {
+            stats.recordBulkRefresh(ex == null ? refreshed.size() : 0);
+            for (Tracked tracked : due) {
+                if (ex == null && refreshed.contains(tracked.batch.getId())) {
+                    afterRefresh(tracked);
+                } else {
+                    // Not on the pages we read, or the list call failed: fall back to polling it directly
+                    poll(tracked);
+                }
+            }
+        }, scheduler);
+    }
+
+    private void scheduleNextBulkCycle() {
+        long earliest = Long.MAX_VALUE;
+        for (Tracked tracked : bulkWaiting) {
+            earliest = Math.min(earliest, tracked.dueAt);
+        }
+        if (earliest != Long.MAX_VALUE) {
+            scheduleBulkCycle(earliest);
+        }
+    }
+
+    private long jittered(long millis) {
+        if (jitter == 0 || millis == 0) {
+            return millis;
+        }
+        double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(0, (long) (millis * factor));
+    }
+
+    private static Duration detectionLatency(Batch batch, Instant detectedAt) {
+        Instant finishedAt = switch (batch.getStatus()) {
+            case COMPLETED -> batch.getCompletedAt();
+            case FAILED -> batch.getFailedAt();
+            case EXPIRED -> batch.getExpiredAt();
+            case CANCELLED -> batch.getCancelledAt();
+            default -> null;
+        };
+        return finishedAt == null ? null : Duration.between(finishedAt, detectedAt);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        CancellationException closed = new CancellationException("Poll scheduler closed");
+        inFlight.values().forEach(tracked -> tracked.terminal.completeExceptionally(closed));
+    }
+
+    private static class Tracked {
+        final Batch batch;
+        final boolean alreadyTerminal;
+        final PollProgress progress = new PollProgress();
+        final CompletableFuture<Batch> terminal = new CompletableFuture<>();
+        volatile long dueAt;
+        ScheduledFuture<?> nextPoll;
+        boolean pollRequested;
+
+        Tracked(Batch batch) {
+            this.batch = batch;
+            this.alreadyTerminal = batch.getStatus().isTerminal();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.openai.batchmanager.manager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PollStats {
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong bulkRefreshes = new AtomicLong();
+    private final AtomicLong bulkRefreshedBatches = new AtomicLong();
+    private final AtomicLong batchesFinished = new AtomicLong();
+    private final AtomicLong latencySamples = new AtomicLong();
+    private final AtomicLong detectionLatencyMillis = new AtomicLong();
+    private final AtomicLong maxDetectionLatencyMillis = new AtomicLong();
+
+    void recordPoll() {
+        polls.incrementAndGet();
+    }
+
+    void recordBulkRefresh(int batchesRefreshed) {
+        bulkRefreshes.incrementAndGet();
+        bulkRefreshedBatches.addAndGet(batchesRefreshed);
+    }
+
+    void recordFinished(Duration detectionLatency) {
+        batchesFinished.incrementAndGet();
+        if (detectionLatency != null) {
+            long millis = Math.max(0, detectionLatency.toMillis());
+            latencySamples.incrementAndGet();
+            detectionLatencyMillis.addAndGet(millis);
+            maxDetectionLatencyMillis.accumulateAndGet(millis, Math::max);
+        }
+    }
+
+    public long getPolls() {
+        return polls.get();
+    }
+
+    // List-based refresh cycles, each covering many batches with a few page requests
+    public long getBulkRefreshes() {
+        return bulkRefreshes.get();
+    }
+
+    public long getBulkRefreshedBatches() {
+        return bulkRefreshedBatches.get();
+    }
+
+    public long getBatchesFinished() {
+        return batchesFinished.get();
+    }
+
+    public double getPollsPerBatch() {
+        long finished = batchesFinished.get();
+        return finished == 0 ? 0 : (double) polls.get() / finished;
+    }
+
+    // Time between OpenAI stamping a batch terminal and a poll noticing it
+    public Duration getAverageDetectionLatency() {
+        long samples = latencySamples.get();
+        return samples == 0 ? Duration.ZERO : Duration.ofMillis(detectionLatencyMillis.get() / samples);
+    }
+
+    public Duration getMaxDetectionLatency() {
+        return Duration.ofMillis(maxDetectionLatencyMillis.get());
+    }
+
+    @Override
+    public String toString() {
+        return "PollStats{" +
+                "polls=" + polls +
+                ", bulkRefreshes=" + bulkRefreshes +
+                ", bulkRefreshedBatches=" + bulkRefreshedBatches +
+                ", batchesFinished=" + batchesFinished +
+                ", averageDetectionLatencyMillis=" + getAverageDetectionLatency().toMillis() +
+                ", maxDetectionLatencyMillis=" + maxDetectionLatencyMillis +
+                '}';
+    }
+}
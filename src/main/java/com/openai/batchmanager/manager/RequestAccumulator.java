@@ -0,0 +1,250 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.BatchOutcome;
+import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.service.BatchService;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Gathers requests handed over one at a time into batches, much like a Kafka producer: a batch goes out once it holds
+// maxRequests requests or maxBytes of JSONL, or linger after its first request, whichever comes first. Each request
+// is written to the database before enqueue returns and removed once it has been answered, so requests buffered
+// by a run that stopped are sent again by the next one
+public class RequestAccumulator implements AutoCloseable {
+
+    private final BatchService service;
+    private final Function<List<BatchRequest>, CompletableFuture<BatchOutcome>> submitter;
+    private final int maxRequests;
+    private final long maxBytes;
+    private final Duration linger;
+    private final ScheduledExecutorService timer;
+    // Held across the database write, so a lock rather than synchronized keeps waiting virtual threads unpinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, CompletableFuture<String>> unanswered = new ConcurrentHashMap<>();
+    private Map<String, Pending> buffer = new LinkedHashMap<>();
+    private long bufferedBytes;
+    private ScheduledFuture<?> lingerTimer;
+    private boolean closed;
+
+    // future is null for a request recovered from an earlier run, since nobody here is waiting on it
+    private static final class Pending {
+        final BatchRequest request;
+        final CompletableFuture<String> future;
+
+        Pending(BatchRequest request, CompletableFuture<String> future) {
+            this.request = request;
+            this.future = future;
+        }
+    }
+
+    public RequestAccumulator(BatchService service,
+                              Function<List<BatchRequest>, CompletableFuture<BatchOutcome>> submitter,
+                              int maxRequests, long maxBytes, Duration linger) {
+        this.service = service;
+        this.submitter = submitter;
+        this.maxRequests = maxRequests;
+        this.maxBytes = maxBytes;
+        this.linger = linger;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-accumulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Sends what an earlier run left unsent, straight away and apart from the buffer. Nobody is waiting on those
+    // requests, so they do not count as unanswered and the same custom IDs can be enqueued again; their results land
+    // in the database. An ID buffered more than once goes out in separate batches
+    public int recover() throws SQLException {
+        List<BatchRequest> recovered = service.recoverBufferedRequests();
+        Map<String, Pending> chunk = new LinkedHashMap<>();
+        long chunkBytes = 0;
+        for (BatchRequest request : recovered) {
+            if (chunk.containsKey(request.getCustomId())) {
+                send(chunk);
+                chunk = new LinkedHashMap<>();
+                chunkBytes = 0;
+            }
+            chunk.put(request.getCustomId(), new Pending(request, null));
+            chunkBytes += ShardPlanner.estimateLineBytes(request);
+            if (chunk.size() >= maxRequests || chunkBytes >= maxBytes) {
+                send(chunk);
+                chunk = new LinkedHashMap<>();
+                chunkBytes = 0;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            send(chunk);
+        }
+        return recovered.size();
+    }
+
+    // Completes with the response body, or fails with a RequestFailedException if the request came back with an error
+    public CompletableFuture<String> enqueue(String customId, String requestJson) {
+        BatchRequest request;
+        try {
+            request = new BatchRequest(customId, requestJson);
+        } catch (IllegalArgumentException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Map<String, Pending> full;
+        lock.lock();
+        try {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Request accumulator is closed"));
+            }
+            if (unanswered.containsKey(request.getCustomId())) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException(
+                        "Request '" + request.getCustomId() + "' is already waiting for a result"));
+            }
+            try {
+                service.bufferRequest(request);
+            } catch (SQLException ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+            full = add(request, future);
+        } finally {
+            lock.unlock();
+        }
+        send(full);
+        return future;
+    }
+
+    // Sends whatever is buffered without waiting for a threshold
+    public void flush() {
+        Map<String, Pending> drained;
+        lock.lock();
+        try {
+            drained = drain();
+        } finally {
+            lock.unlock();
+        }
+        send(drained);
+    }
+
+    public int getBufferedCount() {
+        lock.lock();
+        try {
+            return buffer.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Buffered and sent requests that have not been answered yet
+    public int getUnansweredCount() {
+        return unanswered.size();
+    }
+
+    // Called with the lock held; returns the buffer if this request filled it
+    private Map<String, Pending> add(BatchRequest request, CompletableFuture<String> future) {
+        unanswered.put(request.getCustomId(), future);
+        buffer.put(request.getCustomId(), new Pending(request, future));
+        bufferedBytes += ShardPlanner.estimateLineBytes(request);
+        if (buffer.size() >= maxRequests || bufferedBytes >= maxBytes) {
+            return drain();
+        }
+        if (lingerTimer == null) {
+            lingerTimer = timer.schedule(this::flush, linger.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return null;
+    }
+
+    private Map<String, Pending> drain() {
+        if (lingerTimer != null) {
+            lingerTimer.cancel(false);
+            lingerTimer = null;
+        }
+        if (buffer.isEmpty()) {
+            return null;
+        }
+        Map<String, Pending> drained = buffer;
+        buffer = new LinkedHashMap<>();
+        bufferedBytes = 0;
+        return drained;
+    }
+
+    // Outside the lock, since the BLOCK overflow policy can hold the submitting thread
+    private void send(Map<String, Pending> requests) {
+        if (requests == null) {
+            return;
+        }
+        List<BatchRequest> batch = new ArrayList<>(requests.size());
+        List<Long> seqs = new ArrayList<>(requests.size());
+        for (Pending pending : requests.values()) {
+            batch.add(pending.request);
+            seqs.add(pending.request.getBufferSeq());
+        }
+        CompletableFuture<BatchOutcome> submitted;
+        try {
+            submitted = submitter.apply(batch);
+        } catch (RuntimeException ex) {
+            submitted = CompletableFuture.failedFuture(ex);
+        }
+        submitted.whenComplete((outcome, ex) -> {
+            Throwable failure = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            for (Pending pending : requests.values()) {
+                if (pending.future == null) {
+                    continue;
+                }
+                String customId = pending.request.getCustomId();
+                CompletableFuture<String> future = pending.future;
+                unanswered.remove(customId, future);
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else if (outcome.getResponses().containsKey(customId)) {
+                    future.complete(outcome.getResponses().get(customId));
+                } else {
+                    future.completeExceptionally(new RequestFailedException(outcome.getFailures().get(customId)));
+                }
+            }
+            // Cut short by close, so they stay buffered for the next run to send or find in a batch
+            if (failure instanceof CancellationException) {
+                return;
+            }
+            try {
+                service.removeBufferedRequests(seqs);
+            } catch (SQLException ignored) {
+                // Left buffered; the next run drops them if they made it into a batch and sends them again otherwise
+            }
+        });
+    }
+
+    // Requests still in the buffer stay in the database for the next run; their futures are cancelled
+    @Override
+    public void close() {
+        List<CompletableFuture<String>> cancelled = new ArrayList<>();
+        lock.lock();
+        try {
+            closed = true;
+            Map<String, Pending> drained = drain();
+            if (drained != null) {
+                for (Pending pending : drained.values()) {
+                    unanswered.remove(pending.request.getCustomId(), pending.future);
+                    cancelled.add(pending.future);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        timer.shutdownNow();
+        cancelled.forEach(future -> future.completeExceptionally(new CancellationException("Request accumulator closed")));
+    }
+}
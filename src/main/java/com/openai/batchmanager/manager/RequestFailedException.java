@@ -0,0 +1,34 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.BatchRequest;
+
+// A single request that made it through its batch without a successful response
+public class RequestFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    // BatchRequest is not serializable, so the error is kept apart from it and survives a round trip on its own
+    private final transient BatchRequest request;
+    private final String errorCode;
+    private final String errorMessage;
+
+    public RequestFailedException(BatchRequest request) {
+        super("Request '" + request.getCustomId() + "' failed: " + request.getErrorCode() + " " + request.getErrorMessage());
+        this.request = request;
+        this.errorCode = request.getErrorCode();
+        this.errorMessage = request.getErrorMessage();
+    }
+
+    // Null once the exception has been deserialized
+    public BatchRequest getRequest() {
+        return request;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
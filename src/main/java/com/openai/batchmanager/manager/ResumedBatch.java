@@ -0,0 +1,34 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchOutcome;
+
+import java.util.concurrent.CompletableFuture;
+
+// One batch picked back up by BatchManager.resumeAll, with the outcome it will eventually produce
+public class ResumedBatch {
+    private final Batch batch;
+    private final CompletableFuture<BatchOutcome> outcome;
+
+    ResumedBatch(Batch batch, CompletableFuture<BatchOutcome> outcome) {
+        this.batch = batch;
+        this.outcome = outcome;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public CompletableFuture<BatchOutcome> getOutcome() {
+        return outcome;
+    }
+
+    @Override
+    public String toString() {
+        return "ResumedBatch{" +
+                "id='" + batch.getId() + '\'' +
+                ", openaiBatchId='" + batch.getOpenaiBatchId() + '\'' +
+                ", done=" + outcome.isDone() +
+                '}';
+    }
+}
@@ -0,0 +1,11 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.Batch;
+
+import java.util.Map;
+
+@FunctionalInterface
+public interface ShardListener {
+
+    void onShardCompleted(Batch shard, Map<String, String> results);
+}
@@ -0,0 +1,74 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.BatchRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ShardPlanner {
+
+    // Covers the custom_id/method/url/body wrapper written around every request line
+    private static final int LINE_OVERHEAD_BYTES = 96;
+
+    private final int maxRequestsPerShard;
+    private final long maxBytesPerShard;
+
+    public ShardPlanner(int maxRequestsPerShard, long maxBytesPerShard) {
+        if (maxRequestsPerShard <= 0) {
+            throw new IllegalArgumentException("maxRequestsPerShard must be positive");
+        }
+        if (maxBytesPerShard <= 0) {
+            throw new IllegalArgumentException("maxBytesPerShard must be positive");
+        }
+        this.maxRequestsPerShard = maxRequestsPerShard;
+        this.maxBytesPerShard = maxBytesPerShard;
+    }
+
+    public List<List<BatchRequest>> plan(List<BatchRequest> requests) {
+        List<List<BatchRequest>> shards = new ArrayList<>();
+        List<BatchRequest> current = new ArrayList<>();
+        long currentBytes = 0;
+
+        for (BatchRequest request : requests) {
+            long lineBytes = estimateLineBytes(request);
+            if (lineBytes > maxBytesPerShard) {
+                throw new IllegalArgumentException("Request '" + request.getCustomId() + "' is larger than the " +
+                        maxBytesPerShard + " byte batch limit");
+            }
+            if (!current.isEmpty() &&
+                    (current.size() >= maxRequestsPerShard || currentBytes + lineBytes > maxBytesPerShard)) {
+                shards.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(request);
+            currentBytes += lineBytes;
+        }
+        if (!current.isEmpty()) {
+            shards.add(current);
+        }
+        return shards;
+    }
+
+    public static long estimateLineBytes(BatchRequest request) {
+        return utf8Length(request.getCustomId()) + utf8Length(request.getRequestData()) + LINE_OVERHEAD_BYTES;
+    }
+
+    static long utf8Length(String value) {
+        long bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,175 @@
+package com.openai.batchmanager.manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+public class SubmissionLimiter {
+
+    private final int maxInFlightBatches;
+    private final int maxConcurrentUploads;
+    private final long maxPendingBytes;
+
+    private int inFlight;
+    private int uploads;
+    private long pendingBytes;
+    private final Map<String, Slot> slots = new HashMap<>();
+    private final LinkedHashMap<String, Waiter> waiting = new LinkedHashMap<>();
+
+    public SubmissionLimiter(int maxInFlightBatches, int maxConcurrentUploads, long maxPendingBytes) {
+        if (maxInFlightBatches <= 0 || maxConcurrentUploads <= 0 || maxPendingBytes <= 0) {
+            throw new IllegalArgumentException("Submission limits must be positive");
+        }
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.maxConcurrentUploads = maxConcurrentUploads;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    // Takes a slot only if one is free now and nobody is queued ahead
+    public synchronized boolean tryAcquire(String batchId, long bytes) {
+        if (!waiting.isEmpty() || !fits(bytes)) {
+            return false;
+        }
+        take(batchId, bytes);
+        return true;
+    }
+
+    // Completes once the batch has a slot; batches are admitted in order
+    public CompletableFuture<Void> acquire(String batchId, long bytes) {
+        synchronized (this) {
+            if (tryAcquire(batchId, bytes)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            Waiter waiter = new Waiter(bytes);
+            waiting.put(batchId, waiter);
+            return waiter.admitted;
+        }
+    }
+
+    // Counts a batch an earlier run already uploaded, e.g. one being resumed. It takes a slot even over the limit,
+    // since it is in flight either way, and holds no upload or bytes
+    public synchronized void restore(String batchId) {
+        if (!slots.containsKey(batchId)) {
+            Slot slot = new Slot(0);
+            slot.uploading = false;
+            slots.put(batchId, slot);
+            inFlight++;
+        }
+    }
+
+    // The batch's requests are uploaded, so its bytes and upload slot go back; it stays in flight until released
+    public void uploadFinished(String batchId) {
+        List<Waiter> admitted;
+        synchronized (this) {
+            Slot slot = slots.get(batchId);
+            if (slot == null || !slot.uploading) {
+                return;
+            }
+            slot.uploading = false;
+            uploads--;
+            pendingBytes -= slot.bytes;
+            admitted = admitWaiting();
+        }
+        admitted.forEach(waiter -> waiter.admitted.complete(null));
+    }
+
+    // Gives back whatever the batch still holds, or takes it out of the queue if it never got a slot
+    public void release(String batchId) {
+        List<Waiter> admitted;
+        Waiter abandoned;
+        synchronized (this) {
+            abandoned = waiting.remove(batchId);
+            Slot slot = slots.remove(batchId);
+            if (slot != null) {
+                inFlight--;
+                if (slot.uploading) {
+                    uploads--;
+                    pendingBytes -= slot.bytes;
+                }
+            }
+            admitted = admitWaiting();
+        }
+        if (abandoned != null) {
+            abandoned.admitted.completeExceptionally(new CancellationException("Submission slot released while waiting"));
+        }
+        // Completed outside the lock so dependent stages cannot re-enter it
+        admitted.forEach(waiter -> waiter.admitted.complete(null));
+    }
+
+    public void cancelWaiting() {
+        List<Waiter> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(waiting.values());
+            waiting.clear();
+        }
+        cancelled.forEach(waiter -> waiter.admitted.completeExceptionally(new CancellationException("Submission cancelled")));
+    }
+
+    public synchronized int getInFlightBatches() {
+        return inFlight;
+    }
+
+    public synchronized int getActiveUploads() {
+        return uploads;
+    }
+
+    public synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    private boolean fits(long bytes) {
+        // A batch larger than the byte limit on its own is let through once nothing else is pending
+        return inFlight < maxInFlightBatches
+                && uploads < maxConcurrentUploads
+                && (pendingBytes == 0 || pendingBytes + bytes <= maxPendingBytes);
+    }
+
+    private void take(String batchId, long bytes) {
+        slots.put(batchId, new Slot(bytes));
+        inFlight++;
+        uploads++;
+        pendingBytes += bytes;
+    }
+
+    private List<Waiter> admitWaiting() {
+        List<Waiter> admitted = new ArrayList<>();
+        Iterator<Map.Entry<String, Waiter>> it = waiting.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Waiter> next = it.next();
+            if (!fits(next.getValue().bytes)) {
+                break;
+            }
+            it.remove();
+            take(next.getKey(), next.getValue().bytes);
+            admitted.add(next.getValue());
+        }
+        return admitted;
+    }
+
+    private static class Slot {
+        final long bytes;
+        boolean uploading = true;
+
+        Slot(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static class Waiter {
+        final long bytes;
+        final CompletableFuture<Void> admitted = new CompletableFuture<>();
+
+        Waiter(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.openai.batchmanager.manager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.openai.batchmanager.client.OpenAIApiException;
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.util.JsonUtils;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+// Sends requests one at a time to their regular endpoint instead of through a batch, for work a batch would not
+// finish in time. At most maxConcurrent calls are open at once; the rest wait for a permit without holding a thread
+public class SyncExecutor {
+
+    // Set on a request whose call never got a final answer from the API, as opposed to one the API rejected: it could
+    // not be reached, or was still throttled or failing with a 5xx once its retries were used up
+    public static final String SYNC_FAILED = "sync_failed";
+
+    private final OpenAIClient client;
+    private final AsyncPermits permits;
+    private final LongAdder sent = new LongAdder();
+
+    public SyncExecutor(OpenAIClient client, int maxConcurrent) {
+        this.client = client;
+        this.permits = new AsyncPermits(maxConcurrent);
+    }
+
+    // Completes with a copy of the request holding the response or the error, never exceptionally. skip is checked
+    // once a permit is free, so requests nobody needs any more are not sent
+    public CompletableFuture<BatchRequest> execute(BatchRequest request, String endpoint, BooleanSupplier skip) {
+        return permits.acquire().thenCompose(permit -> {
+            if (skip.getAsBoolean()) {
+                permits.release();
+                return CompletableFuture.completedFuture(
+                        answer(request, null, new CancellationException("No longer needed")));
+            }
+            sent.increment();
+            return client.sendRequestAsync(endpoint, request.getRequestData())
+                    .handle((body, ex) -> answer(request, body, ex))
+                    .whenComplete((answered, ex) -> permits.release());
+        }).exceptionally(ex -> answer(request, null, ex));
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public void cancelWaiting() {
+        permits.cancelWaiting();
+    }
+
+    private BatchRequest answer(BatchRequest request, String body, Throwable ex) {
+        BatchRequest answered = new BatchRequest(request.getCustomId(), request.getRequestData());
+        answered.setRequestHash(request.getRequestHash());
+        if (ex == null) {
+            answered.setStatus(BatchRequest.RequestStatus.COMPLETED);
+            answered.setResponseData(body);
+            return answered;
+        }
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        answered.setStatus(BatchRequest.RequestStatus.FAILED);
+        if (cause instanceof OpenAIApiException) {
+            OpenAIApiException apiError = (OpenAIApiException) cause;
+            JsonNode error = errorOf(apiError.getResponseBody());
+            String code = error == null ? null : JsonUtils.getStringValue(error, "code");
+            String message = error == null ? null : JsonUtils.getStringValue(error, "message");
+            if (rejected(apiError.getStatusCode())) {
+                // The same code and message a batch would have reported in its error file
+                answered.setErrorCode(code != null ? code : "http_" + apiError.getStatusCode());
+                answered.setErrorMessage(message != null ? message : apiError.getMessage());
+            } else {
+                // Throttled or failing once the retries were used up, so no answer; the API's code goes in the message
+                answered.setErrorCode(SYNC_FAILED);
+                answered.setErrorMessage("HTTP " + apiError.getStatusCode() + (code != null ? " " + code : "") + ": "
+                        + (message != null ? message : apiError.getMessage()));
+            }
+        } else {
+            answered.setErrorCode(SYNC_FAILED);
+            answered.setErrorMessage(cause.getMessage());
+        }
+        return answered;
+    }
+
+    // A 4xx the client would not retry, so sending the request again would get the same answer
+    private boolean rejected(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && !client.getRetryPolicy().isRetryable(statusCode);
+    }
+
+    private static JsonNode errorOf(String responseBody) {
+        if (responseBody == null) {
+            return null;
+        }
+        try {
+            JsonNode error = JsonUtils.getMapper().readTree(responseBody).get("error");
+            return error != null && error.isObject() ? error : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.openai.batchmanager.manager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.util.JsonUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+public class TokenEstimator {
+
+    // Close enough to the real tokenizers for English text to budget against a limit
+    static final int CHARS_PER_TOKEN = 4;
+    static final int TOKENS_PER_MESSAGE = 4;
+    static final int TOKENS_PER_REQUEST = 3;
+
+    private static final List<String> PROMPT_FIELDS = List.of("messages", "input", "prompt", "instructions");
+    private static final List<String> OUTPUT_LIMIT_FIELDS = List.of("max_completion_tokens", "max_output_tokens", "max_tokens");
+
+    private final ObjectMapper mapper = JsonUtils.getMapper();
+
+    public long estimate(List<BatchRequest> requests) {
+        long total = 0;
+        for (BatchRequest request : requests) {
+            total += estimate(request.getRequestData());
+        }
+        return total;
+    }
+
+    // Prompt tokens plus the output the request allows for, which is what counts against the enqueued limit
+    public long estimate(String requestJson) {
+        JsonNode json = parse(requestJson);
+
+        long promptChars = 0;
+        long framing = TOKENS_PER_REQUEST;
+        for (String field : PROMPT_FIELDS) {
+            JsonNode node = json.get(field);
+            if (node == null) {
+                continue;
+            }
+            promptChars += textLength(node);
+            if (field.equals("messages") && node.isArray()) {
+                framing += (long) TOKENS_PER_MESSAGE * node.size();
+            }
+        }
+
+        long outputTokens = 0;
+        for (String field : OUTPUT_LIMIT_FIELDS) {
+            JsonNode node = json.get(field);
+            if (node != null && node.canConvertToLong()) {
+                outputTokens = node.asLong();
+                break;
+            }
+        }
+
+        return (promptChars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + framing + outputTokens;
+    }
+
+    private JsonNode parse(String requestJson) {
+        try {
+            return mapper.readTree(requestJson);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON in request data: " + e.getMessage(), e);
+        }
+    }
+
+    private static long textLength(JsonNode node) {
+        if (node.isTextual()) {
+            return node.asText().length();
+        }
+        long length = 0;
+        for (JsonNode child : node) {
+            length += textLength(child);
+        }
+        return length;
+    }
+}
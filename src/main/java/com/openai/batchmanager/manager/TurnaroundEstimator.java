@@ -0,0 +1,58 @@
+package com.openai.batchmanager.manager;
+
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchStatus;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// How long recent batches took from starting to run to completing, per model, so a deadline can be judged before
+// anything is uploaded. Without any history nothing is estimated, so the batch is sent and only judged by its progress
+public class TurnaroundEstimator {
+
+    public static final int MAX_SAMPLES = 50;
+    // Judged by a slow batch rather than a typical one, since missing a deadline costs more than an early sync call
+    private static final double PERCENTILE = 0.9;
+
+    private final Map<String, Deque<Long>> byModel = new HashMap<>();
+    private final Deque<Long> all = new ArrayDeque<>();
+
+    // Only completed batches with both timestamps count; anything else is ignored
+    public synchronized void record(Batch batch) {
+        if (batch.getStatus() != BatchStatus.COMPLETED || batch.getSubmittedAt() == null || batch.getCompletedAt() == null) {
+            return;
+        }
+        long millis = Math.max(0, Duration.between(batch.getSubmittedAt(), batch.getCompletedAt()).toMillis());
+        if (batch.getModel() != null) {
+            add(byModel.computeIfAbsent(batch.getModel(), m -> new ArrayDeque<>()), millis);
+        }
+        add(all, millis);
+    }
+
+    // The model's own history when there is any, otherwise every model's; null with no history at all
+    public synchronized Duration estimate(String model) {
+        Deque<Long> samples = model == null ? null : byModel.get(model);
+        if (samples == null || samples.isEmpty()) {
+            samples = all;
+        }
+        if (samples.isEmpty()) {
+            return null;
+        }
+        List<Long> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        return Duration.ofMillis(sorted.get((int) Math.ceil(PERCENTILE * sorted.size()) - 1));
+    }
+
+    private static void add(Deque<Long> samples, long millis) {
+        samples.addLast(millis);
+        if (samples.size() > MAX_SAMPLES) {
+            samples.removeFirst();
+        }
+    }
+}
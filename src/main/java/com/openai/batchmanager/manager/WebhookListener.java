@@ -0,0 +1,159 @@
+package com.openai.batchmanager.manager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.openai.batchmanager.util.JsonUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+public class WebhookListener implements AutoCloseable {
+
+    public static final String DEFAULT_PATH = "/webhooks/openai";
+    // Events older or newer than this are rejected, so a captured request cannot be replayed later
+    static final Duration TIMESTAMP_TOLERANCE = Duration.ofMinutes(5);
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+
+    private final byte[] key;
+    private final Consumer<String> onBatchEvent;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // onBatchEvent gets the OpenAI batch ID of every verified batch.* event
+    public WebhookListener(InetSocketAddress address, String path, String secret, Consumer<String> onBatchEvent)
+            throws IOException {
+        if (secret == null || secret.trim().isEmpty()) {
+            throw new IllegalArgumentException("secret cannot be null or empty");
+        }
+        if (onBatchEvent == null) {
+            throw new IllegalArgumentException("onBatchEvent cannot be null");
+        }
+        this.key = decodeSecret(secret);
+        this.onBatchEvent = onBatchEvent;
+
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-webhook-listener");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(address, 0);
+        server.createContext(path, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readNBytes(MAX_BODY_BYTES + 1);
+            }
+            if (body.length > MAX_BODY_BYTES) {
+                exchange.sendResponseHeaders(413, -1);
+                return;
+            }
+            if (!verify(exchange.getRequestHeaders().getFirst("webhook-id"),
+                    exchange.getRequestHeaders().getFirst("webhook-timestamp"),
+                    exchange.getRequestHeaders().getFirst("webhook-signature"), body, Instant.now())) {
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+
+            JsonNode event;
+            try {
+                event = JsonUtils.getMapper().readTree(body);
+            } catch (IOException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            String type = JsonUtils.getStringValue(event, "type");
+            JsonNode data = event.get("data");
+            String batchId = data == null ? null : JsonUtils.getStringValue(data, "id");
+            // Anything else is acknowledged and ignored, so OpenAI does not keep retrying it
+            if (type != null && type.startsWith("batch.") && batchId != null) {
+                onBatchEvent.accept(batchId);
+            }
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+
+    // Standard Webhooks scheme: HMAC-SHA256 over "id.timestamp.body", any of the space separated v1 signatures may match
+    boolean verify(String id, String timestamp, String signatures, byte[] body, Instant now) {
+        if (id == null || timestamp == null || signatures == null) {
+            return false;
+        }
+        Instant sentAt;
+        try {
+            sentAt = Instant.ofEpochSecond(Long.parseLong(timestamp));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Duration.between(sentAt, now).abs().compareTo(TIMESTAMP_TOLERANCE) > 0) {
+            return false;
+        }
+
+        byte[] expected = sign(id, timestamp, body);
+        for (String signature : signatures.split(" ")) {
+            if (!signature.startsWith("v1,")) {
+                continue;
+            }
+            byte[] actual;
+            try {
+                actual = Base64.getDecoder().decode(signature.substring(3));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (MessageDigest.isEqual(expected, actual)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    byte[] sign(String id, String timestamp, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            mac.update((id + "." + timestamp + ".").getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static byte[] decodeSecret(String secret) {
+        String encoded = secret.startsWith("whsec_") ? secret.substring("whsec_".length()) : secret;
+        try {
+            return Base64.getDecoder().decode(encoded);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("secret must be a base64 webhook signing secret", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
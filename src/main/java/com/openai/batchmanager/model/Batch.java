@@ -1,6 +1,7 @@
 package com.openai.batchmanager.model;
 
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.Map;
 
 public class Batch {
@@ -27,6 +28,17 @@ public class Batch {
     private Instant cancellingAt;
     private Instant cancelledAt;
     
+    private String submissionId;
+    private int shardIndex;
+    private int shardCount = 1;
+    // Set on a follow-up batch that resubmits what an expired or cancelled one never processed
+    private String parentBatchId;
+    // Set when the caller cancelled the batch through BatchManager, so what it never ran is not salvaged
+    private boolean cancelRequested;
+
+    private String model;
+    private long estimatedTokens;
+    
     private int totalRequests;
     private int completedRequests;
 
@@ -38,6 +50,44 @@ public class Batch {
         this.requestCounts = new RequestCounts();
     }
 
+    private Batch(String id, Instant createdAt) {
+        this.id = id;
+        this.createdAt = createdAt;
+    }
+
+    // A detached copy, for handing out a batch that is still being updated in place
+    public Batch copy() {
+        Batch copy = new Batch(id, createdAt);
+        copy.openaiBatchId = openaiBatchId;
+        copy.status = status;
+        copy.endpoint = endpoint;
+        copy.inputFileId = inputFileId;
+        copy.outputFileId = outputFileId;
+        copy.errorFileId = errorFileId;
+        copy.completionWindow = completionWindow;
+        copy.metadata = metadata == null ? null : new HashMap<>(metadata);
+        copy.requestCounts = requestCounts == null ? null
+                : new RequestCounts(requestCounts.getTotal(), requestCounts.getCompleted(), requestCounts.getFailed());
+        copy.submittedAt = submittedAt;
+        copy.completedAt = completedAt;
+        copy.failedAt = failedAt;
+        copy.expiredAt = expiredAt;
+        copy.expiresAt = expiresAt;
+        copy.finalizingAt = finalizingAt;
+        copy.cancellingAt = cancellingAt;
+        copy.cancelledAt = cancelledAt;
+        copy.submissionId = submissionId;
+        copy.shardIndex = shardIndex;
+        copy.shardCount = shardCount;
+        copy.parentBatchId = parentBatchId;
+        copy.cancelRequested = cancelRequested;
+        copy.model = model;
+        copy.estimatedTokens = estimatedTokens;
+        copy.totalRequests = totalRequests;
+        copy.completedRequests = completedRequests;
+        return copy;
+    }
+
     public String getId() {
         return id;
     }
@@ -182,6 +232,62 @@ public class Batch {
         this.cancelledAt = cancelledAt;
     }
 
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    public void setSubmissionId(String submissionId) {
+        this.submissionId = submissionId;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    public String getParentBatchId() {
+        return parentBatchId;
+    }
+
+    public void setParentBatchId(String parentBatchId) {
+        this.parentBatchId = parentBatchId;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public void setCancelRequested(boolean cancelRequested) {
+        this.cancelRequested = cancelRequested;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public long getEstimatedTokens() {
+        return estimatedTokens;
+    }
+
+    public void setEstimatedTokens(long estimatedTokens) {
+        this.estimatedTokens = estimatedTokens;
+    }
+
     // Legacy getters/setters for backward compatibility
     public int getTotalRequests() {
         return requestCounts != null ? requestCounts.getTotal() : totalRequests;
@@ -0,0 +1,144 @@
+package com.openai.batchmanager.model;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+// A point-in-time snapshot of one change to a batch, as seen by this process
+public class BatchEvent {
+
+    public enum Type {
+        // The batch moved to a new status; previousStatus is null the first time this process sees it
+        STATUS_CHANGED,
+        // request_counts moved; carries the deltas and a fresh completion estimate
+        PROGRESS,
+        // Result lines written to the database so far while the output and error files are read
+        RESULTS_INGESTED
+    }
+
+    private final Type type;
+    private final Instant timestamp;
+    private final String batchId;
+    private final String openaiBatchId;
+    private final String submissionId;
+    private final Map<String, String> metadata;
+    private final BatchStatus previousStatus;
+    private final BatchStatus status;
+    private final RequestCounts requestCounts;
+    private final int completedDelta;
+    private final int failedDelta;
+    private final Instant estimatedCompletion;
+    private final long resultsIngested;
+
+    private BatchEvent(Type type, Batch batch, BatchStatus previousStatus, int completedDelta, int failedDelta,
+                       Instant estimatedCompletion, long resultsIngested) {
+        this.type = type;
+        this.timestamp = Instant.now();
+        this.batchId = batch.getId();
+        this.openaiBatchId = batch.getOpenaiBatchId();
+        this.submissionId = batch.getSubmissionId();
+        this.metadata = batch.getMetadata() == null ? Map.of() : Map.copyOf(batch.getMetadata());
+        this.previousStatus = previousStatus;
+        this.status = batch.getStatus();
+        RequestCounts counts = batch.getRequestCounts();
+        this.requestCounts = counts == null ? null
+                : new RequestCounts(counts.getTotal(), counts.getCompleted(), counts.getFailed());
+        this.completedDelta = completedDelta;
+        this.failedDelta = failedDelta;
+        this.estimatedCompletion = estimatedCompletion;
+        this.resultsIngested = resultsIngested;
+    }
+
+    public static BatchEvent statusChanged(Batch batch, BatchStatus previousStatus) {
+        return new BatchEvent(Type.STATUS_CHANGED, batch, previousStatus, 0, 0, null, 0);
+    }
+
+    public static BatchEvent progress(Batch batch, int completedDelta, int failedDelta, Instant estimatedCompletion) {
+        return new BatchEvent(Type.PROGRESS, batch, batch.getStatus(), completedDelta, failedDelta, estimatedCompletion, 0);
+    }
+
+    public static BatchEvent resultsIngested(Batch batch, long resultsIngested) {
+        return new BatchEvent(Type.RESULTS_INGESTED, batch, batch.getStatus(), 0, 0, null, resultsIngested);
+    }
+
+    // Matches events for the batch with this local or OpenAI ID
+    public static Predicate<BatchEvent> forBatch(String batchId) {
+        return event -> batchId.equals(event.batchId) || batchId.equals(event.openaiBatchId);
+    }
+
+    public static Predicate<BatchEvent> forSubmission(String submissionId) {
+        return event -> submissionId.equals(event.submissionId);
+    }
+
+    public static Predicate<BatchEvent> withMetadata(String key, String value) {
+        return event -> Objects.equals(event.metadata.get(key), value);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public String getOpenaiBatchId() {
+        return openaiBatchId;
+    }
+
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    public BatchStatus getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public BatchStatus getStatus() {
+        return status;
+    }
+
+    public RequestCounts getRequestCounts() {
+        return requestCounts;
+    }
+
+    public int getCompletedDelta() {
+        return completedDelta;
+    }
+
+    public int getFailedDelta() {
+        return failedDelta;
+    }
+
+    // Null until some requests have been processed
+    public Instant getEstimatedCompletion() {
+        return estimatedCompletion;
+    }
+
+    public long getResultsIngested() {
+        return resultsIngested;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchEvent{" +
+                "type=" + type +
+                ", batchId='" + batchId + '\'' +
+                ", openaiBatchId='" + openaiBatchId + '\'' +
+                ", previousStatus=" + previousStatus +
+                ", status=" + status +
+                ", completedDelta=" + completedDelta +
+                ", failedDelta=" + failedDelta +
+                ", resultsIngested=" + resultsIngested +
+                '}';
+    }
+}
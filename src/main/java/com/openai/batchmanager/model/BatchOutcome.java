@@ -0,0 +1,56 @@
+package com.openai.batchmanager.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BatchOutcome {
+    private final String submissionId;
+    private final Map<String, String> responses;
+    private final Map<String, BatchRequest> failures;
+
+    public BatchOutcome(String submissionId, Map<String, String> responses, Map<String, BatchRequest> failures) {
+        this.submissionId = submissionId;
+        this.responses = Collections.unmodifiableMap(responses);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    // Custom ID to response body for every request that succeeded
+    public Map<String, String> getResponses() {
+        return responses;
+    }
+
+    // Custom ID to every request that did not, with the error code and message recorded on it
+    public Map<String, BatchRequest> getFailures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    // Folds in the outcome of resubmitting some of this outcome's failures
+    public BatchOutcome merge(BatchOutcome retry) {
+        Map<String, String> mergedResponses = new HashMap<>(responses);
+        mergedResponses.putAll(retry.responses);
+
+        Map<String, BatchRequest> mergedFailures = new HashMap<>(failures);
+        mergedFailures.keySet().removeAll(retry.responses.keySet());
+        mergedFailures.putAll(retry.failures);
+
+        return new BatchOutcome(retry.submissionId, mergedResponses, mergedFailures);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOutcome{" +
+                "submissionId='" + submissionId + '\'' +
+                ", responses=" + responses.size() +
+                ", failures=" + failures.size() +
+                '}';
+    }
+}
@@ -0,0 +1,28 @@
+package com.openai.batchmanager.model;
+
+import java.util.List;
+
+public class BatchPage {
+    private final List<Batch> batches;
+    private final boolean hasMore;
+    private final String lastId;
+
+    public BatchPage(List<Batch> batches, boolean hasMore, String lastId) {
+        this.batches = List.copyOf(batches);
+        this.hasMore = hasMore;
+        this.lastId = lastId;
+    }
+
+    public List<Batch> getBatches() {
+        return batches;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // Pass as "after" to fetch the next page
+    public String getLastId() {
+        return lastId;
+    }
+}
@@ -12,6 +12,10 @@ public class BatchRequest {
     private final String requestData;
     private String responseData;
     private RequestStatus status;
+    private String errorCode;
+    private String errorMessage;
+    private String requestHash;
+    private Long bufferSeq;
 
     public BatchRequest(String customId, String requestData) {
         if (customId == null || customId.trim().isEmpty()) {
@@ -52,4 +56,38 @@ public class BatchRequest {
         }
         this.status = status;
     }
-}
\ No newline at end of file
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(String errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    // Canonical hash of endpoint and body, set when the response cache or coalescing is enabled; null otherwise
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    // The accumulator's buffer row for this request; null for requests that were never buffered
+    public Long getBufferSeq() {
+        return bufferSeq;
+    }
+
+    public void setBufferSeq(Long bufferSeq) {
+        this.bufferSeq = bufferSeq;
+    }
+}
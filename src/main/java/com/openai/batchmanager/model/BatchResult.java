@@ -0,0 +1,73 @@
+package com.openai.batchmanager.model;
+
+public class BatchResult {
+    private String customId;
+    private int statusCode;
+    private String responseJson;
+    private String errorCode;
+    private String errorMessage;
+
+    public BatchResult() {
+    }
+
+    public BatchResult(String customId, String responseJson) {
+        this.customId = customId;
+        this.responseJson = responseJson;
+    }
+
+    public String getCustomId() {
+        return customId;
+    }
+
+    public void setCustomId(String customId) {
+        this.customId = customId;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public String getResponseJson() {
+        return responseJson;
+    }
+
+    public void setResponseJson(String responseJson) {
+        this.responseJson = responseJson;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(String errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    // Lines in the error file carry a response too, so a non-2xx status counts as a failure
+    public boolean isSuccess() {
+        return responseJson != null && errorCode == null && errorMessage == null
+                && (statusCode == 0 || statusCode / 100 == 2);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "customId='" + customId + '\'' +
+                ", statusCode=" + statusCode +
+                ", errorCode='" + errorCode + '\'' +
+                ", errorMessage='" + errorMessage + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,169 @@
+package com.openai.batchmanager.service;
+
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchEvent;
+import com.openai.batchmanager.model.BatchStatus;
+import com.openai.batchmanager.model.RequestCounts;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// Lifecycle events derived from every batch write in BatchService. Each subscriber gets its own bounded buffer and
+// receives only what it requests; the polling path never waits on a slow subscriber, events that do not fit its
+// buffer are dropped for it and counted instead
+public class BatchEventPublisher implements Flow.Publisher<BatchEvent>, AutoCloseable {
+
+    private final SubmissionPublisher<BatchEvent> publisher;
+    private final Map<String, Snapshot> lastSeen = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    public BatchEventPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    public BatchEventPublisher(Executor executor, int bufferSize) {
+        this.publisher = new SubmissionPublisher<>(executor, bufferSize);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super BatchEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    // Events that fail the filter do not use up the subscriber's demand
+    public Flow.Publisher<BatchEvent> filter(Predicate<BatchEvent> filter) {
+        return subscriber -> publisher.subscribe(new FilteringSubscriber(subscriber, filter));
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    // Batches whose last status and counts are kept to tell what changed; the same ones the registry holds
+    public int getTrackedCount() {
+        return lastSeen.size();
+    }
+
+    void batchSaved(Batch batch) {
+        Snapshot current = new Snapshot(batch);
+        Snapshot previous = batch.getStatus().isTerminal() ? lastSeen.remove(batch.getId()) : lastSeen.put(batch.getId(), current);
+        // Saving a batch again after it finished, e.g. once its results are in, is not a change
+        if (previous == null && batch.getStatus().isTerminal()) {
+            return;
+        }
+        if (!publisher.hasSubscribers()) {
+            return;
+        }
+
+        if (previous == null || previous.status != current.status) {
+            offer(BatchEvent.statusChanged(batch, previous == null ? null : previous.status));
+        }
+        int completedDelta = current.completed - (previous == null ? 0 : previous.completed);
+        int failedDelta = current.failed - (previous == null ? 0 : previous.failed);
+        if (completedDelta != 0 || failedDelta != 0) {
+            offer(BatchEvent.progress(batch, completedDelta, failedDelta, estimateCompletion(batch)));
+        }
+    }
+
+    // Dropped together with the registry entry, for a batch that will not be written again here
+    void forget(Batch batch) {
+        lastSeen.remove(batch.getId());
+    }
+
+    void resultsIngested(Batch batch, long resultsIngested) {
+        if (publisher.hasSubscribers()) {
+            offer(BatchEvent.resultsIngested(batch, resultsIngested));
+        }
+    }
+
+    private void offer(BatchEvent event) {
+        publisher.offer(event, (subscriber, unused) -> {
+            dropped.increment();
+            return false;
+        });
+    }
+
+    // Straight-line extrapolation from the time since submission and the share of requests already processed
+    static Instant estimateCompletion(Batch batch) {
+        RequestCounts counts = batch.getRequestCounts();
+        if (counts == null || counts.getTotal() == 0) {
+            return null;
+        }
+        int processed = counts.getCompleted() + counts.getFailed();
+        if (processed == 0) {
+            return null;
+        }
+        Instant now = Instant.now();
+        if (processed >= counts.getTotal()) {
+            return now;
+        }
+        Instant started = batch.getSubmittedAt() != null ? batch.getSubmittedAt() : batch.getCreatedAt();
+        Duration elapsed = Duration.between(started, now);
+        if (elapsed.isNegative()) {
+            return null;
+        }
+        return now.plus(elapsed.multipliedBy(counts.getTotal() - processed).dividedBy(processed));
+    }
+
+    @Override
+    public void close() {
+        publisher.close();
+    }
+
+    private static class Snapshot {
+        final BatchStatus status;
+        final int completed;
+        final int failed;
+
+        Snapshot(Batch batch) {
+            this.status = batch.getStatus();
+            this.completed = batch.getRequestCounts() == null ? 0 : batch.getRequestCounts().getCompleted();
+            this.failed = batch.getRequestCounts() == null ? 0 : batch.getRequestCounts().getFailed();
+        }
+    }
+
+    private static class FilteringSubscriber implements Flow.Subscriber<BatchEvent> {
+        private final Flow.Subscriber<? super BatchEvent> downstream;
+        private final Predicate<BatchEvent> filter;
+        private Flow.Subscription subscription;
+
+        FilteringSubscriber(Flow.Subscriber<? super BatchEvent> downstream, Predicate<BatchEvent> filter) {
+            this.downstream = downstream;
+            this.filter = filter;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(BatchEvent event) {
+            if (filter.test(event)) {
+                downstream.onNext(event);
+            } else {
+                // Skipped, so hand the demand it used back
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            downstream.onComplete();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.openai.batchmanager.service;
+
+import com.openai.batchmanager.model.Batch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The live, non-terminal batches this process follows, indexed by local and OpenAI ID. The instances are the ones
+// being polled and are changed in place before each write to the database, so they can be ahead of it; BatchService
+// hands out copies. Batches drop out once terminal, or once nothing here follows them any more
+public class BatchRegistry {
+
+    private final Map<String, Batch> byId = new ConcurrentHashMap<>();
+    private final Map<String, Batch> byOpenaiId = new ConcurrentHashMap<>();
+
+    // Called after the batch has been written
+    public void update(Batch batch) {
+        if (batch.getStatus().isTerminal()) {
+            remove(batch);
+            return;
+        }
+        byId.put(batch.getId(), batch);
+        if (batch.getOpenaiBatchId() != null) {
+            byOpenaiId.put(batch.getOpenaiBatchId(), batch);
+        }
+    }
+
+    public void remove(Batch batch) {
+        byId.remove(batch.getId());
+        if (batch.getOpenaiBatchId() != null) {
+            byOpenaiId.remove(batch.getOpenaiBatchId());
+        }
+    }
+
+    public Batch get(String batchId) {
+        return byId.get(batchId);
+    }
+
+    public Batch getByOpenaiId(String openaiBatchId) {
+        return byOpenaiId.get(openaiBatchId);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+}
@@ -0,0 +1,220 @@
+package com.openai.batchmanager.service;
+
+import com.openai.batchmanager.model.BatchResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Results of one or more batches, one line at a time. A line is only read from the file once the subscriber has asked
+// for it, so a slow subscriber holds back the download instead of results piling up in memory. Sources are read one
+// after another in the order they become ready, so results that were already known, e.g. from the cache, come first.
+// Single use: a second subscriber gets an IllegalStateException
+public class BatchResultPublisher implements Flow.Publisher<BatchResult> {
+
+    // Reads the results of one batch; null from next() once there are no more
+    public interface Source extends Closeable {
+        BatchResult next() throws Exception;
+    }
+
+    private final List<CompletableFuture<? extends Source>> sources;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public BatchResultPublisher(List<CompletableFuture<? extends Source>> sources, Executor executor) {
+        this.sources = List.copyOf(sources);
+        this.executor = executor;
+    }
+
+    // Results that are already known, e.g. served from the cache
+    public static Source of(List<BatchResult> results) {
+        Iterator<BatchResult> remaining = results.iterator();
+        return new Source() {
+            @Override
+            public BatchResult next() {
+                return remaining.hasNext() ? remaining.next() : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super BatchResult> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Results can only be streamed to one subscriber"));
+            return;
+        }
+        ResultSubscription subscription = new ResultSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    private class ResultSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super BatchResult> subscriber;
+        private final Queue<Source> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicInteger unfinished = new AtomicInteger(sources.size());
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private boolean done;
+        private Source current;
+
+        ResultSubscription(Flow.Subscriber<? super BatchResult> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            for (CompletableFuture<? extends Source> source : sources) {
+                source.whenComplete((opened, ex) -> {
+                    if (ex != null) {
+                        error = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    } else {
+                        ready.add(opened);
+                    }
+                    unfinished.decrementAndGet();
+                    schedule();
+                });
+            }
+            if (sources.isEmpty()) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Demand must be positive: " + n);
+            } else {
+                demand.getAndAccumulate(n, (total, added) -> total + added < 0 ? Long.MAX_VALUE : total + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException ex) {
+                    error = ex;
+                    run();
+                }
+            }
+        }
+
+        // Only ever runs on one thread at a time, so the source is never read or closed concurrently
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                drain();
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void drain() {
+            while (!done) {
+                if (cancelled) {
+                    terminate(null, false);
+                    return;
+                }
+                if (error != null) {
+                    terminate(error, true);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                BatchResult result;
+                try {
+                    if (current == null) {
+                        current = ready.poll();
+                        if (current == null) {
+                            if (unfinished.get() == 0 && ready.isEmpty()) {
+                                terminate(null, true);
+                            }
+                            // Otherwise the next source to become ready schedules another pass
+                            return;
+                        }
+                    }
+                    result = current.next();
+                    if (result == null) {
+                        closeCurrent();
+                        continue;
+                    }
+                } catch (Exception ex) {
+                    terminate(ex, true);
+                    return;
+                }
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                try {
+                    subscriber.onNext(result);
+                } catch (RuntimeException ex) {
+                    // A subscriber that throws has broken the contract, so it is treated as having cancelled
+                    terminate(null, false);
+                    return;
+                }
+            }
+        }
+
+        private void closeCurrent() throws IOException {
+            Source source = current;
+            current = null;
+            if (source != null) {
+                source.close();
+            }
+        }
+
+        private void terminate(Throwable failure, boolean signal) {
+            done = true;
+            try {
+                closeCurrent();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+            if (!signal) {
+                return;
+            }
+            if (failure != null) {
+                subscriber.onError(failure);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -1,29 +1,62 @@
 package com.openai.batchmanager.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openai.batchmanager.client.BatchResultReader;
 import com.openai.batchmanager.client.OpenAIClient;
 import com.openai.batchmanager.db.DatabaseManager;
 import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchOutcome;
 import com.openai.batchmanager.model.BatchRequest;
-import com.openai.batchmanager.util.JsonUtils;
+import com.openai.batchmanager.model.BatchResult;
+import com.openai.batchmanager.model.BatchStatus;
+import com.openai.batchmanager.util.RequestRoute;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public class BatchService {
 
+    private static final int INGEST_CHUNK_SIZE = 500;
+    private static final int LIST_PAGE_SIZE = 100;
+
     private final DatabaseManager db;
+    private final BatchRegistry registry = new BatchRegistry();
+    private final BatchEventPublisher events = new BatchEventPublisher();
     private final OpenAIClient client;
-    private final ObjectMapper mapper;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer coalescer;
+    // Database writes, result ingest and upload serialisation run here rather than on the HTTP client's callback
+    // threads, which are left for I/O
+    private final Executor executor;
 
     public BatchService(DatabaseManager db, OpenAIClient client) {
+        this(db, client, null);
+    }
+
+    // responseCache may be null to disable caching. The local work shares the HTTP dispatcher's pool; BatchManager
+    // passes its own executor instead
+    public BatchService(DatabaseManager db, OpenAIClient client, ResponseCache responseCache) {
+        this(db, client, responseCache, client.getHttpClient().dispatcher().executorService());
+    }
+
+    public BatchService(DatabaseManager db, OpenAIClient client, ResponseCache responseCache, Executor executor) {
         this.db = db;
         this.client = client;
-        this.mapper = JsonUtils.getMapper();
+        this.responseCache = responseCache;
+        this.coalescer = new RequestCoalescer(db);
+        this.executor = executor;
     }
 
     public void submitBatch(Batch batch, List<BatchRequest> requests)
@@ -31,22 +64,15 @@ public class BatchService {
 
         batch.setTotalRequests(requests.size());
         batch.setCompletedRequests(0);
-        db.insertBatch(batch);
-        for (BatchRequest r : requests) {
-            db.insertBatchRequest(batch.getId(), r);
-        }
-
-        Map<String, String> customIdToRequestJson = new HashMap<>();
-        for (BatchRequest r : requests) {
-            customIdToRequestJson.put(r.getCustomId(), r.getRequestData());
-        }
+        String endpoint = endpointOf(batch, requests);
+        batch.setEndpoint(endpoint);
+        insertBatch(batch);
+        db.insertBatchRequests(batch.getId(), requests);
 
-        String endpoint = determineEndpoint(requests.get(0).getRequestData());
-        
-        Batch submittedBatch = client.submitBatch(customIdToRequestJson, endpoint);
+        Batch submittedBatch = client.submitBatch(requestEntries(requests), endpoint, null);
 
         updateBatchFromSubmitted(batch, submittedBatch);
-        db.updateBatch(batch);
+        saveBatch(batch);
     }
 
     public void submitBatchWithMetadata(Batch batch, List<BatchRequest> requests, Map<String, String> metadata)
@@ -55,22 +81,15 @@ public class BatchService {
         batch.setTotalRequests(requests.size());
         batch.setCompletedRequests(0);
         batch.setMetadata(metadata);
-        db.insertBatch(batch);
-        for (BatchRequest r : requests) {
-            db.insertBatchRequest(batch.getId(), r);
-        }
-
-        Map<String, String> customIdToRequestJson = new HashMap<>();
-        for (BatchRequest r : requests) {
-            customIdToRequestJson.put(r.getCustomId(), r.getRequestData());
-        }
+        String endpoint = endpointOf(batch, requests);
+        batch.setEndpoint(endpoint);
+        insertBatch(batch);
+        db.insertBatchRequests(batch.getId(), requests);
 
-        String endpoint = determineEndpoint(requests.get(0).getRequestData());
-        
-        Batch submittedBatch = client.submitBatchWithMetadata(customIdToRequestJson, endpoint, metadata);
+        Batch submittedBatch = client.submitBatch(requestEntries(requests), endpoint, metadata);
 
         updateBatchFromSubmitted(batch, submittedBatch);
-        db.updateBatch(batch);
+        saveBatch(batch);
     }
 
     public boolean pollBatchStatus(Batch batch) throws IOException, SQLException {
@@ -81,7 +100,7 @@ public class BatchService {
         Batch updatedBatch = client.updateBatchStatus(batch);
         
         updateBatchFromPolled(batch, updatedBatch);
-        db.updateBatch(batch);
+        saveBatch(batch);
         
         return batch.getStatus().isTerminal();
     }
@@ -89,68 +108,573 @@ public class BatchService {
     public Map<String, String> fetchResults(Batch batch, List<BatchRequest> requests)
             throws IOException, SQLException {
 
-        Map<String, String> openaiResults = client.downloadBatchResults(batch);
-        Map<String, String> mapped = new HashMap<>();
-
-        int completed = 0;
-        for (BatchRequest req : requests) {
-            String responseJson = openaiResults.get(req.getCustomId());
-            if (responseJson != null) {
-                req.setResponseData(responseJson);
-                req.setStatus(BatchRequest.RequestStatus.COMPLETED);
-                db.updateBatchRequest(batch.getId(), req);
-                mapped.put(req.getCustomId(), responseJson);
-                completed++;
-            }
+        return fetchOutcome(batch, requests).getResponses();
+    }
+
+    public BatchOutcome fetchOutcome(Batch batch, List<BatchRequest> requests)
+            throws IOException, SQLException {
+
+        ResultIngest ingest = new ResultIngest(batch, requests);
+        if (batch.getOutputFileId() != null) {
+            ingest.consume(client.streamFile(batch.getOutputFileId()));
         }
-        batch.setCompletedRequests(completed);
-        db.updateBatch(batch);
-        return mapped;
+        if (batch.getErrorFileId() != null) {
+            ingest.consume(client.streamFile(batch.getErrorFileId()));
+        }
+        return ingest.finish();
     }
 
     public void cancelBatch(Batch batch) throws IOException, SQLException {
         Batch cancelledBatch = client.cancelBatch(batch.getOpenaiBatchId());
         updateBatchFromPolled(batch, cancelledBatch);
-        db.updateBatch(batch);
+        saveBatch(batch);
     }
 
     public String listBatches(Integer limit, String after) throws IOException {
         return client.listBatches(limit, after);
     }
 
+    public CompletableFuture<Void> submitBatchAsync(Batch batch, List<BatchRequest> requests, Map<String, String> metadata) {
+        try {
+            prepareBatch(batch, requests, metadata);
+            insertBatch(batch);
+            db.insertBatchRequests(batch.getId(), requests);
+        } catch (SQLException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return uploadAsync(batch, requests);
+    }
+
+    // Stores the batch and its requests without uploading them, so they need not stay in memory while they wait
+    public void enqueueBatch(Batch batch, List<BatchRequest> requests, Map<String, String> metadata, long bytes)
+            throws SQLException {
+        prepareBatch(batch, requests, metadata);
+        db.enqueueBatch(batch, requests, bytes);
+        afterWrite(batch);
+    }
+
+    // Uploads a batch stored by enqueueBatch; it stays queued, to be retried on resume, unless the upload succeeds
+    public CompletableFuture<Void> submitQueuedBatchAsync(Batch batch) {
+        List<BatchRequest> requests;
+        try {
+            requests = db.getBatchRequests(batch.getId());
+        } catch (SQLException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (requests.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Queued batch has no requests: " + batch.getId()));
+        }
+        return uploadAsync(batch, requests).thenRun(() -> {
+            try {
+                db.dequeueBatch(batch.getId());
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private void prepareBatch(Batch batch, List<BatchRequest> requests, Map<String, String> metadata) {
+        batch.setTotalRequests(requests.size());
+        batch.setCompletedRequests(0);
+        if (metadata != null && !metadata.isEmpty()) {
+            batch.setMetadata(metadata);
+        }
+        batch.setEndpoint(endpointOf(batch, requests));
+    }
+
+    private CompletableFuture<Void> uploadAsync(Batch batch, List<BatchRequest> requests) {
+        String endpoint;
+        try {
+            endpoint = endpointOf(batch, requests);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return client.submitBatchAsync(requestEntries(requests), endpoint, batch.getMetadata(), executor)
+                .thenAcceptAsync(submittedBatch -> {
+                    updateBatchFromSubmitted(batch, submittedBatch);
+                    updateBatchUnchecked(batch);
+                }, executor);
+    }
+
+    public CompletableFuture<Boolean> pollBatchStatusAsync(Batch batch) {
+        if (batch.getStatus().isTerminal()) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return client.updateBatchStatusAsync(batch).thenApplyAsync(updatedBatch -> {
+            updateBatchFromPolled(batch, updatedBatch);
+            updateBatchUnchecked(batch);
+            return batch.getStatus().isTerminal();
+        }, executor);
+    }
+
+    // Refreshes many batches from a few list pages instead of one GET each; returns the local IDs that were found
+    public CompletableFuture<Set<String>> refreshBatchesAsync(Collection<Batch> batches, int maxPages) {
+        Map<String, Batch> remaining = new HashMap<>();
+        for (Batch batch : batches) {
+            if (batch.getOpenaiBatchId() != null && !batch.getStatus().isTerminal()) {
+                remaining.put(batch.getOpenaiBatchId(), batch);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return CompletableFuture.completedFuture(Set.of());
+        }
+
+        List<Batch> refreshed = new ArrayList<>();
+        return refreshPage(remaining, null, maxPages, refreshed).thenApplyAsync(v -> {
+            try {
+                db.updateBatches(refreshed);
+                refreshed.forEach(this::afterWrite);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+            Set<String> ids = new HashSet<>();
+            refreshed.forEach(batch -> ids.add(batch.getId()));
+            return ids;
+        }, executor);
+    }
+
+    private CompletableFuture<Void> refreshPage(Map<String, Batch> remaining, String after, int pagesLeft, List<Batch> refreshed) {
+        return client.listBatchesPageAsync(LIST_PAGE_SIZE, after).thenCompose(page -> {
+            for (Batch remote : page.getBatches()) {
+                Batch local = remaining.remove(remote.getOpenaiBatchId());
+                if (local != null) {
+                    updateBatchFromPolled(local, remote);
+                    refreshed.add(local);
+                }
+            }
+            // Newest first, so batches not found within the page budget are left for individual polls
+            if (remaining.isEmpty() || !page.hasMore() || pagesLeft <= 1 || page.getLastId() == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return refreshPage(remaining, page.getLastId(), pagesLeft - 1, refreshed);
+        });
+    }
+
+    public CompletableFuture<Map<String, String>> fetchResultsAsync(Batch batch, List<BatchRequest> requests) {
+        return fetchOutcomeAsync(batch, requests).thenApply(BatchOutcome::getResponses);
+    }
+
+    public CompletableFuture<BatchOutcome> fetchOutcomeAsync(Batch batch, List<BatchRequest> requests) {
+        ResultIngest ingest = new ResultIngest(batch, requests);
+        return consumeAsync(ingest, batch.getOutputFileId())
+                .thenCompose(v -> consumeAsync(ingest, batch.getErrorFileId()))
+                .thenApply(v -> {
+                    try {
+                        return ingest.finish();
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    // Results of the batches in the order they finish, each line written back as it is read instead of collected into
+    // an outcome. Reading happens on the executor and only as fast as the subscriber asks
+    public BatchResultPublisher streamResults(List<CompletableFuture<Batch>> batches, Executor executor) {
+        return streamResults(batches, List.of(), executor);
+    }
+
+    // known are results that need no download, e.g. cache hits; they go out as soon as each list is complete
+    public BatchResultPublisher streamResults(List<CompletableFuture<Batch>> batches,
+                                              List<CompletableFuture<List<BatchResult>>> known,
+                                              Executor executor) {
+        List<CompletableFuture<? extends BatchResultPublisher.Source>> sources = new ArrayList<>();
+        for (CompletableFuture<List<BatchResult>> results : known) {
+            sources.add(results.thenApply(BatchResultPublisher::of));
+        }
+        for (CompletableFuture<Batch> batch : batches) {
+            sources.add(batch.thenApply(ResultStream::new));
+        }
+        return new BatchResultPublisher(sources, executor);
+    }
+
+    public CompletableFuture<Void> cancelBatchAsync(Batch batch) {
+        return client.cancelBatchAsync(batch.getOpenaiBatchId()).thenAcceptAsync(cancelledBatch -> {
+            updateBatchFromPolled(batch, cancelledBatch);
+            updateBatchUnchecked(batch);
+        }, executor);
+    }
+
+    public CompletableFuture<String> listBatchesAsync(Integer limit, String after) {
+        return client.listBatchesAsync(limit, after);
+    }
+
+    public BatchRegistry getRegistry() {
+        return registry;
+    }
+
+    public BatchEventPublisher getEvents() {
+        return events;
+    }
+
+    // Answers whoever still waits on the batch's rows, once its remainder has been salvaged or given up on
+    public void resolveWaiting(Batch batch) {
+        coalescer.resolve(batch);
+    }
+
+    public RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    // Null unless enabled
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    // Live batches come from the registry without touching the database, as copies the poller does not change
+    public Batch getBatch(String batchId) throws SQLException {
+        Batch batch = registry.get(batchId);
+        return batch != null ? batch.copy() : db.getBatch(batchId);
+    }
+
+    public Batch getBatchByOpenaiId(String openaiBatchId) throws SQLException {
+        Batch batch = registry.getByOpenaiId(openaiBatchId);
+        return batch != null ? batch.copy() : db.getBatchByOpenaiId(openaiBatchId);
+    }
+
+    // Nothing in this process follows the batch any more, e.g. its upload failed or it was abandoned; it stays in
+    // the database
+    public void forget(Batch batch) {
+        registry.remove(batch);
+        events.forget(batch);
+    }
+
     public List<Batch> getIncompleteBatches() throws SQLException {
         return db.getIncompleteBatches();
     }
 
+    public List<Batch> getBatchesBySubmission(String submissionId) throws SQLException {
+        return db.getBatchesBySubmission(submissionId);
+    }
+
+    public List<Batch> getRecentlyCompletedBatches(int limit) throws SQLException {
+        return db.getRecentlyCompletedBatches(limit);
+    }
+
+    public List<Batch> getBatchesByParent(String parentBatchId) throws SQLException {
+        return db.getBatchesByParent(parentBatchId);
+    }
+
+    public List<Batch> getQueuedBatches() throws SQLException {
+        return db.getQueuedBatches();
+    }
+
+    public long getQueuedBytes(String batchId) throws SQLException {
+        return db.getQueuedBytes(batchId);
+    }
+
     public List<BatchRequest> getBatchRequests(String batchId) throws SQLException {
         return db.getBatchRequests(batchId);
     }
 
-    private String determineEndpoint(String requestJson) {
+    public void bufferRequest(BatchRequest request) throws SQLException {
+        db.bufferRequest(request);
+    }
+
+    public void removeBufferedRequests(Collection<Long> seqs) throws SQLException {
+        db.removeBufferedRequests(seqs);
+    }
+
+    public List<BatchRequest> recoverBufferedRequests() throws SQLException {
+        return db.recoverBufferedRequests();
+    }
+
+    // Requests of a running batch answered without it, e.g. by synchronous copies; its ingest keeps them
+    public void keepAnswers(Batch batch, List<BatchRequest> answered) throws SQLException {
+        db.updateBatchRequests(batch.getId(), answered);
+    }
+
+    // Every request of the batch was answered without it before it is cancelled. The answers go to its rows, and to
+    // whoever waits on them, now rather than after the cancelled batch is ingested
+    public void storeAnswers(Batch batch, List<BatchRequest> answered) throws SQLException {
+        keepAnswers(batch, answered);
+        resultsStored(batch);
+    }
+
+    private CompletableFuture<Void> consumeAsync(ResultIngest ingest, String fileId) {
+        if (fileId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // The body is read, and its rows written, on the executor rather than the thread that received the response
+        return client.streamFileAsync(fileId).thenAcceptAsync(reader -> {
+            try {
+                ingest.consume(reader);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // Every batch write goes through these, so the registry and the event stream follow the database
+    private void insertBatch(Batch batch) throws SQLException {
+        db.insertBatch(batch);
+        afterWrite(batch);
+    }
+
+    private void saveBatch(Batch batch) throws SQLException {
+        db.updateBatch(batch);
+        afterWrite(batch);
+    }
+
+    private void afterWrite(Batch batch) {
+        registry.update(batch);
+        events.batchSaved(batch);
+    }
+
+    // Called once all of a batch's results are in the database. Requests waiting on an expired or cancelled batch
+    // are left for the manager, since what it never ran may still be salvaged (see resolveWaiting)
+    private void resultsStored(Batch batch) {
+        if (batch.getStatus() != BatchStatus.EXPIRED && batch.getStatus() != BatchStatus.CANCELLED) {
+            coalescer.resolve(batch);
+        }
+        if (responseCache == null) {
+            return;
+        }
         try {
-            JsonNode json = mapper.readTree(requestJson);
-            
-            // Check for required model field
-            if (!json.has("model")) {
-                throw new IllegalArgumentException("Request JSON must contain a 'model' field");
-            }
-            
-            // Determine endpoint based on request structure
-            if (json.has("messages")) {
-                return "/v1/chat/completions";
-            } else if (json.has("input")) {
-                return "/v1/embeddings";
-            } else if (json.has("prompt")) {
-                return "/v1/completions";
-            } else if (json.has("instruction") || json.has("file")) {
-                return "/v1/fine_tuning/jobs";
-            } else {
-                // Default fallback - most common endpoint
-                return "/v1/chat/completions";
-            }
-        } catch (IOException e) {
-            throw new IllegalArgumentException("Invalid JSON in request data: " + e.getMessage(), e);
+            responseCache.store(batch);
+        } catch (SQLException ignored) {
+            // The results are already stored with the batch; this only costs later requests a cache hit
+        }
+    }
+
+    private void updateBatchUnchecked(Batch batch) {
+        try {
+            saveBatch(batch);
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // Matches output and error file lines to their requests and writes them back in bounded transactions
+    private class ResultIngest {
+        private final Batch batch;
+        private final Map<String, BatchRequest> pending = new HashMap<>();
+        private final Map<String, String> responses = new HashMap<>();
+        private final Map<String, BatchRequest> failures = new HashMap<>();
+        private final List<BatchRequest> chunk = new ArrayList<>(INGEST_CHUNK_SIZE);
+
+        ResultIngest(Batch batch, List<BatchRequest> requests) {
+            this.batch = batch;
+            for (BatchRequest req : requests) {
+                // Already answered, e.g. by a synchronous copy, so whatever the files say about it is not written over it
+                if (req.getStatus() == BatchRequest.RequestStatus.COMPLETED) {
+                    responses.put(req.getCustomId(), req.getResponseData());
+                } else {
+                    pending.put(req.getCustomId(), req);
+                }
+            }
+        }
+
+        // Rows are written while the file is still downloading
+        void consume(BatchResultReader resultReader) throws IOException, SQLException {
+            try (BatchResultReader reader = resultReader) {
+                BatchResult result;
+                while ((result = reader.next()) != null) {
+                    BatchRequest req = pending.remove(result.getCustomId());
+                    if (req == null) {
+                        continue;
+                    }
+                    if (result.isSuccess()) {
+                        req.setResponseData(result.getResponseJson());
+                        req.setStatus(BatchRequest.RequestStatus.COMPLETED);
+                        responses.put(req.getCustomId(), result.getResponseJson());
+                    } else {
+                        fail(req, result.getErrorCode(), result.getErrorMessage());
+                    }
+                    add(req);
+                }
+            }
+        }
+
+        BatchOutcome finish() throws SQLException {
+            // Anything with no line in either file never ran, e.g. because the whole batch failed validation
+            String missingCode = batch.getStatus() == BatchStatus.COMPLETED
+                    ? "missing_result" : "batch_" + batch.getStatus().name().toLowerCase();
+            for (BatchRequest req : pending.values()) {
+                fail(req, missingCode,
+                        "No result for this request in batch " + batch.getOpenaiBatchId() + " (" + batch.getStatus() + ")");
+                add(req);
+            }
+            pending.clear();
+            flush();
+
+            batch.setCompletedRequests(responses.size());
+            saveBatch(batch);
+            resultsStored(batch);
+            return new BatchOutcome(batch.getSubmissionId(), responses, failures);
+        }
+
+        private void fail(BatchRequest req, String errorCode, String errorMessage) {
+            req.setResponseData(null);
+            req.setStatus(BatchRequest.RequestStatus.FAILED);
+            req.setErrorCode(errorCode);
+            req.setErrorMessage(errorMessage);
+            failures.put(req.getCustomId(), req);
+        }
+
+        private void add(BatchRequest req) throws SQLException {
+            chunk.add(req);
+            if (chunk.size() >= INGEST_CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            db.updateBatchRequests(batch.getId(), chunk);
+            chunk.clear();
+            events.resultsIngested(batch, responses.size() + failures.size());
+        }
+    }
+
+    // ResultIngest without the outcome: only the IDs still waiting for a line are kept, each line goes to the
+    // subscriber and then to the database in the same bounded chunks
+    private class ResultStream implements BatchResultPublisher.Source {
+        private final Batch batch;
+        private final Deque<String> files = new ArrayDeque<>(2);
+        private final List<BatchResult> chunk = new ArrayList<>(INGEST_CHUNK_SIZE);
+        private Set<String> pending;
+        private Iterator<String> missing;
+        private BatchResultReader reader;
+        private String file;
+        private long openedAt;
+        private int completed;
+        private long ingested;
+        private boolean finished;
+
+        ResultStream(Batch batch) {
+            this.batch = batch;
+            if (batch.getOutputFileId() != null) {
+                files.add(batch.getOutputFileId());
+            }
+            if (batch.getErrorFileId() != null) {
+                files.add(batch.getErrorFileId());
+            }
+        }
+
+        @Override
+        public BatchResult next() throws IOException, SQLException {
+            if (pending == null) {
+                pending = db.getCustomIds(batch.getId());
+            }
+            while (reader != null || !files.isEmpty()) {
+                if (reader == null) {
+                    file = files.poll();
+                    openedAt = 0;
+                    reader = client.streamFile(file);
+                }
+                BatchResult result;
+                try {
+                    result = reader.next();
+                } catch (IOException ex) {
+                    // The response stays open while the subscriber takes its time, so a slow one can outlast the read
+                    // or call timeout. The file is asked for again from the last whole line, unless nothing was read
+                    // since it was last opened
+                    long offset = reader.getOffset();
+                    reader.close();
+                    reader = null;
+                    if (offset == openedAt) {
+                        throw ex;
+                    }
+                    openedAt = offset;
+                    reader = client.streamFile(file, offset);
+                    continue;
+                }
+                if (result == null) {
+                    reader.close();
+                    reader = null;
+                } else if (pending.remove(result.getCustomId())) {
+                    return add(result);
+                }
+            }
+
+            // Anything with no line in either file never ran, e.g. because the whole batch failed validation
+            if (missing == null) {
+                missing = pending.iterator();
+            }
+            if (missing.hasNext()) {
+                BatchResult result = new BatchResult();
+                result.setCustomId(missing.next());
+                missing.remove();
+                result.setErrorCode(batch.getStatus() == BatchStatus.COMPLETED
+                        ? "missing_result" : "batch_" + batch.getStatus().name().toLowerCase());
+                result.setErrorMessage("No result for this request in batch " + batch.getOpenaiBatchId()
+                        + " (" + batch.getStatus() + ")");
+                return add(result);
+            }
+
+            if (!finished) {
+                finished = true;
+                flush();
+                batch.setCompletedRequests(completed);
+                saveBatch(batch);
+                resultsStored(batch);
+            }
+            return null;
+        }
+
+        // Also called when the subscriber cancels, so whatever it has already been handed is kept
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+            try {
+                flush();
+            } catch (SQLException ex) {
+                throw new IOException("Could not store the results streamed from batch " + batch.getId(), ex);
+            }
+        }
+
+        private BatchResult add(BatchResult result) throws SQLException {
+            if (result.isSuccess()) {
+                completed++;
+            }
+            chunk.add(result);
+            if (chunk.size() >= INGEST_CHUNK_SIZE) {
+                flush();
+            }
+            return result;
+        }
+
+        private void flush() throws SQLException {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            db.updateBatchResults(batch.getId(), chunk);
+            ingested += chunk.size();
+            chunk.clear();
+            events.resultsIngested(batch, ingested);
+        }
+    }
+
+    private static Iterable<Map.Entry<String, String>> requestEntries(List<BatchRequest> requests) {
+        // Lazy view over the requests so the upload can stream them without building a second copy
+        return () -> requests.stream()
+                .map(r -> Map.entry(r.getCustomId(), r.getRequestData()))
+                .iterator();
+    }
+
+    // The endpoint chosen when the batch was planned, or else the one every request in it shares; a batch can only
+    // go to one endpoint, so mixed requests are rejected rather than sent wherever the first one points
+    private String endpointOf(Batch batch, List<BatchRequest> requests) {
+        if (batch.getEndpoint() != null) {
+            return batch.getEndpoint();
+        }
+        String endpoint = null;
+        for (BatchRequest request : requests) {
+            String requestEndpoint = RequestRoute.scan(request.getRequestData()).getEndpoint();
+            if (endpoint == null) {
+                endpoint = requestEndpoint;
+            } else if (!endpoint.equals(requestEndpoint)) {
+                throw new IllegalArgumentException("Batch mixes " + endpoint + " and " + requestEndpoint +
+                        " requests; submit them through BatchManager to have them partitioned");
+            }
         }
+        return endpoint;
     }
 
     private void updateBatchFromSubmitted(Batch localBatch, Batch submittedBatch) {
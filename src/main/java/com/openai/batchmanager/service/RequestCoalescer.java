@@ -0,0 +1,157 @@
+package com.openai.batchmanager.service;
+
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchRequest;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+// Tracks which in-flight batch carries each request hash (see RequestHash), so an identical request from another
+// submission can wait on that batch's row instead of being uploaded again. Only batches started by this process are
+// known; entries go once the batch's results are ingested or the batch is abandoned
+public class RequestCoalescer {
+
+    private final DatabaseManager db;
+    private final Map<String, Leader> byHash = new HashMap<>();
+    private final Map<String, List<Leader>> byBatch = new HashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    private static final class Leader {
+        final String hash;
+        final List<CompletableFuture<BatchRequest>> followers = new ArrayList<>();
+
+        Leader(String hash) {
+            this.hash = hash;
+        }
+    }
+
+    RequestCoalescer(DatabaseManager db) {
+        this.db = db;
+    }
+
+    // Marks the batch as the one carrying these requests; hashes another batch already carries are left with it
+    public synchronized void lead(String batchId, List<BatchRequest> requests) {
+        for (BatchRequest request : requests) {
+            String hash = request.getRequestHash();
+            if (hash != null && !byHash.containsKey(hash)) {
+                Leader leader = new Leader(hash);
+                byHash.put(hash, leader);
+                byBatch.computeIfAbsent(batchId, id -> new ArrayList<>()).add(leader);
+            }
+        }
+    }
+
+    // Completes with the carrying batch's row once its results are in, or null if no batch carries the hash
+    public synchronized CompletableFuture<BatchRequest> follow(String requestHash) {
+        Leader leader = requestHash == null ? null : byHash.get(requestHash);
+        if (leader == null) {
+            return null;
+        }
+        CompletableFuture<BatchRequest> row = new CompletableFuture<>();
+        leader.followers.add(row);
+        coalesced.increment();
+        return row;
+    }
+
+    // Called once a batch's results are in the database; followers get the rows, read back in one pass
+    void resolve(Batch batch) {
+        List<Leader> leaders = release(batch.getId());
+        if (leaders.isEmpty()) {
+            return;
+        }
+        Set<String> hashes = new HashSet<>();
+        for (Leader leader : leaders) {
+            hashes.add(leader.hash);
+        }
+        Map<String, BatchRequest> rows;
+        try {
+            rows = db.getBatchRequestsByHash(batch.getId(), hashes);
+        } catch (SQLException ex) {
+            fail(leaders, ex);
+            return;
+        }
+        for (Leader leader : leaders) {
+            BatchRequest row = rows.get(leader.hash);
+            for (CompletableFuture<BatchRequest> follower : leader.followers) {
+                if (row != null) {
+                    follower.complete(row);
+                } else {
+                    follower.completeExceptionally(new IllegalStateException(
+                            "Batch " + batch.getId() + " has no row for request hash " + leader.hash));
+                }
+            }
+        }
+    }
+
+    // Hands the hashes over to a follow-up batch that resubmits them, e.g. a salvage of an expired batch, so whoever
+    // waits on them gets the follow-up's rows rather than the original's failures
+    public synchronized void transfer(String fromBatchId, String toBatchId, Set<String> hashes) {
+        List<Leader> leaders = byBatch.get(fromBatchId);
+        if (leaders == null) {
+            return;
+        }
+        List<Leader> moved = new ArrayList<>();
+        leaders.removeIf(leader -> hashes.contains(leader.hash) && moved.add(leader));
+        if (leaders.isEmpty()) {
+            byBatch.remove(fromBatchId);
+        }
+        if (!moved.isEmpty()) {
+            byBatch.computeIfAbsent(toBatchId, id -> new ArrayList<>()).addAll(moved);
+        }
+    }
+
+    // The batch will not produce results here, e.g. its upload or fetch failed; its followers fail the same way
+    public void abandon(String batchId, Throwable cause) {
+        fail(release(batchId), cause);
+    }
+
+    public void cancelAll() {
+        List<Leader> leaders;
+        synchronized (this) {
+            leaders = new ArrayList<>(byHash.values());
+            byHash.clear();
+            byBatch.clear();
+        }
+        fail(leaders, new CancellationException("Batch manager closed"));
+    }
+
+    // Requests that waited on another submission's batch instead of being sent
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public synchronized int getInFlightCount() {
+        return byHash.size();
+    }
+
+    // Followers attached after this point would never be completed, so the entries go before any are
+    private synchronized List<Leader> release(String batchId) {
+        List<Leader> leaders = byBatch.remove(batchId);
+        if (leaders == null) {
+            return List.of();
+        }
+        List<Leader> followed = new ArrayList<>();
+        for (Leader leader : leaders) {
+            byHash.remove(leader.hash);
+            if (!leader.followers.isEmpty()) {
+                followed.add(leader);
+            }
+        }
+        return followed;
+    }
+
+    private static void fail(List<Leader> leaders, Throwable cause) {
+        for (Leader leader : leaders) {
+            leader.followers.forEach(follower -> follower.completeExceptionally(cause));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.openai.batchmanager.service;
+
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchRequest;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Successful responses kept in SQLite by request hash (see RequestHash), so an identical request is answered
+// without being sent again. Entries expire after ttl; past maxBytes the least recently used ones go first
+public class ResponseCache {
+
+    private final DatabaseManager db;
+    private final Duration ttl;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder lookupErrors = new LongAdder();
+
+    public ResponseCache(DatabaseManager db, Duration ttl, long maxBytes) {
+        this.db = db;
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+    }
+
+    // Custom ID to cached response for each request that has a fresh entry; requests without a hash count as misses.
+    // A cache that cannot be read only means sending everything, so a failed read counts every request as a miss
+    public Map<String, String> lookup(List<BatchRequest> requests) {
+        Set<String> hashes = new HashSet<>();
+        for (BatchRequest request : requests) {
+            if (request.getRequestHash() != null) {
+                hashes.add(request.getRequestHash());
+            }
+        }
+        long now = System.currentTimeMillis();
+        Map<String, String> byHash;
+        try {
+            byHash = hashes.isEmpty() ? Map.of() : db.getCachedResponses(hashes, now - ttl.toMillis(), now);
+        } catch (SQLException ex) {
+            lookupErrors.increment();
+            byHash = Map.of();
+        }
+
+        Map<String, String> found = new HashMap<>();
+        for (BatchRequest request : requests) {
+            String response = request.getRequestHash() == null ? null : byHash.get(request.getRequestHash());
+            if (response != null) {
+                found.put(request.getCustomId(), response);
+            }
+        }
+        hits.add(found.size());
+        misses.add(requests.size() - found.size());
+        return found;
+    }
+
+    // Called once a batch's results are in the database
+    public void store(Batch batch) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (db.cacheResponses(batch.getId(), now) > 0) {
+            evictions.add(db.evictCachedResponses(now - ttl.toMillis(), maxBytes));
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Share of looked-up requests answered from the cache; 0 before any lookup
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Lookups that could not read the cache and were counted as misses
+    public long getLookupErrors() {
+        return lookupErrors.sum();
+    }
+
+    public long getSizeBytes() throws SQLException {
+        return db.getCachedResponseBytes();
+    }
+}
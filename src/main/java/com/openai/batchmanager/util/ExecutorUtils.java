@@ -0,0 +1,68 @@
+package com.openai.batchmanager.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public final class ExecutorUtils {
+
+    // Looked up at runtime so the library still builds and runs on Java 17, and picks virtual threads up on 21+
+    private static final MethodHandle VIRTUAL_PER_TASK = findVirtualPerTask();
+
+    private ExecutorUtils() {
+    }
+
+    public static boolean virtualThreadsAvailable() {
+        return VIRTUAL_PER_TASK != null;
+    }
+
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (VIRTUAL_PER_TASK == null) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later, running on " +
+                    Runtime.version().feature());
+        }
+        try {
+            return (ExecutorService) VIRTUAL_PER_TASK.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+
+    // One virtual thread per task where the runtime has them, otherwise a bounded pool
+    public static ExecutorService newDefaultExecutor() {
+        return virtualThreadsAvailable() ? newVirtualThreadPerTaskExecutor() : newBoundedExecutor(defaultPoolSize());
+    }
+
+    // At most threads platform threads, idle ones ending after a minute. The manager's local work is short database
+    // writes and parsing, mostly one at a time behind the database lock, so a burst of batches queues here instead of
+    // starting a thread each the way a cached pool does
+    public static ExecutorService newBoundedExecutor(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static int defaultPoolSize() {
+        return Math.max(4, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static MethodHandle findVirtualPerTask() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -1,21 +1,31 @@
 package com.openai.batchmanager.util;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.openai.batchmanager.model.BatchRequestInput;
 import com.openai.batchmanager.model.BatchRequestOutput;
+import com.openai.batchmanager.model.BatchResult;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
 public class JsonUtils {
     
     private static final ObjectMapper mapper = createSecureObjectMapper();
+    private static final ObjectWriter lineWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     
     private static ObjectMapper createSecureObjectMapper() {
         return JsonMapper.builder()
@@ -102,6 +112,41 @@ public class JsonUtils {
         return jsonl.toString();
     }
     
+    public static void writeBatchInputJsonl(Iterable<? extends java.util.Map.Entry<String, String>> entries,
+                                            String endpoint,
+                                            OutputStream out) throws IOException {
+        if (entries == null || !entries.iterator().hasNext()) {
+            throw new IllegalArgumentException("CustomId to request JSON entries cannot be null or empty");
+        }
+        if (endpoint == null || endpoint.trim().isEmpty()) {
+            throw new IllegalArgumentException("Endpoint cannot be null or empty");
+        }
+        
+        // Each line goes through the generator's fixed-size buffer straight into the target stream,
+        // so nothing larger than a single request is ever held in memory
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            
+            for (java.util.Map.Entry<String, String> entry : entries) {
+                String customId = entry.getKey();
+                String requestJson = entry.getValue();
+                
+                if (customId == null || customId.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Custom ID cannot be null or empty");
+                }
+                if (requestJson == null || requestJson.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Request JSON for custom ID '" + customId + "' cannot be null or empty");
+                }
+                
+                JsonNode requestBody = mapper.readTree(requestJson);
+                BatchRequestInput input = new BatchRequestInput(customId, "POST", endpoint, requestBody);
+                lineWriter.writeValue(generator, input);
+            }
+            generator.flush();
+        }
+    }
+    
     public static List<BatchRequestOutput> parseBatchOutputJsonl(String jsonlContent) throws IOException {
         List<BatchRequestOutput> outputs = new ArrayList<>();
         
@@ -122,6 +167,86 @@ public class JsonUtils {
         return outputs;
     }
     
+    public static BatchResult parseBatchResultLine(String line) throws IOException {
+        // Pulls only the fields we store; the response body is copied token by token without building a tree
+        try (JsonParser parser = mapper.getFactory().createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Batch output line is not a JSON object: " + line);
+            }
+            
+            BatchResult result = new BatchResult();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "custom_id" -> result.setCustomId(parser.getValueAsString());
+                    case "response" -> readResultResponse(parser, result);
+                    case "error" -> readResultError(parser, result);
+                    default -> parser.skipChildren();
+                }
+            }
+            if (result.getStatusCode() >= 300 && result.getErrorCode() == null && result.getErrorMessage() == null) {
+                readResponseBodyError(result);
+            }
+            return result;
+        }
+    }
+    
+    private static void readResponseBodyError(BatchResult result) throws IOException {
+        // Failed requests report the API error inside the response body rather than the line's own error field
+        JsonNode error = result.getResponseJson() == null ? null : mapper.readTree(result.getResponseJson()).get("error");
+        if (error != null && error.isObject()) {
+            result.setErrorCode(getStringValue(error, "code"));
+            result.setErrorMessage(getStringValue(error, "message"));
+        }
+        if (result.getErrorCode() == null && result.getErrorMessage() == null) {
+            result.setErrorMessage("Request failed with status " + result.getStatusCode());
+        }
+    }
+    
+    private static void readResultResponse(JsonParser parser, BatchResult result) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "status_code" -> result.setStatusCode(parser.getValueAsInt());
+                case "body" -> {
+                    if (parser.currentToken() != JsonToken.VALUE_NULL) {
+                        StringWriter body = new StringWriter();
+                        try (JsonGenerator generator = mapper.getFactory().createGenerator(body)) {
+                            generator.copyCurrentStructure(parser);
+                        }
+                        result.setResponseJson(body.toString());
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+    }
+    
+    private static void readResultError(JsonParser parser, BatchResult result) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "code" -> result.setErrorCode(parser.getValueAsString());
+                case "message" -> result.setErrorMessage(parser.getValueAsString());
+                default -> parser.skipChildren();
+            }
+        }
+        if (result.getErrorCode() == null && result.getErrorMessage() == null) {
+            result.setErrorMessage("Unknown error");
+        }
+    }
+    
     public static java.util.Map<String, String> outputsToResponseMap(List<BatchRequestOutput> outputs) throws JsonProcessingException {
         java.util.Map<String, String> responseMap = new java.util.HashMap<>();
         
@@ -0,0 +1,41 @@
+package com.openai.batchmanager.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Identifies a request by what it asks for rather than how it is written: the same endpoint and body give the same
+// hash regardless of key order or whitespace
+public final class RequestHash {
+
+    private static final ObjectMapper CANONICAL = JsonMapper.builder()
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private RequestHash() {
+    }
+
+    // SHA-256 over the endpoint and the body re-serialized with its object keys sorted, as lowercase hex
+    public static String of(String endpoint, String requestJson) {
+        byte[] canonical;
+        try {
+            canonical = CANONICAL.writeValueAsBytes(CANONICAL.readValue(requestJson, Object.class));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON in request data: " + e.getMessage(), e);
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(endpoint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            return HexFormat.of().formatHex(digest.digest(canonical));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
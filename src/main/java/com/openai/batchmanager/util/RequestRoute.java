@@ -0,0 +1,122 @@
+package com.openai.batchmanager.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+// The endpoint and model a request body belongs to. Every line of a batch must share both, so submissions are
+// partitioned by route before they are sharded
+public final class RequestRoute {
+
+    public static final String CHAT_COMPLETIONS = "/v1/chat/completions";
+    public static final String RESPONSES = "/v1/responses";
+    public static final String EMBEDDINGS = "/v1/embeddings";
+    public static final String COMPLETIONS = "/v1/completions";
+    public static final String MODERATIONS = "/v1/moderations";
+    public static final String FINE_TUNING_JOBS = "/v1/fine_tuning/jobs";
+
+    // Fields only the embeddings endpoint takes alongside input
+    private static final Set<String> EMBEDDING_FIELDS = Set.of("encoding_format", "dimensions");
+
+    private static final JsonFactory FACTORY = JsonUtils.getMapper().getFactory();
+
+    private final String endpoint;
+    private final String model;
+
+    public RequestRoute(String endpoint, String model) {
+        this.endpoint = endpoint;
+        this.model = model;
+    }
+
+    // Reads only the top-level field names and the model with the streaming parser; nested values such as long
+    // message lists or embedding inputs are skipped over rather than built into a tree
+    public static RequestRoute scan(String requestJson) {
+        String model = null;
+        boolean messages = false;
+        boolean input = false;
+        boolean prompt = false;
+        boolean fineTuning = false;
+        boolean embeddingField = false;
+        try (JsonParser parser = FACTORY.createParser(requestJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Request data must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "model" -> model = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "messages" -> messages = true;
+                    case "input" -> input = true;
+                    case "prompt" -> prompt = true;
+                    case "instruction", "file" -> fineTuning = true;
+                    default -> embeddingField |= EMBEDDING_FIELDS.contains(field);
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON in request data: " + e.getMessage(), e);
+        }
+
+        if (model == null) {
+            throw new IllegalArgumentException("Request JSON must contain a 'model' field");
+        }
+        String endpoint;
+        if (messages) {
+            endpoint = CHAT_COMPLETIONS;
+        } else if (input) {
+            // Embeddings, moderations and the Responses API all take input; the model tells them apart
+            String lower = model.toLowerCase(Locale.ROOT);
+            if (lower.contains("embedding") || embeddingField) {
+                endpoint = EMBEDDINGS;
+            } else if (lower.contains("moderation")) {
+                endpoint = MODERATIONS;
+            } else {
+                endpoint = RESPONSES;
+            }
+        } else if (prompt) {
+            endpoint = COMPLETIONS;
+        } else if (fineTuning) {
+            endpoint = FINE_TUNING_JOBS;
+        } else {
+            // Default fallback - most common endpoint
+            endpoint = CHAT_COMPLETIONS;
+        }
+        return new RequestRoute(endpoint, model);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RequestRoute)) {
+            return false;
+        }
+        RequestRoute other = (RequestRoute) o;
+        return endpoint.equals(other.endpoint) && model.equals(other.model);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(endpoint, model);
+    }
+
+    @Override
+    public String toString() {
+        return endpoint + " " + model;
+    }
+}
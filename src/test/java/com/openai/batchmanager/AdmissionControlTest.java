@@ -0,0 +1,136 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.AdmissionController;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.manager.ResumedBatch;
+import com.openai.batchmanager.manager.TokenEstimator;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchStatus;
+import com.openai.batchmanager.util.RequestRoute;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("admission.db").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testEstimateCountsPromptAndOutputLimit() {
+        TokenEstimator estimator = new TokenEstimator();
+        String request = "{\"model\": \"gpt-4.1\", \"max_tokens\": 100, " +
+                "\"messages\": [{\"role\": \"user\", \"content\": \"" + "x".repeat(396) + "\"}]}";
+
+        // 400 characters of text, one message of framing, the request overhead and the output limit
+        assertEquals(100 + 4 + 3 + 100, estimator.estimate(request));
+        assertEquals("gpt-4.1", RequestRoute.scan(request).getModel());
+        assertThrows(IllegalArgumentException.class, () -> estimator.estimate("not json"));
+    }
+
+    @Test
+    void testControllerQueuesUntilTokensAreReleased() throws Exception {
+        AdmissionController controller = new AdmissionController(Map.of("gpt-4.1", 100L), Long.MAX_VALUE);
+
+        assertTrue(controller.acquire("a", "gpt-4.1", 60).isDone());
+        CompletableFuture<Void> b = controller.acquire("b", "gpt-4.1", 50);
+        CompletableFuture<Void> c = controller.acquire("c", "gpt-4.1", 10);
+        assertTrue(controller.acquire("d", "other-model", 1_000_000).isDone());
+
+        // c would fit, but it waits behind b so large batches are not starved
+        assertFalse(b.isDone());
+        assertFalse(c.isDone());
+        assertEquals(2, controller.getWaitingCount());
+
+        controller.release("a");
+        assertTrue(b.isDone());
+        assertTrue(c.isDone());
+        assertEquals(60, controller.getEnqueuedTokens("gpt-4.1"));
+
+        ExecutionException tooLarge = assertThrows(ExecutionException.class,
+                () -> controller.acquire("e", "gpt-4.1", 101).get());
+        assertInstanceOf(IllegalArgumentException.class, tooLarge.getCause());
+    }
+
+    @Test
+    void testSubmissionsOverBudgetWaitForEarlierBatches() throws Exception {
+        String request = "{\"model\": \"gpt-4.1\", \"max_tokens\": 1000, \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+        long perRequest = new TokenEstimator().estimate(request);
+
+        server.pollsUntilComplete = 2;
+        // Room for two single-request shards at a time
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions()
+                        .setPollInterval(Duration.ofMillis(20))
+                        .setMaxRequestsPerBatch(1)
+                        .setEnqueuedTokenLimit("gpt-4.1", perRequest * 2))) {
+
+            Map<String, String> requests = new LinkedHashMap<>();
+            for (int i = 0; i < 6; i++) {
+                requests.put("req-" + i, request);
+            }
+            CompletableFuture<Map<String, String>> future = manager.submitAsync(requests);
+
+            assertTrue(manager.getAdmissionController().getWaitingCount() > 0);
+            assertEquals(requests.keySet(), future.get(30, TimeUnit.SECONDS).keySet());
+            assertEquals(6, server.batchCreates.get());
+            assertEquals(0, manager.getAdmissionController().getEnqueuedTokens("gpt-4.1"));
+        }
+    }
+
+    @Test
+    void testInFlightBatchesCountOnceResumed() throws Exception {
+        server.pollsUntilComplete = Integer.MAX_VALUE;
+        Batch inFlight = new Batch("left-over");
+        inFlight.setModel("gpt-4.1");
+        inFlight.setEstimatedTokens(5_000);
+        db.insertBatch(inFlight);
+        inFlight.setOpenaiBatchId(server.seedBatch(List.of("req-1")));
+        inFlight.setStatus(BatchStatus.IN_PROGRESS);
+        db.updateBatch(inFlight);
+
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(), new BatchManagerOptions().setPollInterval(Duration.ofMillis(20)))) {
+            // Nothing here follows it yet, so nothing would ever release its tokens
+            assertEquals(0, manager.getAdmissionController().getEnqueuedTokens("gpt-4.1"));
+
+            List<ResumedBatch> resumed = manager.resumeAll();
+            assertEquals(5_000, manager.getAdmissionController().getEnqueuedTokens("gpt-4.1"));
+
+            server.pollsUntilComplete = 0;
+            resumed.get(0).getOutcome().get(10, TimeUnit.SECONDS);
+            assertEquals(0, manager.getAdmissionController().getEnqueuedTokens("gpt-4.1"));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.model.Batch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncClientTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private OpenAIClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        client = new OpenAIClient("test-key", server.baseUrl());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testClientAsyncRoundTrip() throws Exception {
+        Batch submitted = client.submitBatchAsync(
+                List.of(Map.entry("req-1", "{\"model\": \"gpt-4.1\", \"messages\": []}")),
+                "/v1/chat/completions", Map.of("run", "async")).get(10, TimeUnit.SECONDS);
+        assertNotNull(submitted.getOpenaiBatchId());
+
+        Batch polled = client.updateBatchStatusAsync(submitted).get(10, TimeUnit.SECONDS);
+        assertTrue(polled.getStatus().isTerminal());
+
+        Map<String, String> results = client.downloadBatchResultsAsync(polled).get(10, TimeUnit.SECONDS);
+        assertTrue(results.get("req-1").contains("echo req-1"));
+
+        assertNotNull(client.listBatchesAsync(10, null).get(10, TimeUnit.SECONDS));
+        assertEquals(1, server.fileUploads.get());
+    }
+
+    @Test
+    void testAsyncFailuresCompleteExceptionally() {
+        ExecutionException missing = assertThrows(ExecutionException.class,
+                () -> client.getBatchAsync("batch_missing").get(10, TimeUnit.SECONDS));
+        assertInstanceOf(java.io.IOException.class, missing.getCause());
+
+        assertTrue(client.cancelBatchAsync("").isCompletedExceptionally());
+    }
+
+    @Test
+    void testManyBatchesShareAFewThreads() throws Exception {
+        server.pollsUntilComplete = 3;
+        DatabaseManager db = new DatabaseManager(tempDir.resolve("async.db").toString());
+        // Two executor threads are only enough if nothing blocks on them while batches are in flight
+        try (BatchManager manager = new BatchManager(client, db, Executors.newFixedThreadPool(2),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(50)))) {
+
+            List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                futures.add(manager.submitAsync(Map.of("req-" + i,
+                        "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q" + i + "\"}]}")));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+
+            for (int i = 0; i < futures.size(); i++) {
+                assertTrue(futures.get(i).get().get("req-" + i).contains("echo req-" + i));
+            }
+            assertEquals(40, server.batchCreates.get());
+        }
+    }
+}
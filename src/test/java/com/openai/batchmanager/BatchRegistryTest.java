@@ -0,0 +1,102 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchStatus;
+import com.openai.batchmanager.service.BatchRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRegistryTest {
+
+    private static final String REQUEST = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("registry.db").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testRegistryDropsTerminalBatches() {
+        BatchRegistry registry = new BatchRegistry();
+        Batch batch = new Batch("local-1");
+        registry.update(batch);
+        assertSame(batch, registry.get("local-1"));
+        assertNull(registry.getByOpenaiId("batch_1"));
+
+        batch.setOpenaiBatchId("batch_1");
+        batch.setStatus(BatchStatus.IN_PROGRESS);
+        registry.update(batch);
+        assertSame(batch, registry.getByOpenaiId("batch_1"));
+
+        batch.setStatus(BatchStatus.COMPLETED);
+        registry.update(batch);
+        assertNull(registry.get("local-1"));
+        assertNull(registry.getByOpenaiId("batch_1"));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void testLookupAndCancelByEitherId() throws Exception {
+        server.pollsUntilComplete = Integer.MAX_VALUE;
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(20)))) {
+
+            CompletableFuture<Map<String, String>> future = manager.submitAsync(Map.of("req-1", REQUEST));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (server.batchOrder.isEmpty() || manager.getBatch(server.batchOrder.get(0)) == null) {
+                assertTrue(System.currentTimeMillis() < deadline, "batch was never registered");
+                Thread.sleep(10);
+            }
+            String openaiId = server.batchOrder.get(0);
+            Batch live = manager.getBatch(openaiId);
+            assertNotSame(live, manager.getBatch(live.getId()));
+            assertEquals(BatchStatus.IN_PROGRESS, manager.getStatus(openaiId));
+            // A copy, so changing it does not touch the batch being polled
+            live.setStatus(BatchStatus.FAILED);
+            assertEquals(BatchStatus.IN_PROGRESS, manager.getStatus(openaiId));
+
+            manager.cancelBatchAsync(openaiId).get(10, TimeUnit.SECONDS);
+            assertEquals(BatchStatus.CANCELLED, manager.getStatus(live.getId()));
+            future.get(10, TimeUnit.SECONDS);
+
+            // Terminal, so it is no longer held in memory but is still found in the database
+            Batch stored = manager.getBatch(openaiId);
+            assertEquals(BatchStatus.CANCELLED, stored.getStatus());
+
+            ExecutionException finished = assertThrows(ExecutionException.class,
+                    () -> manager.cancelBatchAsync(openaiId).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, finished.getCause());
+            assertNull(manager.getBatch("batch_unknown"));
+            assertThrows(IllegalArgumentException.class, () -> manager.getStatus("batch_unknown"));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.model.BatchOutcome;
+import com.openai.batchmanager.model.BatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingTest extends ManagerTestBase {
+
+    private static final String Q1 = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q1\"}]}";
+    private static final String Q1_REORDERED = "{ \"messages\":[{\"content\":\"Q1\",\"role\":\"user\"}],\"model\":\"gpt-4.1\" }";
+    private static final String Q2 = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q2\"}]}";
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Long enough in flight for the second submission to find the first one's batch running
+        server.pollsUntilComplete = 10;
+    }
+
+    @Test
+    void testIdenticalInFlightRequestIsSentOnce() throws Exception {
+        try (BatchManager manager = newManager(options().setCoalesceInFlightRequests(true))) {
+            CompletableFuture<Map<String, String>> first = manager.submitAsync(Map.of("a", Q1));
+
+            Map<String, String> requests = new LinkedHashMap<>();
+            requests.put("c", Q1_REORDERED);
+            requests.put("d", Q2);
+            CompletableFuture<Map<String, String>> second = manager.submitAsync(requests);
+
+            Map<String, String> firstResponses = first.get(30, TimeUnit.SECONDS);
+            Map<String, String> secondResponses = second.get(30, TimeUnit.SECONDS);
+            assertEquals(requests.keySet(), secondResponses.keySet());
+            assertEquals(firstResponses.get("a"), secondResponses.get("c"));
+
+            assertEquals(2, server.batchCreates.get());
+            assertEquals(1, server.batches.get(server.batchOrder.get(1)).total);
+            assertEquals(1, manager.getRequestCoalescer().getCoalescedCount());
+            assertEquals(0, manager.getRequestCoalescer().getInFlightCount());
+
+            // Nothing left in flight, so the same request goes out again
+            manager.submitAsync(Map.of("e", Q1)).get(30, TimeUnit.SECONDS);
+            assertEquals(3, server.batchCreates.get());
+        }
+    }
+
+    @Test
+    void testAttachedRequestsShareFailuresAndStream() throws Exception {
+        server.failingCustomIds.add("a");
+        try (BatchManager manager = newManager(options().setCoalesceInFlightRequests(true))) {
+            Map<String, String> requests = new LinkedHashMap<>();
+            requests.put("a", Q1);
+            requests.put("b", Q2);
+            CompletableFuture<BatchOutcome> first = manager.submitForOutcomeAsync(requests, null, null);
+            CompletableFuture<BatchOutcome> second = manager.submitForOutcomeAsync(Map.of("x", Q1), null, null);
+            ResultStreamTest.Collector streamed = new ResultStreamTest.Collector(1);
+            manager.submitForStream(Map.of("y", Q2), null).subscribe(streamed);
+
+            BatchOutcome leader = first.get(30, TimeUnit.SECONDS);
+            BatchOutcome follower = second.get(30, TimeUnit.SECONDS);
+            assertTrue(follower.getResponses().isEmpty());
+            assertEquals(leader.getFailures().get("a").getErrorCode(), follower.getFailures().get("x").getErrorCode());
+            assertEquals(Q1, follower.getFailures().get("x").getRequestData());
+
+            assertTrue(streamed.done.await(30, TimeUnit.SECONDS));
+            assertNull(streamed.error.get());
+            assertEquals(1, streamed.results.size());
+            BatchResult result = streamed.results.get(0);
+            assertEquals("y", result.getCustomId());
+            assertTrue(result.isSuccess());
+            assertEquals(leader.getResponses().get("b"), result.getResponseJson());
+
+            assertEquals(1, server.batchCreates.get());
+        }
+    }
+
+    @Test
+    void testStreamedBatchesAreNotWaitedOn() throws Exception {
+        try (BatchManager manager = newManager(options().setCoalesceInFlightRequests(true))) {
+            // Nobody subscribes, so this batch's rows are never written
+            manager.submitForStream(Map.of("a", Q1), null);
+            assertTrue(manager.submitAsync(Map.of("b", Q1)).get(30, TimeUnit.SECONDS).containsKey("b"));
+            assertEquals(2, server.batchCreates.get());
+            assertEquals(0, manager.getRequestCoalescer().getCoalescedCount());
+        }
+    }
+
+    @Test
+    void testDisabledByDefault() throws Exception {
+        try (BatchManager manager = newManager(options())) {
+            CompletableFuture<Map<String, String>> first = manager.submitAsync(Map.of("a", Q1));
+            CompletableFuture<Map<String, String>> second = manager.submitAsync(Map.of("b", Q1));
+            first.get(30, TimeUnit.SECONDS);
+            second.get(30, TimeUnit.SECONDS);
+            assertEquals(2, server.batchCreates.get());
+            assertEquals(0, manager.getRequestCoalescer().getCoalescedCount());
+        }
+    }
+}
@@ -85,6 +85,46 @@ class DatabaseManagerTest {
         assertNotNull(requests.get(0).getResponseData());
     }
 
+    @Test
+    void testBatchRequestBulkInsertAndUpdate() throws SQLException {
+        String batchId = "test-batch-bulk-" + System.currentTimeMillis();
+        dbManager.insertBatch(new Batch(batchId));
+
+        List<BatchRequest> requests = new java.util.ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new BatchRequest("bulk-" + i, "{\"test\": " + i + "}"));
+        }
+        dbManager.insertBatchRequests(batchId, requests);
+
+        for (BatchRequest request : requests) {
+            request.setResponseData("{\"ok\": true}");
+            request.setStatus(BatchRequest.RequestStatus.COMPLETED);
+        }
+        dbManager.updateBatchRequests(batchId, requests.subList(0, 6));
+
+        List<BatchRequest> stored = dbManager.getBatchRequests(batchId);
+        assertEquals(10, stored.size());
+        assertEquals(6, stored.stream().filter(r -> r.getStatus() == BatchRequest.RequestStatus.COMPLETED).count());
+        assertEquals(4, stored.stream().filter(r -> r.getStatus() == BatchRequest.RequestStatus.PENDING).count());
+    }
+
+    @Test
+    void testBulkBatchUpdate() throws SQLException {
+        List<Batch> batches = new java.util.ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Batch batch = new Batch("test-batch-multi-" + i + "-" + System.currentTimeMillis());
+            dbManager.insertBatch(batch);
+            batch.setOpenaiBatchId("batch_multi_" + i);
+            batch.setStatus(i < 3 ? BatchStatus.COMPLETED : BatchStatus.IN_PROGRESS);
+            batches.add(batch);
+        }
+        dbManager.updateBatches(batches);
+
+        List<Batch> incomplete = dbManager.getIncompleteBatches();
+        assertEquals(2, incomplete.stream().filter(b -> b.getId().startsWith("test-batch-multi-")).count());
+        assertTrue(incomplete.stream().anyMatch(b -> "batch_multi_4".equals(b.getOpenaiBatchId())));
+    }
+
     @Test
     void testCustomDatabasePath() throws SQLException {
         // Test that the database manager uses the correct path
@@ -265,6 +305,17 @@ class DatabaseManagerTest {
         }
     }
 
+    @Test
+    void testReadsDoNotBlockAnotherConnection() throws SQLException {
+        dbManager.insertBatch(new Batch("batch-read"));
+        DatabaseManager other = new DatabaseManager(testDbPath);
+
+        // A read left uncommitted would keep its shared lock, and the other connection could not write
+        assertEquals(1, dbManager.getIncompleteBatches().size());
+        other.insertBatch(new Batch("batch-written"));
+        assertEquals(2, dbManager.getIncompleteBatches().size());
+    }
+
     @Test
     void testEmptyResultSets() throws SQLException {
         // Test queries on empty database
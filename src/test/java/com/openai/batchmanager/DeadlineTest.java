@@ -0,0 +1,166 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.client.RetryPolicy;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.model.BatchOutcome;
+import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.model.BatchStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineTest extends ManagerTestBase {
+
+    private static final String REQUEST = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+    private static final String UNREACHABLE = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Unreachable\"}]}";
+    private static final String THROTTLED = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Throttled\"}]}";
+
+    @Test
+    void testNoHistorySendsBatch() throws Exception {
+        try (BatchManager manager = newManager(options())) {
+            // Without history the batch goes out, and what it took is recorded for the next deadline
+            assertNull(manager.getTurnaroundEstimator().estimate("gpt-4.1"));
+            BatchOutcome outcome = manager.submitForOutcomeAsync(Map.of("a", REQUEST, "b", REQUEST),
+                    null, null, Instant.now().plus(Duration.ofHours(1))).get(30, TimeUnit.SECONDS);
+            assertEquals(2, outcome.getResponses().size());
+            assertTrue(outcome.getResponses().get("a").contains("echo a"));
+            assertEquals(1, server.batchCreates.get());
+            assertEquals(0, server.syncRequests.get());
+            assertNotNull(manager.getTurnaroundEstimator().estimate("gpt-4.1"));
+        }
+    }
+
+    @Test
+    void testSlowHistorySendsSynchronously() throws Exception {
+        try (BatchManager manager = newManager(options().setMaxConcurrentSyncRequests(2))) {
+            manager.submitAsync(Map.of("seed", REQUEST)).get(30, TimeUnit.SECONDS);
+            // Inside the default 5 minute reserve, so even a quick batch leaves no time
+            BatchOutcome outcome = manager.submitForOutcomeAsync(Map.of("a", REQUEST, "b", REQUEST, "c", REQUEST),
+                    null, null, Instant.now().plus(Duration.ofMinutes(1))).get(30, TimeUnit.SECONDS);
+            assertEquals(3, outcome.getResponses().size());
+            assertFalse(outcome.hasFailures());
+            assertTrue(outcome.getResponses().get("a").contains("echo sync"));
+            assertEquals(1, server.batchCreates.get());
+            assertEquals(3, server.syncRequests.get());
+            assertEquals(3, manager.getSyncExecutor().getSentCount());
+        }
+    }
+
+    @Test
+    void testBatchIsHedgedOnlyWhenItWouldMissTheDeadline() throws Exception {
+        try (BatchManager manager = newManager(options().setDeadlineSyncReserve(Duration.ofSeconds(1)))) {
+            manager.submitAsync(Map.of("seed", REQUEST)).get(30, TimeUnit.SECONDS);
+            assertTrue(manager.getTurnaroundEstimator().estimate("gpt-4.1").compareTo(Duration.ofSeconds(2)) < 0);
+
+            // Recent batches are quick, so a distant deadline is left to the batch
+            BatchOutcome batched = manager.submitForOutcomeAsync(Map.of("a", REQUEST), null, null,
+                    Instant.now().plus(Duration.ofHours(1))).get(30, TimeUnit.SECONDS);
+            assertTrue(batched.getResponses().get("a").contains("echo a"));
+            assertEquals(2, server.batchCreates.get());
+            assertEquals(0, server.syncRequests.get());
+
+            // A batch that stops making progress is overtaken once only the reserve is left
+            server.pollsUntilComplete = Integer.MAX_VALUE;
+            BatchOutcome hedged = manager.submitForOutcomeAsync(Map.of("b", REQUEST, "c", REQUEST), null, null,
+                    Instant.now().plus(Duration.ofSeconds(3))).get(30, TimeUnit.SECONDS);
+            assertEquals(2, hedged.getResponses().size());
+            assertTrue(hedged.getResponses().get("b").contains("echo sync"));
+            assertEquals(3, server.batchCreates.get());
+            assertEquals(2, server.syncRequests.get());
+
+            FakeOpenAIServer.FakeBatch overtaken = server.batches.get(server.batchOrder.get(2));
+            long until = System.currentTimeMillis() + 5_000;
+            while (!"cancelled".equals(overtaken.status) && System.currentTimeMillis() < until) {
+                Thread.sleep(20);
+            }
+            assertEquals("cancelled", overtaken.status);
+
+            // The cancelled batch's ingest keeps what the synchronous copies answered
+            String hedgedBatchId = db.getBatchesBySubmission(hedged.getSubmissionId()).get(0).getId();
+            until = System.currentTimeMillis() + 5_000;
+            while (db.getBatch(hedgedBatchId).getStatus() != BatchStatus.CANCELLED && System.currentTimeMillis() < until) {
+                Thread.sleep(20);
+            }
+            BatchOutcome resumed = manager.resumeSubmissionForOutcomeAsync(hedged.getSubmissionId(), null)
+                    .get(30, TimeUnit.SECONDS);
+            assertFalse(resumed.hasFailures());
+            assertEquals(hedged.getResponses(), resumed.getResponses());
+            assertTrue(db.getBatchRequests(hedgedBatchId).stream()
+                    .allMatch(r -> r.getStatus() == BatchRequest.RequestStatus.COMPLETED));
+        }
+    }
+
+    @Test
+    void testFailedCopyOnlyLeavesItsOwnRequestToTheBatch() throws Exception {
+        server.pollsUntilComplete = Integer.MAX_VALUE;
+        server.unreachableSyncContent = "Unreachable";
+        OpenAIClient client = new OpenAIClient("test-key", server.baseUrl());
+        client.setRetryPolicy(RetryPolicy.none());
+        try (BatchManager manager = new BatchManager(client, db, Executors.newCachedThreadPool(),
+                options().setDeadlineSyncReserve(Duration.ofSeconds(1)))) {
+            Map<String, String> requests = new LinkedHashMap<>();
+            requests.put("b", REQUEST);
+            requests.put("x", UNREACHABLE);
+            CompletableFuture<BatchOutcome> future = manager.submitForOutcomeAsync(requests, null, null,
+                    Instant.now().plus(Duration.ofSeconds(2)));
+
+            long until = System.currentTimeMillis() + 10_000;
+            while (manager.getSyncExecutor().getSentCount() < 2 || server.syncRequests.get() < 1) {
+                assertTrue(System.currentTimeMillis() < until, "batch was never hedged");
+                Thread.sleep(20);
+            }
+            Thread.sleep(200);
+            // One copy never reached the API, so the batch is still waited for
+            assertFalse(future.isDone());
+            server.pollsUntilComplete = 1;
+
+            BatchOutcome outcome = future.get(30, TimeUnit.SECONDS);
+            assertFalse(outcome.hasFailures());
+            assertTrue(outcome.getResponses().get("b").contains("echo sync"));
+            assertTrue(outcome.getResponses().get("x").contains("echo x"));
+            assertEquals("completed", server.batches.get(server.batchOrder.get(0)).status);
+        }
+    }
+
+    @Test
+    void testThrottledCopyLeavesTheBatchRunning() throws Exception {
+        server.pollsUntilComplete = Integer.MAX_VALUE;
+        server.throttledSyncContent = "Throttled";
+        OpenAIClient client = new OpenAIClient("test-key", server.baseUrl());
+        client.setRetryPolicy(RetryPolicy.none());
+        try (BatchManager manager = new BatchManager(client, db, Executors.newCachedThreadPool(),
+                options().setDeadlineSyncReserve(Duration.ofSeconds(1)))) {
+            Map<String, String> requests = new LinkedHashMap<>();
+            requests.put("b", REQUEST);
+            requests.put("x", THROTTLED);
+            CompletableFuture<BatchOutcome> future = manager.submitForOutcomeAsync(requests, null, null,
+                    Instant.now().plus(Duration.ofSeconds(2)));
+
+            long until = System.currentTimeMillis() + 10_000;
+            while (manager.getSyncExecutor().getSentCount() < 2 || server.syncRequests.get() < 1) {
+                assertTrue(System.currentTimeMillis() < until, "batch was never hedged");
+                Thread.sleep(20);
+            }
+            Thread.sleep(200);
+            // A 429 once retries are used up is no answer, so the batch is neither superseded nor cancelled
+            assertFalse(future.isDone());
+            assertEquals("in_progress", server.batches.get(server.batchOrder.get(0)).status);
+            server.pollsUntilComplete = 1;
+
+            BatchOutcome outcome = future.get(30, TimeUnit.SECONDS);
+            assertFalse(outcome.hasFailures());
+            assertTrue(outcome.getResponses().get("b").contains("echo sync"));
+            assertTrue(outcome.getResponses().get("x").contains("echo x"));
+            assertEquals("completed", server.batches.get(server.batchOrder.get(0)).status);
+        }
+    }
+}
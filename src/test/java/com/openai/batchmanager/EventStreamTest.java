@@ -0,0 +1,157 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.client.RetryPolicy;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.model.BatchEvent;
+import com.openai.batchmanager.model.BatchStatus;
+import com.openai.batchmanager.service.BatchEventPublisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventStreamTest {
+
+    private static final String REQUEST = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("events.db").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testLifecycleEventsFilteredByMetadata() throws Exception {
+        server.pollsUntilComplete = 3;
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(20)))) {
+
+            Collector nightly = new Collector(Long.MAX_VALUE);
+            Collector other = new Collector(Long.MAX_VALUE);
+            manager.events(BatchEvent.withMetadata("job", "nightly")).subscribe(nightly);
+            manager.events(BatchEvent.withMetadata("job", "other")).subscribe(other);
+
+            manager.submitAsync(Map.of("req-1", REQUEST, "req-2", REQUEST), Map.of("job", "nightly"))
+                    .get(30, TimeUnit.SECONDS);
+            // Delivery is asynchronous, so wait for the last event rather than the future
+            assertTrue(nightly.ingested.await(10, TimeUnit.SECONDS));
+
+            List<BatchStatus> statuses = nightly.events.stream()
+                    .filter(e -> e.getType() == BatchEvent.Type.STATUS_CHANGED)
+                    .map(BatchEvent::getStatus)
+                    .toList();
+            assertEquals(List.of(BatchStatus.PENDING, BatchStatus.IN_PROGRESS, BatchStatus.COMPLETED), statuses);
+
+            BatchEvent progress = nightly.events.stream()
+                    .filter(e -> e.getType() == BatchEvent.Type.PROGRESS)
+                    .findFirst().orElseThrow();
+            assertEquals(2, progress.getCompletedDelta());
+            assertNotNull(progress.getEstimatedCompletion());
+
+            BatchEvent ingested = nightly.events.get(nightly.events.size() - 1);
+            assertEquals(BatchEvent.Type.RESULTS_INGESTED, ingested.getType());
+            assertEquals(2, ingested.getResultsIngested());
+            assertTrue(other.events.isEmpty());
+        }
+    }
+
+    @Test
+    void testSlowSubscriberDoesNotHoldUpPolling() throws Exception {
+        server.pollsUntilComplete = 2;
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(20)).setMaxRequestsPerBatch(1))) {
+
+            // Takes one event and never asks for more; 100 shards produce far more events than its 256 slot buffer
+            Collector stalled = new Collector(1);
+            manager.events().subscribe(stalled);
+
+            Map<String, String> requests = new LinkedHashMap<>();
+            for (int i = 0; i < 100; i++) {
+                requests.put("req-" + i, REQUEST);
+            }
+            assertEquals(100, manager.submitAsync(requests).get(60, TimeUnit.SECONDS).size());
+
+            assertEquals(1, stalled.events.size());
+            BatchEventPublisher publisher = (BatchEventPublisher) manager.events();
+            assertTrue(publisher.getDroppedCount() > 0);
+        }
+    }
+
+    @Test
+    void testFailedUploadIsNotTracked() throws Exception {
+        OpenAIClient client = new OpenAIClient("test-key", server.baseUrl());
+        client.setRetryPolicy(RetryPolicy.none());
+        try (BatchManager manager = new BatchManager(client, db, Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(20)))) {
+
+            BatchEventPublisher publisher = (BatchEventPublisher) manager.events();
+            server.close();
+            ExecutionException failed = assertThrows(ExecutionException.class,
+                    () -> manager.submitAsync(Map.of("req-1", REQUEST)).get(30, TimeUnit.SECONDS));
+            assertNotNull(failed.getCause());
+            // Saved as pending before the upload, then never written again
+            assertEquals(0, publisher.getTrackedCount());
+        }
+    }
+
+    private static class Collector implements Flow.Subscriber<BatchEvent> {
+        final long demand;
+        final List<BatchEvent> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch ingested = new CountDownLatch(1);
+
+        Collector(long demand) {
+            this.demand = demand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(demand);
+        }
+
+        @Override
+        public void onNext(BatchEvent event) {
+            events.add(event);
+            if (event.getType() == BatchEvent.Type.RESULTS_INGESTED) {
+                ingested.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.HttpTransportConfig;
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.util.ExecutorUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionModeTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("execution.db").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testDefaultExecutorMatchesRuntime() throws Exception {
+        boolean expected = Runtime.version().feature() >= 21;
+        assertEquals(expected, ExecutorUtils.virtualThreadsAvailable());
+
+        ExecutorService executor = ExecutorUtils.newDefaultExecutor();
+        try {
+            boolean virtual = executor.submit(() -> Thread.currentThread().toString().startsWith("VirtualThread")).get();
+            assertEquals(expected, virtual);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!expected) {
+            ExecutorService bounded = ExecutorUtils.newDefaultExecutor();
+            try {
+                assertEquals(ExecutorUtils.defaultPoolSize(), ((ThreadPoolExecutor) bounded).getMaximumPoolSize());
+            } finally {
+                bounded.shutdownNow();
+            }
+            assertThrows(IllegalArgumentException.class, () -> ExecutorUtils.newBoundedExecutor(0));
+            assertThrows(UnsupportedOperationException.class, ExecutorUtils::newVirtualThreadPerTaskExecutor);
+            assertThrows(UnsupportedOperationException.class,
+                    () -> new HttpTransportConfig().setVirtualThreadDispatcher(true));
+        }
+    }
+
+    // Run with -Dbenchmark=true [-Dbenchmark.batches=10000]; the figures go to target/execution-mode-benchmark.txt.
+    // With 1k batches, Java 17 peaked at over 1,000 client threads on the cached pool it used to fall back to, and
+    // at 4 manager threads plus 256 dispatcher threads on the bounded pool. On Java 21 the dispatcher and the
+    // manager both run on virtual threads, leaving little more than one carrier per core. The mock server's own
+    // connection threads are not counted
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkConcurrentBatches() throws Exception {
+        int batches = Integer.getInteger("benchmark.batches", 10_000);
+        int maxRequests = 256;
+        boolean virtual = ExecutorUtils.virtualThreadsAvailable();
+        server.pollsUntilComplete = 3;
+
+        HttpTransportConfig transport = new HttpTransportConfig()
+                .setBaseUrl(server.baseUrl())
+                .setMaxRequests(maxRequests)
+                .setMaxRequestsPerHost(maxRequests)
+                .setVirtualThreadDispatcher(virtual);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        int threadsBefore = clientThreads();
+
+        long start = System.nanoTime();
+        long peakHeap = heapBefore;
+        int peakThreads = threadsBefore;
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", transport), db,
+                ExecutorUtils.newDefaultExecutor(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(200)))) {
+
+            List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>();
+            for (int i = 0; i < batches; i++) {
+                futures.add(manager.submitAsync(Map.of("req-" + i,
+                        "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q" + i + "\"}]}")));
+            }
+
+            CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+            while (!all.isDone()) {
+                peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+                peakThreads = Math.max(peakThreads, clientThreads());
+                Thread.sleep(50);
+            }
+            all.get(10, TimeUnit.MINUTES);
+        }
+
+        int added = peakThreads - threadsBefore;
+        String report = String.format("batches=%d virtualThreads=%b elapsed=%dms threadsBefore=%d peakThreads=%d " +
+                        "heapGrowth=%dMB%n", batches, virtual, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                threadsBefore, peakThreads, (peakHeap - heapBefore) / (1024 * 1024));
+        Files.writeString(Path.of("target", "execution-mode-benchmark.txt"), report);
+
+        assertEquals(batches, server.batchCreates.get());
+        // Carriers, the poller and OkHttp's own task runners; a few to spare for the JVM starting its own threads
+        int bound = Runtime.getRuntime().availableProcessors() + 32;
+        if (!virtual) {
+            bound += ExecutorUtils.defaultPoolSize() + maxRequests;
+        }
+        assertTrue(added <= bound, "added " + added + " threads, expected at most " + bound + ": " + report);
+    }
+
+    // Live platform threads, leaving out the mock server's; virtual threads are not listed
+    private static int clientThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!thread.getName().startsWith("MockWebServer")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
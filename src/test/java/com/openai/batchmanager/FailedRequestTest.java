@@ -0,0 +1,84 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchOutcome;
+import com.openai.batchmanager.model.BatchRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FailedRequestTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+    private BatchManager manager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("failed.db").toString());
+        manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(10)));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        manager.close();
+        server.close();
+    }
+
+    @Test
+    void testErrorFileIsIngestedAndFailuresResubmitted() throws Exception {
+        Map<String, String> requests = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            requests.put("req-" + i, "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q" + i + "\"}]}");
+        }
+        server.failingCustomIds.addAll(Set.of("req-1", "req-3"));
+
+        BatchOutcome outcome = manager.submitForOutcomeAsync(requests, null, null).get(30, TimeUnit.SECONDS);
+
+        assertEquals(Set.of("req-0", "req-2", "req-4"), outcome.getResponses().keySet());
+        assertEquals(Set.of("req-1", "req-3"), outcome.getFailures().keySet());
+        BatchRequest failed = outcome.getFailures().get("req-1");
+        assertEquals("invalid_value", failed.getErrorCode());
+        assertEquals("Invalid request req-1", failed.getErrorMessage());
+
+        List<Batch> batches = db.getBatchesBySubmission(outcome.getSubmissionId());
+        List<BatchRequest> stored = db.getBatchRequests(batches.get(0).getId());
+        BatchRequest storedFailure = stored.stream().filter(r -> r.getCustomId().equals("req-3")).findFirst().orElseThrow();
+        assertEquals(BatchRequest.RequestStatus.FAILED, storedFailure.getStatus());
+        assertEquals("invalid_value", storedFailure.getErrorCode());
+        assertEquals(3, stored.stream().filter(r -> r.getStatus() == BatchRequest.RequestStatus.COMPLETED).count());
+
+        // The plain map API still only reports successes
+        assertEquals(3, manager.resumeSubmissionAsync(outcome.getSubmissionId()).get(30, TimeUnit.SECONDS).size());
+
+        server.failingCustomIds.clear();
+        BatchOutcome retried = manager.resubmitFailedAsync(outcome).get(30, TimeUnit.SECONDS);
+        assertEquals(Set.of("req-1", "req-3"), retried.getResponses().keySet());
+
+        BatchOutcome merged = outcome.merge(retried);
+        assertFalse(merged.hasFailures());
+        assertEquals(requests.keySet(), merged.getResponses().keySet());
+    }
+}
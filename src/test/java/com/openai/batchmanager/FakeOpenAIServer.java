@@ -0,0 +1,364 @@
+package com.openai.batchmanager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openai.batchmanager.util.JsonUtils;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Minimal in-process stand-in for the files and batches endpoints, answering every request with an echo response
+class FakeOpenAIServer extends Dispatcher implements AutoCloseable {
+
+    private final ObjectMapper mapper = JsonUtils.getMapper();
+    private final MockWebServer server = new MockWebServer();
+
+    final Map<String, List<String>> files = new ConcurrentHashMap<>();
+    final Map<String, FakeBatch> batches = new ConcurrentHashMap<>();
+    final List<String> batchOrder = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger fileUploads = new AtomicInteger();
+    final AtomicInteger batchCreates = new AtomicInteger();
+    final AtomicInteger batchGets = new AtomicInteger();
+    final AtomicInteger batchLists = new AtomicInteger();
+    final AtomicInteger syncRequests = new AtomicInteger();
+    final AtomicInteger rangeRequests = new AtomicInteger();
+
+    private final AtomicInteger ids = new AtomicInteger();
+    volatile int pollsUntilComplete = 1;
+    // Requests with these custom IDs land in the batch's error file instead of its output file
+    final Set<String> failingCustomIds = ConcurrentHashMap.newKeySet();
+    // The next this many batches holding any of unfinishedCustomIds expire with those lines never run
+    final Set<String> unfinishedCustomIds = ConcurrentHashMap.newKeySet();
+    final AtomicInteger expirations = new AtomicInteger();
+    // Synchronous requests whose body contains this are dropped without a response
+    volatile String unreachableSyncContent;
+    // Synchronous requests whose body contains this are answered with a 429
+    volatile String throttledSyncContent;
+    // File downloads without a Range header pause for a second after this many bytes, when set
+    volatile long stallFileAfterBytes;
+
+    FakeOpenAIServer() throws IOException {
+        server.setDispatcher(this);
+        server.start();
+    }
+
+    String baseUrl() {
+        return server.url("/v1/").toString();
+    }
+
+    MockWebServer server() {
+        return server;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        List<String> segments = url.pathSegments();
+        String method = request.getMethod();
+        try {
+            if (segments.size() == 2 && segments.get(1).equals("files") && method.equals("POST")) {
+                return uploadFile(request);
+            }
+            if (segments.size() == 4 && segments.get(1).equals("files") && segments.get(3).equals("content")) {
+                List<String> lines = files.get(segments.get(2));
+                return lines == null ? notFound() : fileContent(lines, request.getHeader("Range"));
+            }
+            if (segments.size() == 2 && segments.get(1).equals("batches")) {
+                return method.equals("POST") ? createBatch(request) : listBatches(url);
+            }
+            if (segments.size() == 3 && segments.get(1).equals("batches")) {
+                return getBatch(segments.get(2));
+            }
+            if (segments.size() == 3 && segments.get(1).equals("chat") && segments.get(2).equals("completions")
+                    && method.equals("POST")) {
+                String sent = request.getBody().readUtf8();
+                String unreachable = unreachableSyncContent;
+                if (unreachable != null && sent.contains(unreachable)) {
+                    return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                }
+                String throttled = throttledSyncContent;
+                if (throttled != null && sent.contains(throttled)) {
+                    return new MockResponse().setResponseCode(429).setHeader("Content-Type", "application/json")
+                            .setBody("{\"error\": {\"code\": \"rate_limit_exceeded\", \"message\": \"Slow down\"}}");
+                }
+                ObjectNode body = mapper.createObjectNode();
+                body.put("id", "chatcmpl-sync-" + syncRequests.incrementAndGet());
+                body.put("object", "chat.completion");
+                ObjectNode message = body.putArray("choices").addObject().putObject("message");
+                message.put("role", "assistant");
+                message.put("content", "echo sync");
+                return json(body);
+            }
+            if (segments.size() == 4 && segments.get(1).equals("batches") && segments.get(3).equals("cancel")) {
+                FakeBatch batch = batches.get(segments.get(2));
+                if (batch == null) {
+                    return notFound();
+                }
+                synchronized (batch) {
+                    batch.status = "cancelled";
+                }
+                return json(batch.toJson(mapper));
+            }
+        } catch (Exception e) {
+            return new MockResponse().setResponseCode(500).setBody(e.toString());
+        }
+        return notFound();
+    }
+
+    // A batch that already exists on the server, as if created by an earlier run; returns its batch ID
+    String seedBatch(List<String> customIds) {
+        String fileId = "file-" + ids.incrementAndGet();
+        List<String> lines = new ArrayList<>();
+        for (String customId : customIds) {
+            lines.add("{\"custom_id\": \"" + customId + "\", \"method\": \"POST\", \"url\": \"/v1/chat/completions\", \"body\": {}}");
+        }
+        files.put(fileId, lines);
+
+        FakeBatch batch = new FakeBatch();
+        batch.id = "batch_" + ids.incrementAndGet();
+        batch.inputFileId = fileId;
+        batch.endpoint = "/v1/chat/completions";
+        batch.createdAt = System.currentTimeMillis() / 1000;
+        batch.total = lines.size();
+        batches.put(batch.id, batch);
+        batchOrder.add(batch.id);
+        return batch.id;
+    }
+
+    private MockResponse uploadFile(RecordedRequest request) {
+        fileUploads.incrementAndGet();
+        String contentType = request.getHeader("Content-Type");
+        String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+        String body = request.getBody().readString(StandardCharsets.UTF_8);
+        int start = body.indexOf("\r\n\r\n") + 4;
+        int end = body.indexOf("\r\n--" + boundary, start);
+
+        String fileId = "file-" + ids.incrementAndGet();
+        files.put(fileId, Arrays.asList(body.substring(start, end).split("\n")));
+        return json("{\"id\": \"" + fileId + "\", \"object\": \"file\", \"purpose\": \"batch\"}");
+    }
+
+    private MockResponse fileContent(List<String> lines, String range) {
+        byte[] content = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        if (range != null) {
+            rangeRequests.incrementAndGet();
+            int from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            return new MockResponse().setResponseCode(206).setBody(new Buffer().write(content, from, content.length - from));
+        }
+        MockResponse response = new MockResponse().setBody(new Buffer().write(content));
+        long stallAfter = stallFileAfterBytes;
+        if (stallAfter > 0) {
+            response.throttleBody(stallAfter, 1, TimeUnit.SECONDS);
+        }
+        return response;
+    }
+
+    private MockResponse createBatch(RecordedRequest request) throws IOException {
+        batchCreates.incrementAndGet();
+        JsonNode body = mapper.readTree(request.getBody().readUtf8());
+        FakeBatch batch = new FakeBatch();
+        batch.id = "batch_" + ids.incrementAndGet();
+        batch.inputFileId = body.get("input_file_id").asText();
+        batch.endpoint = body.get("endpoint").asText();
+        batch.metadata = body.get("metadata");
+        batch.createdAt = System.currentTimeMillis() / 1000;
+        batch.total = files.getOrDefault(batch.inputFileId, List.of()).size();
+        batches.put(batch.id, batch);
+        batchOrder.add(batch.id);
+        return json(batch.toJson(mapper));
+    }
+
+    private MockResponse getBatch(String batchId) {
+        batchGets.incrementAndGet();
+        FakeBatch batch = batches.get(batchId);
+        if (batch == null) {
+            return notFound();
+        }
+        advance(batch);
+        return json(batch.toJson(mapper));
+    }
+
+    private MockResponse listBatches(HttpUrl url) {
+        batchLists.incrementAndGet();
+        int limit = url.queryParameter("limit") == null ? 20 : Integer.parseInt(url.queryParameter("limit"));
+        String after = url.queryParameter("after");
+
+        List<String> newestFirst;
+        synchronized (batchOrder) {
+            newestFirst = new ArrayList<>(batchOrder);
+        }
+        Collections.reverse(newestFirst);
+        int start = after == null ? 0 : newestFirst.indexOf(after) + 1;
+        int end = Math.min(newestFirst.size(), start + limit);
+
+        ObjectNode page = mapper.createObjectNode();
+        page.put("object", "list");
+        ArrayNode data = page.putArray("data");
+        for (String id : newestFirst.subList(start, end)) {
+            FakeBatch batch = batches.get(id);
+            advance(batch);
+            data.add(batch.toJson(mapper));
+        }
+        page.put("first_id", start < end ? newestFirst.get(start) : null);
+        page.put("last_id", start < end ? newestFirst.get(end - 1) : null);
+        page.put("has_more", end < newestFirst.size());
+        return json(page);
+    }
+
+    private void advance(FakeBatch batch) {
+        synchronized (batch) {
+            if (!batch.status.equals("in_progress")) {
+                return;
+            }
+            batch.polls++;
+            if (batch.polls < pollsUntilComplete) {
+                return;
+            }
+            List<String> output = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            List<String> input = files.getOrDefault(batch.inputFileId, List.of());
+            boolean expire = input.stream().anyMatch(line -> unfinishedCustomIds.contains(customIdOf(line)))
+                    && expirations.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+            for (String line : input) {
+                String customId = customIdOf(line);
+                if (expire && unfinishedCustomIds.contains(customId)) {
+                    continue;
+                }
+                if (failingCustomIds.contains(customId)) {
+                    errors.add(errorLine(customId));
+                } else {
+                    output.add(outputLine(customId));
+                }
+            }
+            if (!output.isEmpty()) {
+                batch.outputFileId = "file-" + ids.incrementAndGet();
+                files.put(batch.outputFileId, output);
+            }
+            if (!errors.isEmpty()) {
+                batch.errorFileId = "file-" + ids.incrementAndGet();
+                files.put(batch.errorFileId, errors);
+            }
+            batch.completed = output.size();
+            batch.failed = errors.size();
+            batch.status = expire ? "expired" : "completed";
+            batch.completedAt = System.currentTimeMillis() / 1000;
+        }
+    }
+
+    private String customIdOf(String inputLine) {
+        try {
+            return mapper.readTree(inputLine).get("custom_id").asText();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String errorLine(String customId) {
+        ObjectNode line = mapper.createObjectNode();
+        line.put("id", "batch_req_" + customId);
+        line.put("custom_id", customId);
+        ObjectNode response = line.putObject("response");
+        response.put("status_code", 400);
+        response.put("request_id", "req_" + customId);
+        ObjectNode error = response.putObject("body").putObject("error");
+        error.put("message", "Invalid request " + customId);
+        error.put("type", "invalid_request_error");
+        error.put("code", "invalid_value");
+        line.putNull("error");
+        return line.toString();
+    }
+
+    private String outputLine(String customId) {
+        try {
+            ObjectNode line = mapper.createObjectNode();
+            line.put("id", "batch_req_" + customId);
+            line.put("custom_id", customId);
+            ObjectNode response = line.putObject("response");
+            response.put("status_code", 200);
+            response.put("request_id", "req_" + customId);
+            ObjectNode body = response.putObject("body");
+            body.put("id", "chatcmpl-" + customId);
+            body.put("object", "chat.completion");
+            ObjectNode message = body.putArray("choices").addObject().putObject("message");
+            message.put("role", "assistant");
+            message.put("content", "echo " + customId);
+            line.putNull("error");
+            return mapper.writeValueAsString(line);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MockResponse json(Object body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body.toString());
+    }
+
+    private static MockResponse notFound() {
+        return new MockResponse().setResponseCode(404).setBody("{\"error\": {\"message\": \"not found\"}}");
+    }
+
+    static final class FakeBatch {
+        String id;
+        String inputFileId;
+        String outputFileId;
+        String errorFileId;
+        String endpoint;
+        JsonNode metadata;
+        String status = "in_progress";
+        long createdAt;
+        long completedAt;
+        int total;
+        int completed;
+        int failed;
+        int polls;
+
+        synchronized ObjectNode toJson(ObjectMapper mapper) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("id", id);
+            node.put("object", "batch");
+            node.put("endpoint", endpoint);
+            node.put("input_file_id", inputFileId);
+            node.put("completion_window", "24h");
+            node.put("status", status);
+            node.put("output_file_id", outputFileId);
+            node.put("error_file_id", errorFileId);
+            node.put("created_at", createdAt);
+            node.put("in_progress_at", createdAt);
+            node.put("expires_at", createdAt + 86_400);
+            if (completedAt > 0) {
+                node.put("completed_at", completedAt);
+            }
+            ObjectNode counts = node.putObject("request_counts");
+            counts.put("total", total);
+            counts.put("completed", completed);
+            counts.put("failed", failed);
+            if (metadata != null) {
+                node.set("metadata", metadata);
+            }
+            return node;
+        }
+    }
+}
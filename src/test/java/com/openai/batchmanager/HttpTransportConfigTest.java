@@ -0,0 +1,59 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.HttpTransportConfig;
+import com.openai.batchmanager.client.OpenAIClient;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpTransportConfigTest {
+
+    @Test
+    void testClientsFromSameConfigShareTransport() {
+        HttpTransportConfig transport = new HttpTransportConfig()
+                .setBaseUrl("http://localhost:9999/v1")
+                .setMaxRequests(128)
+                .setMaxRequestsPerHost(64)
+                .setPreferHttp2(false);
+
+        OpenAIClient first = new OpenAIClient("tenant-a", transport);
+        OpenAIClient second = new OpenAIClient("tenant-b", transport);
+
+        assertSame(first.getHttpClient(), second.getHttpClient());
+        assertSame(first.getHttpClient().connectionPool(), second.getHttpClient().connectionPool());
+        assertEquals("http://localhost:9999/v1/", first.getBaseUrl());
+
+        OkHttpClient http = first.getHttpClient();
+        assertEquals(128, http.dispatcher().getMaxRequests());
+        assertEquals(64, http.dispatcher().getMaxRequestsPerHost());
+        assertEquals(List.of(Protocol.HTTP_1_1), http.protocols());
+    }
+
+    @Test
+    void testDefaultClientsShareTransport() {
+        assertSame(new OpenAIClient("a").getHttpClient(), new OpenAIClient("b").getHttpClient());
+    }
+
+    @Test
+    void testSettingsFrozenOnceShared() {
+        HttpTransportConfig transport = new HttpTransportConfig().setReadTimeout(Duration.ofSeconds(10));
+        assertEquals(10_000, transport.sharedHttpClient().readTimeoutMillis());
+        assertThrows(IllegalStateException.class, () -> transport.setMaxIdleConnections(1));
+    }
+
+    @Test
+    void testInjectedClientIsUsedAsIs() throws Exception {
+        try (FakeOpenAIServer server = new FakeOpenAIServer()) {
+            OkHttpClient shared = new OkHttpClient();
+            OpenAIClient client = new OpenAIClient("test-key", shared, server.baseUrl());
+
+            assertSame(shared, client.getHttpClient());
+            assertTrue(client.listBatches(10, null).contains("\"object\":\"list\""));
+        }
+    }
+}
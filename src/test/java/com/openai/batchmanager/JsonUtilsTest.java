@@ -0,0 +1,57 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.model.BatchResult;
+import com.openai.batchmanager.util.JsonUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonUtilsTest {
+
+    @Test
+    void testParseSuccessfulResultLine() throws Exception {
+        String line = "{\"id\": \"batch_req_1\", \"custom_id\": \"req-001\", " +
+                "\"response\": {\"status_code\": 200, \"request_id\": \"abc\", " +
+                "\"body\": {\"choices\": [{\"message\": {\"content\": \"Hi\"}}]}}, \"error\": null}";
+
+        BatchResult result = JsonUtils.parseBatchResultLine(line);
+
+        assertEquals("req-001", result.getCustomId());
+        assertEquals(200, result.getStatusCode());
+        assertEquals("{\"choices\":[{\"message\":{\"content\":\"Hi\"}}]}", result.getResponseJson());
+        assertTrue(result.isSuccess());
+    }
+
+    @Test
+    void testParseErrorResultLine() throws Exception {
+        String line = "{\"id\": \"batch_req_2\", \"custom_id\": \"req-002\", \"response\": null, " +
+                "\"error\": {\"code\": \"batch_expired\", \"message\": \"This request could not be executed\"}}";
+
+        BatchResult result = JsonUtils.parseBatchResultLine(line);
+
+        assertEquals("req-002", result.getCustomId());
+        assertNull(result.getResponseJson());
+        assertEquals("batch_expired", result.getErrorCode());
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    void testParseFailedResponseLine() throws Exception {
+        String line = "{\"id\": \"batch_req_3\", \"custom_id\": \"req-003\", " +
+                "\"response\": {\"status_code\": 400, \"request_id\": \"def\", " +
+                "\"body\": {\"error\": {\"message\": \"Invalid model\", \"type\": \"invalid_request_error\", \"code\": \"model_not_found\"}}}, " +
+                "\"error\": null}";
+
+        BatchResult result = JsonUtils.parseBatchResultLine(line);
+
+        assertEquals(400, result.getStatusCode());
+        assertEquals("model_not_found", result.getErrorCode());
+        assertEquals("Invalid model", result.getErrorMessage());
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    void testParseRejectsNonObjectLine() {
+        assertThrows(java.io.IOException.class, () -> JsonUtils.parseBatchResultLine("[1, 2, 3]"));
+    }
+}
@@ -0,0 +1,106 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.JsonlRequestBody;
+import com.openai.batchmanager.util.JsonUtils;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonlRequestBodyTest {
+
+    private static final String ENDPOINT = "/v1/chat/completions";
+    private static final String FILLER = "x".repeat(2000);
+
+    @Test
+    void testMatchesInMemoryJsonl() throws Exception {
+        Map<String, String> requests = new LinkedHashMap<>();
+        requests.put("req-001", "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Hello\"}]}");
+        requests.put("req-002", "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"How are you?\"}]}");
+
+        JsonlRequestBody body = new JsonlRequestBody(requests.entrySet(), ENDPOINT);
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+
+        String expected = JsonUtils.createBatchInputJsonlWithCustomIds(requests, ENDPOINT);
+        assertEquals(expected, buffer.readUtf8());
+        assertEquals(expected.getBytes(java.nio.charset.StandardCharsets.UTF_8).length, body.contentLength());
+    }
+
+    @Test
+    void testRejectsEmptyEntries() {
+        assertThrows(IllegalArgumentException.class, () -> new JsonlRequestBody(Map.<String, String>of().entrySet(), ENDPOINT));
+    }
+
+    @Test
+    void testPeakHeapIndependentOfBatchSize() throws Exception {
+        long smallPeak = peakHeapWhileStreaming(5_000);
+        long largePeak = peakHeapWhileStreaming(50_000);
+
+        // 50k lines of ~2 KB is ~100 MB of JSONL; a buffered approach would need several copies of it
+        long growth = largePeak - smallPeak;
+        assertTrue(growth < 16L * 1024 * 1024,
+                "Peak heap grew by " + (growth / (1024 * 1024)) + " MB between 5k and 50k requests");
+    }
+
+    private long peakHeapWhileStreaming(int count) throws Exception {
+        GeneratedRequests requests = new GeneratedRequests(count, count / 10);
+        JsonlRequestBody body = new JsonlRequestBody(requests, ENDPOINT);
+
+        try (BufferedSink sink = Okio.buffer(Okio.blackhole())) {
+            body.writeTo(sink);
+        }
+        return requests.peakUsedHeap;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Produces request lines on demand and samples the live heap while they are being written
+    private static final class GeneratedRequests implements Iterable<Map.Entry<String, String>> {
+        private final int count;
+        private final int sampleEvery;
+        private long peakUsedHeap;
+
+        GeneratedRequests(int count, int sampleEvery) {
+            this.count = count;
+            this.sampleEvery = sampleEvery;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public Map.Entry<String, String> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    if (next % sampleEvery == 0) {
+                        peakUsedHeap = Math.max(peakUsedHeap, usedHeapAfterGc());
+                    }
+                    String customId = "req-" + next++;
+                    String json = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"" +
+                            customId + " " + FILLER + "\"}]}";
+                    return Map.entry(customId, json);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+// A fake server and a fresh database per test, for tests that drive a BatchManager end to end
+abstract class ManagerTestBase {
+
+    @TempDir
+    Path tempDir;
+
+    FakeOpenAIServer server;
+    DatabaseManager db;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("manager.db").toString());
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.close();
+    }
+
+    // Polls every 20ms, so batches finish as fast as the fake server lets them
+    static BatchManagerOptions options() {
+        return new BatchManagerOptions().setPollInterval(Duration.ofMillis(20));
+    }
+
+    BatchManager newManager(BatchManagerOptions options) {
+        return new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db, Executors.newCachedThreadPool(),
+                options);
+    }
+}
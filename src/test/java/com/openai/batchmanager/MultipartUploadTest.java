@@ -0,0 +1,181 @@
+package com.openai.batchmanager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.client.UploadOptions;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.util.JsonUtils;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartUploadTest {
+
+    private static final String ENDPOINT = "/v1/chat/completions";
+
+    private MockWebServer server;
+    private FakeUploadsApi api;
+    private OpenAIClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = new FakeUploadsApi();
+        server = new MockWebServer();
+        server.setDispatcher(api);
+        server.start();
+        client = new OpenAIClient("test-key", server.url("/v1/").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    void testLargeFileUploadsInOrderedPartsWithRetry() throws Exception {
+        client.setUploadOptions(new UploadOptions()
+                .setMultipartThreshold(1024)
+                .setPartSize(1024)
+                .setMaxConcurrentParts(3)
+                .setPartRetryDelay(Duration.ZERO));
+        api.failNextPart.set(1);
+
+        Map<String, String> requests = requests(200);
+        Batch batch = client.submitBatch(requests, ENDPOINT);
+
+        assertEquals("batch_123", batch.getOpenaiBatchId());
+        assertEquals(0, api.fileUploads.get(), "Large files should not go through /files");
+        assertTrue(api.completedPartIds.size() > 3, "Expected the file to be cut into several parts");
+
+        ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+        for (String partId : api.completedPartIds) {
+            assembled.write(api.partData.get(partId));
+        }
+        String expected = JsonUtils.createBatchInputJsonlWithCustomIds(requests, ENDPOINT);
+        assertEquals(expected, assembled.toString(StandardCharsets.UTF_8));
+        assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, api.declaredBytes);
+        assertEquals(1, api.failedParts.get(), "The failed part should have been retried");
+    }
+
+    @Test
+    void testSmallFileUsesSingleUpload() throws Exception {
+        client.setUploadOptions(new UploadOptions().setMultipartThreshold(1024 * 1024));
+
+        Batch batch = client.submitBatch(requests(5), ENDPOINT);
+
+        assertEquals("batch_123", batch.getOpenaiBatchId());
+        assertEquals(1, api.fileUploads.get());
+        assertTrue(api.completedPartIds.isEmpty());
+    }
+
+    @Test
+    void testAsyncUploadSizesAndSplitsOnGivenExecutor() throws Exception {
+        client.setUploadOptions(new UploadOptions()
+                .setMultipartThreshold(1024)
+                .setPartSize(1024)
+                .setPartRetryDelay(Duration.ZERO));
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        AtomicInteger tasks = new AtomicInteger();
+        try {
+            Batch batch = client.submitBatchAsync(requests(200).entrySet(), ENDPOINT, null, task -> {
+                tasks.incrementAndGet();
+                pool.execute(task);
+            }).get(30, TimeUnit.SECONDS);
+
+            assertEquals("batch_123", batch.getOpenaiBatchId());
+            assertEquals(0, api.fileUploads.get());
+            assertTrue(api.completedPartIds.size() > 3);
+            assertEquals(1, tasks.get(), "Sizing and the parts flow should run as one task on the given executor");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Map<String, String> requests(int count) {
+        Map<String, String> requests = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            requests.put("req-" + i, "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Question " + i + "\"}]}");
+        }
+        return requests;
+    }
+
+    private static final class FakeUploadsApi extends Dispatcher {
+        private final AtomicInteger fileUploads = new AtomicInteger();
+        private final AtomicInteger partCounter = new AtomicInteger();
+        private final AtomicInteger failNextPart = new AtomicInteger();
+        private final AtomicInteger failedParts = new AtomicInteger();
+        private final Map<String, byte[]> partData = new ConcurrentHashMap<>();
+        private final List<String> completedPartIds = new CopyOnWriteArrayList<>();
+        private volatile long declaredBytes;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String path = request.getPath();
+            try {
+                if (path.equals("/v1/files")) {
+                    fileUploads.incrementAndGet();
+                    return json("{\"id\": \"file-single\"}");
+                }
+                if (path.equals("/v1/uploads")) {
+                    JsonNode body = JsonUtils.getMapper().readTree(request.getBody().readUtf8());
+                    declaredBytes = body.get("bytes").asLong();
+                    return json("{\"id\": \"upload_1\", \"status\": \"pending\"}");
+                }
+                if (path.equals("/v1/uploads/upload_1/parts")) {
+                    if (failNextPart.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                        failedParts.incrementAndGet();
+                        return new MockResponse().setResponseCode(500).setBody("{\"error\": \"boom\"}");
+                    }
+                    String partId = "part_" + partCounter.incrementAndGet();
+                    partData.put(partId, extractPart(request));
+                    return json("{\"id\": \"" + partId + "\"}");
+                }
+                if (path.equals("/v1/uploads/upload_1/complete")) {
+                    JsonNode body = JsonUtils.getMapper().readTree(request.getBody().readUtf8());
+                    body.get("part_ids").forEach(id -> completedPartIds.add(id.asText()));
+                    return json("{\"id\": \"upload_1\", \"status\": \"completed\", \"file\": {\"id\": \"file-multi\"}}");
+                }
+                if (path.equals("/v1/batches")) {
+                    return json("{\"id\": \"batch_123\", \"status\": \"validating\", \"endpoint\": \"" + ENDPOINT + "\"}");
+                }
+            } catch (Exception e) {
+                return new MockResponse().setResponseCode(500).setBody(e.toString());
+            }
+            return new MockResponse().setResponseCode(404);
+        }
+
+        private static MockResponse json(String body) {
+            return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+        }
+
+        // Pulls the raw bytes of the single form-data part out of the multipart body
+        private static byte[] extractPart(RecordedRequest request) {
+            String contentType = request.getHeader("Content-Type");
+            String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+            byte[] body = request.getBody().readByteArray();
+            String text = new String(body, StandardCharsets.ISO_8859_1);
+            int start = text.indexOf("\r\n\r\n") + 4;
+            int end = text.indexOf("\r\n--" + boundary + "--");
+            return text.substring(start, end).getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchOutcome;
+import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.service.BatchService;
+import com.openai.batchmanager.util.RequestRoute;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitioningTest {
+
+    private static final String CHAT = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+    private static final String CHAT_MINI = "{\"model\": \"gpt-4.1-mini\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+    private static final String EMBEDDING = "{\"model\": \"text-embedding-3-small\", \"input\": [\"a\", \"b\"]}";
+    private static final String RESPONSE = "{\"model\": \"gpt-4.1\", \"input\": \"Q\", \"max_output_tokens\": 50}";
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("partitioning.db").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testRouteScan() {
+        assertEquals(new RequestRoute(RequestRoute.CHAT_COMPLETIONS, "gpt-4.1"), RequestRoute.scan(CHAT));
+        assertEquals(new RequestRoute(RequestRoute.EMBEDDINGS, "text-embedding-3-small"), RequestRoute.scan(EMBEDDING));
+        assertEquals(new RequestRoute(RequestRoute.RESPONSES, "gpt-4.1"), RequestRoute.scan(RESPONSE));
+        assertEquals(RequestRoute.MODERATIONS,
+                RequestRoute.scan("{\"model\": \"omni-moderation-latest\", \"input\": \"text\"}").getEndpoint());
+        assertEquals(RequestRoute.COMPLETIONS,
+                RequestRoute.scan("{\"model\": \"gpt-3.5-turbo-instruct\", \"prompt\": \"Q\"}").getEndpoint());
+
+        // Only top-level fields count, whatever is nested in the values
+        RequestRoute nested = RequestRoute.scan(
+                "{\"messages\": [{\"role\": \"user\", \"content\": {\"model\": \"x\", \"input\": 1}}], \"model\": \"gpt-4o\"}");
+        assertEquals(new RequestRoute(RequestRoute.CHAT_COMPLETIONS, "gpt-4o"), nested);
+
+        assertThrows(IllegalArgumentException.class, () -> RequestRoute.scan("{\"messages\": []}"));
+        assertThrows(IllegalArgumentException.class, () -> RequestRoute.scan("{\"model\": \"gpt-4.1\", "));
+        assertThrows(IllegalArgumentException.class, () -> RequestRoute.scan("[1, 2]"));
+    }
+
+    @Test
+    void testMixedSubmissionIsPartitionedByEndpointAndModel() throws Exception {
+        Map<String, String> requests = new LinkedHashMap<>();
+        requests.put("chat-1", CHAT);
+        requests.put("embed-1", EMBEDDING);
+        requests.put("chat-2", CHAT);
+        requests.put("mini-1", CHAT_MINI);
+        requests.put("resp-1", RESPONSE);
+        requests.put("embed-2", EMBEDDING);
+
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(20)))) {
+
+            BatchOutcome outcome = manager.submitForOutcomeAsync(requests, null, null).get(30, TimeUnit.SECONDS);
+            assertEquals(requests.keySet(), outcome.getResponses().keySet());
+            assertFalse(outcome.hasFailures());
+
+            Map<String, String> endpointByCustomId = new HashMap<>();
+            for (String openaiId : server.batchOrder) {
+                FakeOpenAIServer.FakeBatch fake = server.batches.get(openaiId);
+                Batch batch = manager.getBatch(openaiId);
+                assertEquals(fake.endpoint, batch.getEndpoint());
+                for (BatchRequest request : db.getBatchRequests(batch.getId())) {
+                    assertEquals(batch.getModel(), RequestRoute.scan(request.getRequestData()).getModel());
+                    endpointByCustomId.put(request.getCustomId(), fake.endpoint);
+                }
+            }
+            assertEquals(4, server.batchOrder.size());
+            assertEquals(RequestRoute.CHAT_COMPLETIONS, endpointByCustomId.get("mini-1"));
+            assertEquals(RequestRoute.EMBEDDINGS, endpointByCustomId.get("embed-2"));
+            assertEquals(RequestRoute.RESPONSES, endpointByCustomId.get("resp-1"));
+        }
+    }
+
+    @Test
+    void testServiceRejectsMixedBatch() {
+        BatchService service = new BatchService(db, new OpenAIClient("test-key", server.baseUrl()));
+        Batch batch = new Batch("mixed");
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> service.submitBatchAsync(batch,
+                List.of(new BatchRequest("chat-1", CHAT), new BatchRequest("embed-1", EMBEDDING)), null)
+                .get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+        assertEquals(0, server.fileUploads.get());
+    }
+}
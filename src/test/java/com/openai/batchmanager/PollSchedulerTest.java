@@ -0,0 +1,194 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.AdaptivePollPolicy;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.manager.PollProgress;
+import com.openai.batchmanager.manager.PollScheduler;
+import com.openai.batchmanager.manager.PollStats;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchStatus;
+import com.openai.batchmanager.model.RequestCounts;
+import com.openai.batchmanager.service.BatchService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("poll.db").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testPollerThreadCountIsIndependentOfBatchCount() throws Exception {
+        server.pollsUntilComplete = 4;
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newFixedThreadPool(2),
+                new BatchManagerOptions()
+                        .setPollInterval(Duration.ofMillis(30))
+                        .setPollThreads(2)
+                        .setPollJitter(0.5)
+                        .setBulkPollThreshold(Integer.MAX_VALUE))) {
+
+            List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 150; i++) {
+                futures.add(manager.submitAsync(Map.of("req-" + i,
+                        "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q" + i + "\"}]}")));
+            }
+
+            long maxPollers = 0;
+            CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+            while (!all.isDone()) {
+                maxPollers = Math.max(maxPollers, pollerThreads());
+                Thread.sleep(5);
+            }
+            all.get(60, TimeUnit.SECONDS);
+
+            assertTrue(maxPollers <= 2, "poller threads: " + maxPollers);
+            assertEquals(0, manager.getPollScheduler().getActiveCount());
+            assertTrue(server.batchGets.get() >= 150 * 4);
+
+            PollStats stats = manager.getPollScheduler().getStats();
+            assertEquals(150, stats.getBatchesFinished());
+            assertEquals(server.batchGets.get(), stats.getPolls());
+            assertTrue(stats.getPollsPerBatch() >= 4);
+        }
+    }
+
+    @Test
+    void testManyInFlightBatchesAreRefreshedFromListPages() throws Exception {
+        server.pollsUntilComplete = 3;
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newFixedThreadPool(2),
+                new BatchManagerOptions()
+                        .setPollInterval(Duration.ofMillis(50))
+                        .setBulkPollThreshold(20))) {
+
+            List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 120; i++) {
+                futures.add(manager.submitAsync(Map.of("req-" + i,
+                        "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q" + i + "\"}]}")));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+
+            PollStats stats = manager.getPollScheduler().getStats();
+            assertTrue(stats.getBulkRefreshes() > 0);
+            assertTrue(stats.getBulkRefreshedBatches() > 0);
+            // Individual GETs only cover the first polls before the threshold was reached and the stragglers
+            assertTrue(server.batchGets.get() + server.batchLists.get() < 120 * 3,
+                    "gets=" + server.batchGets.get() + " lists=" + server.batchLists.get());
+            assertEquals(0, manager.getPollScheduler().getActiveCount());
+        }
+    }
+
+    @Test
+    void testAdaptivePolicyFollowsStateAndProgress() {
+        AdaptivePollPolicy policy = new AdaptivePollPolicy()
+                .setMinDelay(Duration.ofSeconds(2))
+                .setValidatingDelay(Duration.ofSeconds(5))
+                .setNoProgressDelay(Duration.ofSeconds(15));
+        Batch batch = new Batch("b1");
+        PollProgress progress = new PollProgress();
+
+        batch.setStatus(BatchStatus.VALIDATING);
+        assertEquals(Duration.ofSeconds(5), policy.nextPollDelay(batch, progress));
+
+        // 100 requests in 10 s leaves 90 s for the other 900, so check back in 45 s
+        Instant start = Instant.now();
+        batch.setStatus(BatchStatus.IN_PROGRESS);
+        batch.setRequestCounts(new RequestCounts(1000, 100, 0));
+        progress.record(0, start);
+        progress.record(100, start.plusSeconds(10));
+        assertEquals(Duration.ofSeconds(45), policy.nextPollDelay(batch, progress));
+
+        PollProgress stalled = new PollProgress();
+        stalled.record(0, start);
+        stalled.record(0, start.plusSeconds(15));
+        assertEquals(Duration.ofSeconds(30), policy.nextPollDelay(batch, stalled));
+
+        batch.setExpiresAt(Instant.now().plusSeconds(20));
+        assertTrue(policy.nextPollDelay(batch, stalled).compareTo(Duration.ofSeconds(20)) <= 0);
+
+        batch.setStatus(BatchStatus.FINALIZING);
+        assertEquals(Duration.ofSeconds(2), policy.nextPollDelay(batch, progress));
+    }
+
+    @Test
+    void testAdaptivePolicyBacksOffOncePastExpiry() {
+        AdaptivePollPolicy policy = new AdaptivePollPolicy()
+                .setMinDelay(Duration.ofSeconds(2))
+                .setValidatingDelay(Duration.ofSeconds(5))
+                .setNoProgressDelay(Duration.ofSeconds(15));
+        Batch batch = new Batch("b1");
+        batch.setExpiresAt(Instant.now().minusSeconds(60));
+
+        batch.setStatus(BatchStatus.VALIDATING);
+        assertEquals(Duration.ofSeconds(15), policy.nextPollDelay(batch, new PollProgress()));
+
+        batch.setStatus(BatchStatus.FINALIZING);
+        assertEquals(Duration.ofSeconds(15), policy.nextPollDelay(batch, new PollProgress()));
+
+        // Still backing off the way a stalled batch does, rather than being capped at the expiry
+        Instant start = Instant.now();
+        PollProgress stalled = new PollProgress();
+        stalled.record(0, start);
+        stalled.record(0, start.plusSeconds(15));
+        batch.setStatus(BatchStatus.IN_PROGRESS);
+        batch.setRequestCounts(new RequestCounts(1000, 0, 0));
+        assertEquals(Duration.ofSeconds(30), policy.nextPollDelay(batch, stalled));
+    }
+
+    @Test
+    void testTrackingTheSameBatchTwiceSharesOnePollLoop() throws Exception {
+        server.pollsUntilComplete = 2;
+        OpenAIClient client = new OpenAIClient("test-key", server.baseUrl());
+        Batch batch = client.submitBatch(Map.of("req-1", "{\"model\": \"gpt-4.1\", \"messages\": []}"), "/v1/chat/completions");
+        batch.setStatus(BatchStatus.IN_PROGRESS);
+        db.insertBatch(batch);
+
+        try (PollScheduler scheduler = new PollScheduler(new BatchService(db, client), Duration.ofMillis(10), 1, 0)) {
+            CompletableFuture<Batch> first = scheduler.track(batch);
+            assertSame(first, scheduler.track(batch));
+
+            Batch polled = first.get(10, TimeUnit.SECONDS);
+            assertEquals(BatchStatus.COMPLETED, polled.getStatus());
+            assertNotNull(polled.getOutputFileId());
+            assertEquals(2, server.batchGets.get());
+        }
+    }
+
+    private static long pollerThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith("batch-poller-"))
+                .count();
+    }
+}
@@ -0,0 +1,123 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.RequestFailedException;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestAccumulatorTest extends ManagerTestBase {
+
+    private static final String REQUEST = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+
+    @Test
+    void testFlushesOnSizeAndAnswersEachRequest() throws Exception {
+        server.failingCustomIds.add("req-2");
+        try (BatchManager manager = newManager(options()
+                .setAccumulatorMaxRequests(3).setAccumulatorLinger(Duration.ofHours(1)))) {
+
+            CompletableFuture<String> first = manager.enqueue("req-1", REQUEST);
+            CompletableFuture<String> failing = manager.enqueue("req-2", REQUEST);
+            assertEquals(2, manager.getRequestAccumulator().getBufferedCount());
+            ExecutionException duplicate = assertThrows(ExecutionException.class,
+                    () -> manager.enqueue("req-1", REQUEST).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, duplicate.getCause());
+            CompletableFuture<String> third = manager.enqueue("req-3", REQUEST);
+
+            assertTrue(first.get(30, TimeUnit.SECONDS).contains("req-1"));
+            assertTrue(third.get(30, TimeUnit.SECONDS).contains("req-3"));
+            ExecutionException failed = assertThrows(ExecutionException.class, () -> failing.get(30, TimeUnit.SECONDS));
+            RequestFailedException cause = assertInstanceOf(RequestFailedException.class, failed.getCause());
+            assertEquals("req-2", cause.getRequest().getCustomId());
+            assertNotNull(cause.getErrorCode());
+
+            assertEquals(1, server.batchCreates.get());
+            assertEquals(0, manager.getRequestAccumulator().getUnansweredCount());
+            assertTrue(db.recoverBufferedRequests().isEmpty());
+        }
+    }
+
+    @Test
+    void testFlushesAfterLinger() throws Exception {
+        try (BatchManager manager = newManager(options().setAccumulatorLinger(Duration.ofMillis(100)))) {
+            CompletableFuture<String> first = manager.enqueue("req-1", REQUEST);
+            CompletableFuture<String> second = manager.enqueue("req-2", REQUEST);
+            first.get(30, TimeUnit.SECONDS);
+            second.get(30, TimeUnit.SECONDS);
+            assertEquals(1, server.batchCreates.get());
+        }
+    }
+
+    @Test
+    void testBufferedRequestsSurviveRestart() throws Exception {
+        CompletableFuture<String> lost;
+        try (BatchManager manager = newManager(options().setAccumulatorLinger(Duration.ofHours(1)))) {
+            lost = manager.enqueue("req-1", REQUEST);
+            manager.enqueue("req-2", REQUEST);
+        }
+        assertThrows(CancellationException.class, () -> lost.get(5, TimeUnit.SECONDS));
+        assertEquals(0, server.batchCreates.get());
+
+        try (BatchManager manager = newManager(options().setAccumulatorLinger(Duration.ofMillis(50)))) {
+            // Nobody waits on recovered requests, so they do not count as unanswered
+            assertEquals(0, manager.getRequestAccumulator().getUnansweredCount());
+            awaitCompleted(1);
+            assertEquals(1, server.batchCreates.get());
+            assertEquals(2, db.getBatchRequests(db.getBatchByOpenaiId(server.batchOrder.get(0)).getId()).size());
+            assertTrue(db.recoverBufferedRequests().isEmpty());
+        }
+    }
+
+    @Test
+    void testRecoveryKeepsCustomIdsEarlierBatchesUsed() throws Exception {
+        try (BatchManager manager = newManager(options()
+                .setAccumulatorMaxRequests(2).setAccumulatorLinger(Duration.ofHours(1)))) {
+            CompletableFuture<String> first = manager.enqueue("req-1", REQUEST);
+            manager.enqueue("req-2", REQUEST);
+            first.get(30, TimeUnit.SECONDS);
+            // Same ID, never sent before the restart
+            manager.enqueue("req-1", REQUEST);
+        }
+        assertEquals(1, server.batchCreates.get());
+
+        try (BatchManager manager = newManager(options().setAccumulatorLinger(Duration.ofMillis(50)))) {
+            // The recovered request holds no future, so the ID can be enqueued again straight away
+            assertTrue(manager.enqueue("req-1", REQUEST).get(30, TimeUnit.SECONDS).contains("req-1"));
+            awaitCompleted(3);
+            assertEquals(3, server.batchCreates.get());
+            assertTrue(db.recoverBufferedRequests().isEmpty());
+        }
+    }
+
+    private void awaitCompleted(int batches) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!allCompleted(batches)) {
+            assertTrue(System.currentTimeMillis() < deadline, "requests were never answered");
+            Thread.sleep(20);
+        }
+    }
+
+    private boolean allCompleted(int batches) throws Exception {
+        if (server.batchOrder.size() < batches) {
+            return false;
+        }
+        for (String openaiBatchId : List.copyOf(server.batchOrder)) {
+            Batch batch = db.getBatchByOpenaiId(openaiBatchId);
+            List<BatchRequest> requests = batch == null ? List.of() : db.getBatchRequests(batch.getId());
+            if (requests.isEmpty()
+                    || !requests.stream().allMatch(r -> r.getStatus() == BatchRequest.RequestStatus.COMPLETED)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
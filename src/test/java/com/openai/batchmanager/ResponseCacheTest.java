@@ -0,0 +1,124 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.service.ResponseCache;
+import com.openai.batchmanager.util.RequestHash;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest extends ManagerTestBase {
+
+    private static final String Q1 = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q1\"}]}";
+    private static final String Q1_REORDERED = "{ \"messages\":[{\"content\":\"Q1\",\"role\":\"user\"}],\"model\":\"gpt-4.1\" }";
+    private static final String Q2 = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q2\"}]}";
+    private static final String Q3 = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q3\"}]}";
+
+    @Test
+    void testHashIgnoresKeyOrderAndWhitespace() {
+        assertEquals(RequestHash.of("/v1/chat/completions", Q1), RequestHash.of("/v1/chat/completions", Q1_REORDERED));
+        assertNotEquals(RequestHash.of("/v1/chat/completions", Q1), RequestHash.of("/v1/chat/completions", Q2));
+        assertNotEquals(RequestHash.of("/v1/chat/completions", Q1), RequestHash.of("/v1/responses", Q1));
+    }
+
+    @Test
+    void testOnlyMissesAreSent() throws Exception {
+        try (BatchManager manager = newManager(options().setResponseCacheTtl(Duration.ofHours(1)))) {
+            Map<String, String> first = manager.submitAsync(Map.of("a", Q1, "b", Q2)).get(30, TimeUnit.SECONDS);
+            assertEquals(1, server.batchCreates.get());
+
+            Map<String, String> requests = new LinkedHashMap<>();
+            requests.put("c", Q1_REORDERED);
+            requests.put("d", Q3);
+            Map<String, String> second = manager.submitAsync(requests).get(30, TimeUnit.SECONDS);
+            assertEquals(first.get("a"), second.get("c"));
+            assertNotNull(second.get("d"));
+            assertEquals(2, server.batchCreates.get());
+            assertEquals(1, server.batches.get(server.batchOrder.get(1)).total);
+
+            // Everything cached, so no batch at all
+            Map<String, String> third = manager.submitAsync(Map.of("e", Q2)).get(5, TimeUnit.SECONDS);
+            assertEquals(first.get("b"), third.get("e"));
+            assertEquals(2, server.batchCreates.get());
+
+            ResponseCache cache = manager.getResponseCache();
+            assertEquals(2, cache.getHits());
+            assertEquals(3, cache.getMisses());
+            assertEquals(0.4, cache.getHitRate(), 1e-9);
+            assertTrue(cache.getSizeBytes() > 0);
+        }
+    }
+
+    @Test
+    void testLargeLookupIsAnsweredInChunks() throws Exception {
+        try (BatchManager manager = newManager(options().setResponseCacheTtl(Duration.ofHours(1)))) {
+            // More hashes than one IN (...) list takes
+            Map<String, String> requests = new LinkedHashMap<>();
+            for (int i = 0; i < 1_200; i++) {
+                requests.put("req-" + i, "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q" + i + "\"}]}");
+            }
+            Map<String, String> first = manager.submitAsync(requests).get(30, TimeUnit.SECONDS);
+            int created = server.batchCreates.get();
+
+            assertEquals(first, manager.submitAsync(requests).get(30, TimeUnit.SECONDS));
+            assertEquals(created, server.batchCreates.get());
+            assertEquals(1_200, manager.getResponseCache().getHits());
+        }
+    }
+
+    @Test
+    void testUnreadableCacheCountsAsMisses() throws Exception {
+        ResponseCache cache = new ResponseCache(db, Duration.ofHours(1), Long.MAX_VALUE);
+        try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + db.getDatabasePath());
+             Statement stmt = other.createStatement()) {
+            stmt.executeUpdate("DROP TABLE response_cache");
+        }
+        BatchRequest request = new BatchRequest("a", Q1);
+        request.setRequestHash(RequestHash.of("/v1/chat/completions", Q1));
+
+        assertTrue(cache.lookup(List.of(request, new BatchRequest("b", Q2))).isEmpty());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getLookupErrors());
+    }
+
+    @Test
+    void testExpiredAndEvictedEntriesAreSentAgain() throws Exception {
+        try (BatchManager manager = newManager(options().setResponseCacheTtl(Duration.ofMillis(1)))) {
+            manager.submitAsync(Map.of("a", Q1)).get(30, TimeUnit.SECONDS);
+            Thread.sleep(10);
+            manager.submitAsync(Map.of("b", Q1)).get(30, TimeUnit.SECONDS);
+            assertEquals(2, server.batchCreates.get());
+            assertEquals(0, manager.getResponseCache().getHits());
+        }
+
+        try (BatchManager manager = newManager(options()
+                .setResponseCacheTtl(Duration.ofHours(1)).setResponseCacheMaxBytes(1))) {
+            manager.submitAsync(Map.of("c", Q2)).get(30, TimeUnit.SECONDS);
+            ResponseCache cache = manager.getResponseCache();
+            assertTrue(cache.getEvictions() > 0);
+            assertEquals(0, cache.getSizeBytes());
+            manager.submitAsync(Map.of("d", Q2)).get(30, TimeUnit.SECONDS);
+            assertEquals(4, server.batchCreates.get());
+        }
+    }
+
+    @Test
+    void testDisabledByDefault() throws Exception {
+        try (BatchManager manager = newManager(options())) {
+            assertNull(manager.getResponseCache());
+            manager.submitAsync(Map.of("a", Q1)).get(30, TimeUnit.SECONDS);
+            manager.submitAsync(Map.of("b", Q1)).get(30, TimeUnit.SECONDS);
+            assertEquals(2, server.batchCreates.get());
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.HttpTransportConfig;
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.model.BatchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultStreamTest {
+
+    private static final String REQUEST = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("stream.db").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testStreamsEveryShardOneResultAtATime() throws Exception {
+        server.failingCustomIds.add("req-3");
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(20)).setMaxRequestsPerBatch(2))) {
+
+            Map<String, String> requests = new LinkedHashMap<>();
+            for (int i = 0; i < 5; i++) {
+                requests.put("req-" + i, REQUEST);
+            }
+            Flow.Publisher<BatchResult> stream = manager.submitForStream(requests, null);
+            Collector collector = new Collector(1);
+            stream.subscribe(collector);
+            assertTrue(collector.done.await(30, TimeUnit.SECONDS));
+            assertNull(collector.error.get());
+
+            Set<String> seen = new HashSet<>();
+            for (BatchResult result : collector.results) {
+                assertTrue(seen.add(result.getCustomId()));
+                assertEquals(!result.getCustomId().equals("req-3"), result.isSuccess());
+            }
+            assertEquals(requests.keySet(), seen);
+
+            // Everything handed over was also written back
+            for (Batch shard : db.getBatchesBySubmission(manager.getBatch(server.batchOrder.get(0)).getSubmissionId())) {
+                for (BatchRequest request : db.getBatchRequests(shard.getId())) {
+                    assertEquals(request.getCustomId().equals("req-3") ? BatchRequest.RequestStatus.FAILED
+                            : BatchRequest.RequestStatus.COMPLETED, request.getStatus());
+                }
+            }
+
+            Collector second = new Collector(1);
+            stream.subscribe(second);
+            assertInstanceOf(IllegalStateException.class, second.error.get());
+        }
+    }
+
+    @Test
+    void testReadsNoFurtherThanDemand() throws Exception {
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(20)))) {
+
+            Map<String, String> requests = new LinkedHashMap<>();
+            for (int i = 0; i < 2000; i++) {
+                requests.put("req-" + i, REQUEST);
+            }
+            manager.submitAsync(requests).get(30, TimeUnit.SECONDS);
+            String batchId = server.batchOrder.get(0);
+            Batch batch = manager.getBatch(batchId);
+            // Back to unread, so the stream below is the only thing writing results
+            db.updateBatchRequests(batch.getId(), db.getBatchRequests(batch.getId()).stream()
+                    .map(r -> new BatchRequest(r.getCustomId(), r.getRequestData()))
+                    .toList());
+
+            Stalled stalled = new Stalled(3);
+            manager.streamResults(batchId).subscribe(stalled);
+            assertTrue(stalled.received.await(10, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            assertEquals(3, stalled.results.size());
+
+            // Under a chunk has been read, so nothing is written until the subscriber lets go
+            assertTrue(db.getBatchRequests(batch.getId()).stream()
+                    .allMatch(r -> r.getStatus() == BatchRequest.RequestStatus.PENDING));
+            stalled.subscription.cancel();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (countCompleted(batch.getId()) < 3) {
+                assertTrue(System.currentTimeMillis() < deadline, "cancelled stream never flushed");
+                Thread.sleep(10);
+            }
+            assertEquals(3, countCompleted(batch.getId()));
+        }
+    }
+
+    @Test
+    void testSubscriberSlowerThanTheReadTimeoutGetsEveryResult() throws Exception {
+        server.stallFileAfterBytes = 1_000;
+        OpenAIClient client = new OpenAIClient("test-key",
+                new HttpTransportConfig().setBaseUrl(server.baseUrl()).setReadTimeout(Duration.ofMillis(300)));
+        try (BatchManager manager = new BatchManager(client, db, Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setPollInterval(Duration.ofMillis(20)))) {
+
+            Map<String, String> requests = new LinkedHashMap<>();
+            for (int i = 0; i < 20; i++) {
+                requests.put("req-" + i, REQUEST);
+            }
+            Collector collector = new Collector(1);
+            manager.submitForStream(requests, null).subscribe(collector);
+            assertTrue(collector.done.await(30, TimeUnit.SECONDS));
+            assertNull(collector.error.get());
+
+            // The download broke off partway and carried on from the last whole line, without repeating any
+            assertTrue(server.rangeRequests.get() > 0);
+            assertEquals(20, collector.results.size());
+            assertEquals(requests.keySet(), collector.results.stream().map(BatchResult::getCustomId).collect(Collectors.toSet()));
+            assertTrue(collector.results.stream().allMatch(BatchResult::isSuccess));
+        }
+    }
+
+    private long countCompleted(String batchId) throws Exception {
+        return db.getBatchRequests(batchId).stream()
+                .filter(r -> r.getStatus() == BatchRequest.RequestStatus.COMPLETED)
+                .count();
+    }
+
+    // Asks for one result at a time, like a consumer doing slow work on each
+    static class Collector implements Flow.Subscriber<BatchResult> {
+        final long batch;
+        final List<BatchResult> results = new CopyOnWriteArrayList<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Flow.Subscription subscription;
+
+        Collector(long batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(batch);
+        }
+
+        @Override
+        public void onNext(BatchResult result) {
+            results.add(result);
+            subscription.request(batch);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+
+    private static class Stalled implements Flow.Subscriber<BatchResult> {
+        final long demand;
+        final List<BatchResult> results = new CopyOnWriteArrayList<>();
+        final CountDownLatch received;
+        volatile Flow.Subscription subscription;
+
+        Stalled(int demand) {
+            this.demand = demand;
+            this.received = new CountDownLatch(demand);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(demand);
+        }
+
+        @Override
+        public void onNext(BatchResult result) {
+            results.add(result);
+            received.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.AsyncPermits;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.manager.ResumedBatch;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchOutcome;
+import com.openai.batchmanager.model.BatchRequest;
+import com.openai.batchmanager.model.BatchStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResumeAllTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("resume.db").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testPermitsPassToWaitersInOrder() {
+        AsyncPermits permits = new AsyncPermits(1);
+        assertTrue(permits.acquire().isDone());
+        CompletableFuture<Void> second = permits.acquire();
+        CompletableFuture<Void> third = permits.acquire();
+
+        permits.release();
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+        permits.release();
+        permits.release();
+        assertTrue(third.isDone());
+        assertEquals(0, permits.getInUse());
+    }
+
+    @Test
+    void testResumeAllAfterRestart() throws Exception {
+        resumeAll(200);
+    }
+
+    // Run with -Dbenchmark=true [-Dbenchmark.batches=1000] to see how long a large restart takes
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkResumeAll() throws Exception {
+        int batches = Integer.getInteger("benchmark.batches", 1_000);
+        long start = System.nanoTime();
+        resumeAll(batches);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.printf("Resumed %d batches in %dms with %d list calls and %d batch GETs%n",
+                batches, elapsed, server.batchLists.get(), server.batchGets.get());
+    }
+
+    private void resumeAll(int pendingBatches) throws Exception {
+        // Everything finished while we were down, so the first poll of each batch finds it done
+        server.pollsUntilComplete = 1;
+        for (int i = 0; i < pendingBatches; i++) {
+            Batch batch = new Batch("local-" + i);
+            batch.setTotalRequests(2);
+            db.insertBatch(batch);
+            batch.setOpenaiBatchId(server.seedBatch(List.of("req-" + i + "-a", "req-" + i + "-b")));
+            batch.setStatus(BatchStatus.IN_PROGRESS);
+            db.updateBatch(batch);
+            db.insertBatchRequests(batch.getId(),
+                    List.of(new BatchRequest("req-" + i + "-a", "{}"), new BatchRequest("req-" + i + "-b", "{}")));
+        }
+
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions().setMaxConcurrentResultFetches(8))) {
+
+            List<ResumedBatch> resumed = manager.resumeAll();
+            assertEquals(pendingBatches, resumed.size());
+
+            CompletableFuture.allOf(resumed.stream().map(ResumedBatch::getOutcome).toArray(CompletableFuture[]::new))
+                    .get(120, TimeUnit.SECONDS);
+
+            for (ResumedBatch handle : resumed) {
+                BatchOutcome outcome = handle.getOutcome().join();
+                String prefix = "req-" + handle.getBatch().getId().substring("local-".length());
+                assertEquals(2, outcome.getResponses().size());
+                assertTrue(outcome.getResponses().containsKey(prefix + "-a"));
+            }
+            // Most statuses came from the paginated list rather than one GET per batch
+            assertTrue(server.batchLists.get() > 0);
+            assertTrue(server.batchGets.get() < pendingBatches / 2, "batch GETs: " + server.batchGets.get());
+            assertTrue(db.getIncompleteBatches().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIApiException;
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.client.RetryPolicy;
+import com.openai.batchmanager.model.Batch;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    private static final String BATCH_JSON =
+            "{\"id\": \"batch_1\", \"status\": \"in_progress\", \"input_file_id\": \"file-1\", \"endpoint\": \"/v1/chat/completions\"}";
+
+    private MockWebServer server;
+    private OpenAIClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new OpenAIClient("test-key", server.url("/v1/").toString());
+        client.setRetryPolicy(new RetryPolicy().setMaxAttempts(3).setBaseDelay(Duration.ofMillis(1)));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    void testPollRetriesThroughRateLimitAndServerError() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        server.enqueue(new MockResponse().setResponseCode(502));
+        server.enqueue(new MockResponse().setBody(BATCH_JSON));
+
+        Batch batch = new Batch("local-1");
+        batch.setOpenaiBatchId("batch_1");
+        client.updateBatchStatus(batch);
+
+        assertEquals("file-1", batch.getInputFileId());
+        assertEquals(3, client.getRetryStats().getAttempts());
+        assertEquals(2, client.getRetryStats().getRetries());
+    }
+
+    @Test
+    void testAsyncPollRetriesWithoutBlocking() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(BATCH_JSON));
+
+        Batch batch = new Batch("local-1");
+        batch.setOpenaiBatchId("batch_1");
+        client.updateBatchStatusAsync(batch).get(10, TimeUnit.SECONDS);
+
+        assertEquals("file-1", batch.getInputFileId());
+        assertEquals(1, client.getRetryStats().getRetries());
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttempts() {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503).setBody("unavailable"));
+        }
+
+        Batch batch = new Batch("local-1");
+        batch.setOpenaiBatchId("batch_1");
+        OpenAIApiException error = assertThrows(OpenAIApiException.class, () -> client.updateBatchStatus(batch));
+
+        assertEquals(503, error.getStatusCode());
+        assertTrue(error.getMessage().startsWith("Failed to get batch: 503"));
+        assertEquals(1, client.getRetryStats().getExhausted());
+    }
+
+    @Test
+    void testClientErrorsAreNotRetried() {
+        server.enqueue(new MockResponse().setResponseCode(400).setBody("bad request"));
+
+        assertThrows(OpenAIApiException.class, () -> client.cancelBatch("batch_1"));
+        assertEquals(1, client.getRetryStats().getAttempts());
+    }
+
+    @Test
+    void testAmbiguousCreateIsRecoveredInsteadOfResent() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"id\": \"file-1\"}"));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("{\"object\": \"list\", \"data\": [" + BATCH_JSON + "], \"has_more\": false}"));
+
+        Batch batch = client.submitBatch(Map.of("req-1", "{\"model\": \"gpt-4.1\", \"messages\": []}"), "/v1/chat/completions");
+
+        assertEquals("batch_1", batch.getOpenaiBatchId());
+        assertEquals(3, server.getRequestCount(), "The batch create must not be sent twice");
+        assertEquals(1, client.getRetryStats().getRecovered());
+        assertNotNull(server.takeRequest().getHeader("Idempotency-Key"));
+    }
+
+    @Test
+    void testServerRequestedDelays() {
+        RetryPolicy policy = new RetryPolicy().setMaxServerDelay(Duration.ofMinutes(1));
+
+        assertEquals(Duration.ofSeconds(7), policy.delayBeforeRetry(1, Headers.of("Retry-After", "7")));
+        assertEquals(Duration.ofMillis(1500), policy.delayBeforeRetry(1, Headers.of(
+                "x-ratelimit-remaining-requests", "0", "x-ratelimit-reset-requests", "1.5s")));
+        assertEquals(Duration.ofMinutes(1), policy.delayBeforeRetry(1, Headers.of(
+                "x-ratelimit-remaining-tokens", "0", "x-ratelimit-reset-tokens", "6m0s")));
+
+        Duration backoff = policy.delayBeforeRetry(3, Headers.of());
+        assertTrue(backoff.compareTo(Duration.ofSeconds(2)) <= 0, "Third attempt backoff is capped at 4x the base delay");
+    }
+}
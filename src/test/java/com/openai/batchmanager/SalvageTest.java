@@ -0,0 +1,124 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchOutcome;
+import com.openai.batchmanager.model.BatchStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalvageTest extends ManagerTestBase {
+
+    private static final String REQUEST = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+
+    private final Map<String, String> requests = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server.unfinishedCustomIds.addAll(Set.of("b", "c"));
+        requests.put("a", REQUEST);
+        requests.put("b", REQUEST);
+        requests.put("c", REQUEST);
+    }
+
+    @Test
+    void testUnprocessedRemainderIsResubmitted() throws Exception {
+        server.expirations.set(1);
+        String submissionId;
+        try (BatchManager manager = newManager(options().setMaxSalvageAttempts(2))) {
+            BatchOutcome outcome = manager.submitForOutcomeAsync(requests, null, null).get(30, TimeUnit.SECONDS);
+            assertEquals(requests.keySet(), outcome.getResponses().keySet());
+            assertFalse(outcome.hasFailures());
+
+            assertEquals(2, server.batchCreates.get());
+            assertEquals(2, server.batches.get(server.batchOrder.get(1)).total);
+            Batch original = manager.getBatch(server.batchOrder.get(0));
+            assertEquals(BatchStatus.EXPIRED, original.getStatus());
+            List<Batch> followUps = db.getBatchesByParent(original.getId());
+            assertEquals(1, followUps.size());
+            assertEquals(server.batchOrder.get(1), followUps.get(0).getOpenaiBatchId());
+            assertEquals(original.getSubmissionId(), followUps.get(0).getSubmissionId());
+            submissionId = original.getSubmissionId();
+        }
+
+        // After a restart the follow-up is picked up through the original rather than sent again
+        try (BatchManager manager = newManager(options())) {
+            BatchOutcome resumed = manager.resumeSubmissionForOutcomeAsync(submissionId, null).get(30, TimeUnit.SECONDS);
+            assertEquals(requests.keySet(), resumed.getResponses().keySet());
+            assertFalse(resumed.hasFailures());
+            assertEquals(2, server.batchCreates.get());
+        }
+    }
+
+    @Test
+    void testRemainderStaysFailedOnceAttemptsRunOut() throws Exception {
+        server.expirations.set(5);
+        try (BatchManager manager = newManager(options().setMaxSalvageAttempts(1))) {
+            BatchOutcome outcome = manager.submitForOutcomeAsync(requests, null, null).get(30, TimeUnit.SECONDS);
+            assertEquals(Set.of("a"), outcome.getResponses().keySet());
+            assertEquals(Set.of("b", "c"), outcome.getFailures().keySet());
+            assertEquals("batch_expired", outcome.getFailures().get("b").getErrorCode());
+            assertEquals(2, server.batchCreates.get());
+        }
+    }
+
+    @Test
+    void testCallerCancellationIsNotSalvaged() throws Exception {
+        server.pollsUntilComplete = Integer.MAX_VALUE;
+        try (BatchManager manager = newManager(options().setMaxSalvageAttempts(2))) {
+            CompletableFuture<BatchOutcome> future = manager.submitForOutcomeAsync(requests, null, null);
+            long until = System.currentTimeMillis() + 10_000;
+            while (server.batchOrder.isEmpty() || manager.getBatch(server.batchOrder.get(0)) == null) {
+                assertTrue(System.currentTimeMillis() < until, "batch was never created");
+                Thread.sleep(20);
+            }
+            manager.cancelBatchAsync(server.batchOrder.get(0)).get(30, TimeUnit.SECONDS);
+
+            BatchOutcome outcome = future.get(30, TimeUnit.SECONDS);
+            assertEquals(requests.keySet(), outcome.getFailures().keySet());
+            assertEquals("batch_cancelled", outcome.getFailures().get("a").getErrorCode());
+            assertEquals(1, server.batchCreates.get());
+            assertTrue(db.getBatchByOpenaiId(server.batchOrder.get(0)).isCancelRequested());
+        }
+    }
+
+    @Test
+    void testCoalescedRequestsWaitForTheSalvage() throws Exception {
+        server.expirations.set(1);
+        // Long enough in flight for the second submission to find the first one's batch running
+        server.pollsUntilComplete = 10;
+        String distinct = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"B\"}]}";
+        try (BatchManager manager = newManager(options()
+                .setMaxSalvageAttempts(1).setCoalesceInFlightRequests(true))) {
+            CompletableFuture<BatchOutcome> first = manager.submitForOutcomeAsync(Map.of("b", distinct), null, null);
+            CompletableFuture<BatchOutcome> second = manager.submitForOutcomeAsync(Map.of("y", distinct), null, null);
+
+            BatchOutcome leader = first.get(30, TimeUnit.SECONDS);
+            BatchOutcome follower = second.get(30, TimeUnit.SECONDS);
+            assertFalse(leader.hasFailures());
+            assertFalse(follower.hasFailures());
+            assertEquals(leader.getResponses().get("b"), follower.getResponses().get("y"));
+            assertEquals(1, manager.getRequestCoalescer().getCoalescedCount());
+            assertEquals(2, server.batchCreates.get());
+        }
+    }
+
+    @Test
+    void testDisabledByDefault() throws Exception {
+        server.expirations.set(1);
+        try (BatchManager manager = newManager(options())) {
+            BatchOutcome outcome = manager.submitForOutcomeAsync(requests, null, null).get(30, TimeUnit.SECONDS);
+            assertEquals(Set.of("b", "c"), outcome.getFailures().keySet());
+            assertEquals(1, server.batchCreates.get());
+        }
+    }
+}
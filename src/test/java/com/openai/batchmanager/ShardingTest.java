@@ -0,0 +1,101 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.manager.ShardPlanner;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardingTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+    private BatchManager manager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("sharding.db").toString());
+        manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions()
+                        .setPollInterval(Duration.ofMillis(10))
+                        .setMaxRequestsPerBatch(3));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        manager.close();
+        server.close();
+    }
+
+    @Test
+    void testPlannerRespectsLineAndByteLimits() {
+        List<BatchRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new BatchRequest("req-" + i, "{\"model\": \"gpt-4.1\", \"input\": \"" + "x".repeat(100) + "\"}"));
+        }
+        long lineBytes = ShardPlanner.estimateLineBytes(requests.get(0));
+
+        List<List<BatchRequest>> byCount = new ShardPlanner(4, Long.MAX_VALUE).plan(requests);
+        assertEquals(List.of(4, 4, 2), byCount.stream().map(List::size).toList());
+
+        List<List<BatchRequest>> byBytes = new ShardPlanner(100, lineBytes * 3).plan(requests);
+        assertEquals(List.of(3, 3, 3, 1), byBytes.stream().map(List::size).toList());
+
+        assertThrows(IllegalArgumentException.class, () -> new ShardPlanner(100, lineBytes - 1).plan(requests));
+    }
+
+    @Test
+    void testOversizedSubmissionIsShardedAndMerged() throws Exception {
+        Map<String, String> requests = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            requests.put("req-" + i, "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q" + i + "\"}]}");
+        }
+        Set<Integer> completedShards = ConcurrentHashMap.newKeySet();
+        Set<String> submissionIds = ConcurrentHashMap.newKeySet();
+
+        Map<String, String> results = manager.submitAsync(requests, null,
+                (shard, shardResults) -> {
+                    assertFalse(shardResults.isEmpty());
+                    completedShards.add(shard.getShardIndex());
+                    submissionIds.add(shard.getSubmissionId());
+                }).get(30, TimeUnit.SECONDS);
+
+        assertEquals(requests.keySet(), results.keySet());
+        assertTrue(results.get("req-7").contains("echo req-7"));
+        assertEquals(4, server.batchCreates.get());
+        assertEquals(Set.of(0, 1, 2, 3), completedShards);
+
+        assertEquals(1, submissionIds.size());
+        String submissionId = submissionIds.iterator().next();
+        List<Batch> shards = db.getBatchesBySubmission(submissionId);
+        assertEquals(4, shards.size());
+        assertTrue(shards.stream().allMatch(b -> b.getShardCount() == 4));
+
+        Map<String, String> resumed = manager.resumeSubmissionAsync(submissionId).get(30, TimeUnit.SECONDS);
+        assertEquals(results, resumed);
+    }
+}
@@ -0,0 +1,193 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.OverflowPolicy;
+import com.openai.batchmanager.manager.ResumedBatch;
+import com.openai.batchmanager.manager.SubmissionLimiter;
+import com.openai.batchmanager.model.Batch;
+import com.openai.batchmanager.model.BatchOutcome;
+import com.openai.batchmanager.model.BatchStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubmissionLimitTest extends ManagerTestBase {
+
+    private static final String REQUEST = "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}";
+
+    @Test
+    void testLimiterAdmitsInOrderAsSlotsFree() {
+        SubmissionLimiter limiter = new SubmissionLimiter(2, 1, 100);
+
+        assertTrue(limiter.tryAcquire("a", 60));
+        // No upload slot until a has finished uploading
+        CompletableFuture<Void> b = limiter.acquire("b", 30);
+        CompletableFuture<Void> c = limiter.acquire("c", 10);
+        assertFalse(limiter.tryAcquire("d", 1));
+        assertFalse(b.isDone());
+
+        limiter.uploadFinished("a");
+        assertTrue(b.isDone());
+        // Two batches are in flight, so c waits for one to finish
+        assertFalse(c.isDone());
+        assertEquals(30, limiter.getPendingBytes());
+
+        limiter.release("a");
+        assertFalse(c.isDone());
+        limiter.uploadFinished("b");
+        assertTrue(c.isDone());
+        assertEquals(2, limiter.getInFlightBatches());
+        assertEquals(0, limiter.getWaitingCount());
+    }
+
+    @Test
+    void testFailFastRejectsWhenFull() throws Exception {
+        server.pollsUntilComplete = 3;
+        try (BatchManager manager = newManager(options()
+                .setMaxInFlightBatches(1)
+                .setOverflowPolicy(OverflowPolicy.FAIL_FAST))) {
+
+            CompletableFuture<Map<String, String>> first = manager.submitAsync(Map.of("req-1", REQUEST));
+            ExecutionException rejected = assertThrows(ExecutionException.class,
+                    () -> manager.submitAsync(Map.of("req-2", REQUEST)).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+
+            assertEquals(Set.of("req-1"), first.get(30, TimeUnit.SECONDS).keySet());
+            assertEquals(1, server.batchCreates.get());
+            assertEquals(0, manager.getSubmissionLimiter().getInFlightBatches());
+        }
+    }
+
+    @Test
+    void testBlockWaitsForASlot() throws Exception {
+        server.pollsUntilComplete = 2;
+        try (BatchManager manager = newManager(options()
+                .setMaxInFlightBatches(1)
+                .setOverflowPolicy(OverflowPolicy.BLOCK))) {
+
+            CompletableFuture<Map<String, String>> first = manager.submitAsync(Map.of("req-1", REQUEST));
+            CompletableFuture<Map<String, String>> second = manager.submitAsync(Map.of("req-2", REQUEST));
+
+            // The second call only returned once the first batch had finished
+            assertEquals("completed", server.batches.get(server.batchOrder.get(0)).status);
+            assertNotNull(second.get(30, TimeUnit.SECONDS).get("req-2"));
+        }
+    }
+
+    @Test
+    void testInterruptedBlockReportsTheShardsItNeverSent() throws Exception {
+        server.pollsUntilComplete = Integer.MAX_VALUE;
+        try (BatchManager manager = newManager(options()
+                .setMaxRequestsPerBatch(1)
+                .setMaxInFlightBatches(1)
+                .setOverflowPolicy(OverflowPolicy.BLOCK))) {
+
+            Map<String, String> requests = new LinkedHashMap<>();
+            requests.put("req-0", REQUEST);
+            requests.put("req-1", REQUEST);
+            // The first shard takes the only slot, then waiting for the second is interrupted straight away
+            Thread.currentThread().interrupt();
+            CompletableFuture<BatchOutcome> outcome = manager.submitForOutcomeAsync(requests, null, null);
+            assertTrue(Thread.interrupted());
+
+            // The shard already sent is still collected, next to the one that never was
+            assertFalse(outcome.isDone());
+            server.pollsUntilComplete = 0;
+            BatchOutcome result = outcome.get(30, TimeUnit.SECONDS);
+            assertEquals(Set.of("req-0"), result.getResponses().keySet());
+            assertEquals(BatchManager.NOT_SUBMITTED, result.getFailures().get("req-1").getErrorCode());
+            assertEquals(1, server.batchCreates.get());
+            assertEquals(0, manager.getSubmissionLimiter().getInFlightBatches());
+        }
+    }
+
+    @Test
+    void testResumedBatchesCountAsInFlight() throws Exception {
+        server.pollsUntilComplete = Integer.MAX_VALUE;
+        Batch inFlight = new Batch("left-over");
+        db.insertBatch(inFlight);
+        inFlight.setOpenaiBatchId(server.seedBatch(List.of("req-1")));
+        inFlight.setStatus(BatchStatus.IN_PROGRESS);
+        db.updateBatch(inFlight);
+
+        try (BatchManager manager = newManager(options()
+                .setMaxInFlightBatches(1)
+                .setOverflowPolicy(OverflowPolicy.FAIL_FAST))) {
+            List<ResumedBatch> resumed = manager.resumeAll();
+            assertEquals(1, manager.getSubmissionLimiter().getInFlightBatches());
+
+            // The resumed batch holds the only slot
+            ExecutionException rejected = assertThrows(ExecutionException.class,
+                    () -> manager.submitAsync(Map.of("req-2", REQUEST)).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+
+            server.pollsUntilComplete = 0;
+            resumed.get(0).getOutcome().get(10, TimeUnit.SECONDS);
+            assertEquals(0, manager.getSubmissionLimiter().getInFlightBatches());
+        }
+    }
+
+    @Test
+    void testOverflowIsQueuedInTheDatabase() throws Exception {
+        server.pollsUntilComplete = 2;
+        try (BatchManager manager = newManager(options()
+                .setMaxRequestsPerBatch(1)
+                .setMaxInFlightBatches(2))) {
+
+            Map<String, String> requests = new LinkedHashMap<>();
+            for (int i = 0; i < 6; i++) {
+                requests.put("req-" + i, REQUEST);
+            }
+            CompletableFuture<BatchOutcome> future = manager.submitForOutcomeAsync(requests, null, null);
+
+            // Everything past the first two shards went straight to the queue
+            List<Batch> queued = db.getQueuedBatches();
+            assertEquals(4, queued.size());
+            assertEquals(List.of(2, 3, 4, 5), queued.stream().map(Batch::getShardIndex).toList());
+
+            assertEquals(requests.keySet(), future.get(30, TimeUnit.SECONDS).getResponses().keySet());
+            assertEquals(6, server.batchCreates.get());
+            assertTrue(db.getQueuedBatches().isEmpty());
+        }
+    }
+
+    @Test
+    void testQueuedShardsSurviveARestart() throws Exception {
+        server.pollsUntilComplete = 2;
+        String submissionId;
+        try (BatchManager manager = newManager(options()
+                .setPollInterval(Duration.ofHours(1))
+                .setMaxRequestsPerBatch(1)
+                .setMaxInFlightBatches(1))) {
+
+            manager.submitAsync(Map.of("req-0", REQUEST, "req-1", REQUEST, "req-2", REQUEST));
+            submissionId = db.getQueuedBatches().get(0).getSubmissionId();
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (db.getIncompleteBatches().stream().noneMatch(b -> b.getOpenaiBatchId() != null)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+        assertEquals(1, server.batchCreates.get());
+        assertEquals(2, db.getQueuedBatches().size());
+
+        try (BatchManager manager = newManager(options())) {
+            Map<String, String> results = manager.resumeSubmissionAsync(submissionId).get(30, TimeUnit.SECONDS);
+            assertEquals(3, results.size());
+            assertEquals(3, server.batchCreates.get());
+            assertTrue(db.getQueuedBatches().isEmpty());
+        }
+    }
+
+}
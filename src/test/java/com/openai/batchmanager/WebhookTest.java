@@ -0,0 +1,138 @@
+package com.openai.batchmanager;
+
+import com.openai.batchmanager.client.OpenAIClient;
+import com.openai.batchmanager.db.DatabaseManager;
+import com.openai.batchmanager.manager.BatchManager;
+import com.openai.batchmanager.manager.BatchManagerOptions;
+import com.openai.batchmanager.manager.WebhookListener;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookTest {
+
+    private static final byte[] KEY = "webhook-test-signing-key".getBytes(StandardCharsets.UTF_8);
+    private static final String SECRET = "whsec_" + Base64.getEncoder().encodeToString(KEY);
+
+    @TempDir
+    Path tempDir;
+
+    private FakeOpenAIServer server;
+    private DatabaseManager db;
+    private final OkHttpClient http = new OkHttpClient();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAIServer();
+        db = new DatabaseManager(tempDir.resolve("webhook.db").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void testListenerRejectsBadSignaturesAndStaleEvents() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        try (WebhookListener listener = new WebhookListener(new InetSocketAddress("127.0.0.1", 0),
+                WebhookListener.DEFAULT_PATH, SECRET, received::add)) {
+
+            String event = batchEvent("batch.completed", "batch_1");
+            long now = Instant.now().getEpochSecond();
+
+            assertEquals(200, post(listener, "msg_1", now, sign("msg_1", now, event), event));
+            assertEquals(401, post(listener, "msg_2", now, "v1," + Base64.getEncoder().encodeToString(new byte[32]), event));
+            // Signed for a different body
+            assertEquals(401, post(listener, "msg_3", now, sign("msg_3", now, "{}"), event));
+            long stale = now - 600;
+            assertEquals(401, post(listener, "msg_4", stale, sign("msg_4", stale, event), event));
+            // Several signatures during a secret rotation, one of them valid
+            assertEquals(200, post(listener, "msg_5", now, "v1,bm90LWl0 " + sign("msg_5", now, event), event));
+
+            String other = "{\"type\": \"response.completed\", \"data\": {\"id\": \"resp_1\"}}";
+            assertEquals(200, post(listener, "msg_6", now, sign("msg_6", now, other), other));
+
+            assertEquals(List.of("batch_1", "batch_1"), received);
+        }
+    }
+
+    @Test
+    void testWebhookTriggersImmediatePoll() throws Exception {
+        server.pollsUntilComplete = 2;
+        try (BatchManager manager = new BatchManager(new OpenAIClient("test-key", server.baseUrl()), db,
+                Executors.newCachedThreadPool(),
+                new BatchManagerOptions()
+                        .setPollJitter(0)
+                        .setWebhookSecret(SECRET)
+                        .setWebhookAddress(new InetSocketAddress("127.0.0.1", 0))
+                        .setWebhookSafetyNetInterval(Duration.ofHours(1)))) {
+
+            CompletableFuture<Map<String, String>> future = manager.submitAsync(Map.of("req-1",
+                    "{\"model\": \"gpt-4.1\", \"messages\": [{\"role\": \"user\", \"content\": \"Q\"}]}"));
+
+            // The first poll finds it in progress, after which the safety net would not poll again for an hour
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (server.batchGets.get() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(future.isDone());
+
+            String event = batchEvent("batch.completed", server.batchOrder.get(0));
+            long now = Instant.now().getEpochSecond();
+            assertEquals(200, post(manager.getWebhookListener(), "msg_1", now, sign("msg_1", now, event), event));
+
+            assertEquals(Set.of("req-1"), future.get(10, TimeUnit.SECONDS).keySet());
+            assertEquals(2, server.batchGets.get());
+        }
+    }
+
+    private int post(WebhookListener listener, String id, long timestamp, String signature, String body) throws Exception {
+        Request request = new Request.Builder()
+                .url("http://127.0.0.1:" + listener.getPort() + WebhookListener.DEFAULT_PATH)
+                .header("webhook-id", id)
+                .header("webhook-timestamp", Long.toString(timestamp))
+                .header("webhook-signature", signature)
+                .post(RequestBody.create(body, MediaType.get("application/json")))
+                .build();
+        try (Response response = http.newCall(request).execute()) {
+            return response.code();
+        }
+    }
+
+    private static String batchEvent(String type, String batchId) {
+        return "{\"id\": \"evt_1\", \"object\": \"event\", \"created_at\": " + Instant.now().getEpochSecond() +
+                ", \"type\": \"" + type + "\", \"data\": {\"id\": \"" + batchId + "\"}}";
+    }
+
+    private static String sign(String id, long timestamp, String body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(KEY, "HmacSHA256"));
+        byte[] signature = mac.doFinal((id + "." + timestamp + "." + body).getBytes(StandardCharsets.UTF_8));
+        return "v1," + Base64.getEncoder().encodeToString(signature);
+    }
+}